@@ -0,0 +1,89 @@
+package stockmarketapp.staticlogic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time AlertEngine takes to check one quote against its rules, with 100,000 rules set:
+ * 10 on each symbol of a 10,000 symbol watchlist, on all three fields. Each operation is the check of one quote.
+ * The refreshes are made up beforehand (see SyntheticQuoteSource) and the rules are set well away from the prices,
+ * so that (as usual) none fire.
+ * @author Sadruddin Junejo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlertBenchmark {
+
+	/** the number of symbols in the watchlist */
+	private static final int SYMBOLS = 10000;
+	/** the number of different refreshes played in turn */
+	private static final int REFRESHES = 16;
+
+	private AlertEngine engine;
+	private List<List<Quote>> refreshes;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		SyntheticQuoteSource source = new SyntheticQuoteSource(1, 0.001);
+		List<String> symbols = new ArrayList<String>(SYMBOLS);
+		for (int i = 0; i < SYMBOLS; i++){
+			symbols.add("S" + i);
+		}
+		refreshes = new ArrayList<List<Quote>>(REFRESHES);
+		for (int i = 0; i < REFRESHES; i++){
+			refreshes.add(source.fetch(symbols));
+		}
+
+		engine = new AlertEngine();
+		for (Quote quote : refreshes.get(0)){
+			String symbol = quote.getSymbol();
+			long price = quote.getLastTicks();
+			engine.add(AlertRule.parse(symbol + " price > " + times(price, 10)));
+			engine.add(AlertRule.parse(symbol + " price < " + times(price, 0.1)));
+			engine.add(AlertRule.parse(symbol + " price crosses " + times(price, 2)));
+			engine.add(AlertRule.parse(symbol + " price >= " + times(price, 5)));
+			engine.add(AlertRule.parse(symbol + " change < -" + times(price, 0.5)));
+			engine.add(AlertRule.parse(symbol + " change > " + times(price, 0.5)));
+			engine.add(AlertRule.parse(symbol + " change crosses " + times(price, 3)));
+			engine.add(AlertRule.parse(symbol + " change < -50%"));
+			engine.add(AlertRule.parse(symbol + " change > 50%"));
+			engine.add(AlertRule.parse(symbol + " change% crosses 80"));
+		}
+		engine.evaluate(refreshes.get(0), 0); // every rule has seen its symbol
+	}
+
+	/**
+	 * @return a multiple of a price, written as in a rule
+	 */
+	private static String times(long ticks, double factor) {
+		return Price.append(new StringBuilder(), Math.round(ticks * factor), Price.DECIMALS).toString();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SYMBOLS)
+	public int evaluate() {
+		List<Quote> quotes = refreshes.get(next);
+		next = (next + 1) % REFRESHES;
+		return engine.evaluate(quotes, 0);
+	}
+
+} // End of AlertBenchmark definition
@@ -0,0 +1,77 @@
+package stockmarketapp.staticlogic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time AnalyticsEngine takes to add one refresh of a 10,000 symbol watchlist to the moving statistics,
+ * with one or several windows. Each operation is the update of one symbol (all of its windows).
+ * The refreshes are made up beforehand (see SyntheticQuoteSource), so only the statistics are measured;
+ * run with "-prof gc" to see that no objects are created.
+ * @author Sadruddin Junejo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+
+	/** the number of symbols in the watchlist */
+	private static final int SYMBOLS = 10000;
+	/** the number of different refreshes played in turn */
+	private static final int REFRESHES = 16;
+
+	/** the sizes of the windows, comma-separated */
+	@Param({ "20", "20,100,500" })
+	public String windows;
+
+	private AnalyticsEngine engine;
+	private List<List<Quote>> refreshes;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		String[] sizes = windows.split(",");
+		int[] parsed = new int[sizes.length];
+		for (int i = 0; i < sizes.length; i++){
+			parsed[i] = Integer.parseInt(sizes[i]);
+		}
+		engine = new AnalyticsEngine(parsed, SYMBOLS, null);
+
+		SyntheticQuoteSource source = new SyntheticQuoteSource(1, 0.001);
+		List<String> symbols = new ArrayList<String>(SYMBOLS);
+		for (int i = 0; i < SYMBOLS; i++){
+			symbols.add("S" + i);
+		}
+		refreshes = new ArrayList<List<Quote>>(REFRESHES);
+		for (int i = 0; i < REFRESHES; i++){
+			refreshes.add(source.fetch(symbols));
+		}
+		engine.update(refreshes.get(0), 0); // every symbol has been seen
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SYMBOLS)
+	public void update() {
+		engine.update(refreshes.get(next), 0);
+		next = (next + 1) % REFRESHES;
+	}
+
+} // End of AnalyticsBenchmark definition
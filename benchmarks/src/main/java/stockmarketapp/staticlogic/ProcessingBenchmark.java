@@ -0,0 +1,91 @@
+package stockmarketapp.staticlogic;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing and formatting of a response from Yahoo! Quotes, from 1 row up to 100,000 rows.
+ * Run with "-prof gc" to see the memory allocated per operation alongside the throughput.
+ * (1) splitter and processData: the original line-by-line path, one row at a time.
+ * (2) parseQuotes: the streaming path used by fetchChunk, over a whole response.
+ * (3) mainProcessing: parseQuotes followed by QuoteFormatter, i.e. everything mainProcessing does apart from the
+ *     network request and the cache, which would otherwise dominate the measurement.
+ * @author Sadruddin Junejo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessingBenchmark {
+
+	/** the number of rows in the response */
+	@Param({"1", "100", "10000", "100000"})
+	public int rows;
+
+	/** the rows, one string each, as splitter takes them */
+	private String[] lines;
+	/** the rows after splitter, as processData takes them */
+	private String[][] fields;
+	/** the whole response */
+	private char[] response;
+
+	@Setup
+	public void setUp() {
+		lines = QuoteFixtures.lines(rows);
+		fields = new String[rows][];
+		for (int i = 0; i < rows; i++){
+			fields[i] = ReturnButtonLogic.splitter(lines[i]);
+		}
+		response = QuoteFixtures.response(rows);
+	}
+
+	@Benchmark
+	public void splitter(Blackhole blackhole) {
+		for (String line : lines){
+			blackhole.consume(ReturnButtonLogic.splitter(line));
+		}
+	}
+
+	@Benchmark
+	public void processData(Blackhole blackhole) {
+		for (String[] strArray : fields){
+			blackhole.consume(ReturnButtonLogic.processData(strArray));
+		}
+	}
+
+	@Benchmark
+	public void splitterAndProcessData(Blackhole blackhole) {
+		for (String line : lines){
+			blackhole.consume(ReturnButtonLogic.processData(ReturnButtonLogic.splitter(line)));
+		}
+	}
+
+	@Benchmark
+	public List<Quote> parseQuotes() throws IOException {
+		return ReturnButtonLogic.parseQuotes(new CharArrayReader(response));
+	}
+
+	@Benchmark
+	public String mainProcessing() throws IOException {
+		return QuoteFormatter.toHtml(ReturnButtonLogic.parseQuotes(new CharArrayReader(response)));
+	}
+
+} // End of ProcessingBenchmark definition
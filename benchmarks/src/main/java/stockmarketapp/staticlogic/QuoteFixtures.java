@@ -0,0 +1,87 @@
+package stockmarketapp.staticlogic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the data the benchmarks work on from fixtures/quotes.csv, a response in the format returned by Yahoo! Quotes
+ * for the columns requested by ReturnButtonLogic (nl1pdj1xe1s). The fixture covers each stock exchange known to
+ * detCurrency, an unknown symbol, a missing price and a company name containing a comma.
+ * Larger data sets repeat the fixture's rows, giving each copy its own symbol.
+ * @author Sadruddin Junejo
+ *
+ */
+final class QuoteFixtures {
+
+	/** the rows of the fixture, without line endings */
+	private static final List<String> TEMPLATE = load("/fixtures/quotes.csv");
+
+	private QuoteFixtures() {
+	}
+
+	/**
+	 * @param rows the number of rows wanted
+	 * @return that many rows of data, without line endings
+	 */
+	static String[] lines(int rows) {
+		String[] lines = new String[rows];
+		for (int i = 0; i < rows; i++){
+			String line = TEMPLATE.get(i % TEMPLATE.size());
+			if (i >= TEMPLATE.size()){ // the symbol is the last column, surrounded by quotes
+				line = line.substring(0, line.length() - 1) + (i / TEMPLATE.size()) + '"';
+			}
+			lines[i] = line;
+		}
+		return lines;
+	}
+
+	/**
+	 * @param rows the number of rows wanted
+	 * @return a whole response of that many rows, one per line
+	 */
+	static char[] response(int rows) {
+		StringBuilder response = new StringBuilder(rows * 80);
+		for (String line : lines(rows)){
+			response.append(line).append('\n');
+		}
+		char[] data = new char[response.length()];
+		response.getChars(0, data.length, data, 0);
+		return data;
+	}
+
+	/**
+	 * @return the stock exchange column of each row of the fixture, surrounded by quotes as detCurrency expects
+	 */
+	static String[] exchanges() {
+		String[] exchanges = new String[TEMPLATE.size()];
+		for (int i = 0; i < exchanges.length; i++){
+			exchanges[i] = ReturnButtonLogic.splitter(TEMPLATE.get(i))[5];
+		}
+		return exchanges;
+	}
+
+	private static List<String> load(String resource) {
+		InputStream in = QuoteFixtures.class.getResourceAsStream(resource);
+		if (in == null){
+			throw new IllegalStateException("missing fixture " + resource);
+		}
+		List<String> lines = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null){
+				if (line.length() > 0){
+					lines.add(line);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("unable to read fixture " + resource, e);
+		}
+		return lines;
+	}
+
+} // End of QuoteFixtures definition
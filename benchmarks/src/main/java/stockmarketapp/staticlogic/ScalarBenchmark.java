@@ -0,0 +1,90 @@
+package stockmarketapp.staticlogic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the small helpers called once or twice per row: round and detCurrency, and the fixed-point arithmetic
+ * that has replaced round for display (see Price), against formatting a rounded double.
+ * Each operation works through a fixed set of inputs, so that the results cannot be worked out in advance by the JIT.
+ * @author Sadruddin Junejo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScalarBenchmark {
+
+	/** the number of inputs; a power of two, so that the next one can be picked with a mask */
+	private static final int INPUTS = 1024;
+
+	/** price changes, as round is given them */
+	private double[] changes;
+	/** the same price changes in ticks (see Price) */
+	private long[] changeTicks;
+	/** the previous close each change is a percentage of, in ticks */
+	private long[] baseTicks;
+	/** reused for the output of the formatting benchmarks */
+	private final StringBuilder out = new StringBuilder(64);
+	/** stock exchanges, surrounded by quotes as detCurrency is given them */
+	private String[] exchanges;
+	/** the input used next */
+	private int next;
+
+	@Setup
+	public void setUp() {
+		changes = new double[INPUTS];
+		changeTicks = new long[INPUTS];
+		baseTicks = new long[INPUTS];
+		exchanges = new String[INPUTS];
+		String[] fixtureExchanges = QuoteFixtures.exchanges();
+		for (int i = 0; i < INPUTS; i++){
+			changes[i] = (i * 7919 % 20001 - 10000) / 997.0;
+			exchanges[i] = fixtureExchanges[i % fixtureExchanges.length];
+			changeTicks[i] = Price.fromDouble(changes[i]);
+			baseTicks[i] = Price.fromDouble(10 + i % 500);
+		}
+	}
+
+	@Benchmark
+	public double round() {
+		return ReturnButtonLogic.round(changes[next++ & (INPUTS - 1)]);
+	}
+
+	@Benchmark
+	public int roundAndAppend() {
+		int i = next++ & (INPUTS - 1);
+		out.setLength(0);
+		out.append(ReturnButtonLogic.round(changes[i])).append(' ')
+			.append(ReturnButtonLogic.round(changes[i] / (10 + i % 500) * 100));
+		return out.length();
+	}
+
+	@Benchmark
+	public int fixedPointAppend() {
+		int i = next++ & (INPUTS - 1);
+		out.setLength(0);
+		Price.append(out, Price.toDisplay(changeTicks[i]), Price.DISPLAY_DECIMALS).append(' ');
+		Price.append(out, Price.percent(changeTicks[i], baseTicks[i]), Price.DISPLAY_DECIMALS);
+		return out.length();
+	}
+
+	@Benchmark
+	public String detCurrency() {
+		return ReturnButtonLogic.detCurrency(exchanges[next++ & (INPUTS - 1)]);
+	}
+
+} // End of ScalarBenchmark definition
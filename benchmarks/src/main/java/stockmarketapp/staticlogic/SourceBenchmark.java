@@ -0,0 +1,55 @@
+package stockmarketapp.staticlogic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the number of ticks per second SyntheticQuoteSource can produce, for a watchlist of 10,000 symbols.
+ * Each operation is one tick, i.e. one new quote.
+ * @author Sadruddin Junejo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourceBenchmark {
+
+	/** the number of symbols in the watchlist */
+	private static final int SYMBOLS = 10000;
+
+	private SyntheticQuoteSource source;
+	private List<String> symbols;
+
+	@Setup
+	public void setUp() {
+		source = new SyntheticQuoteSource(1, 0.001);
+		symbols = new ArrayList<String>(SYMBOLS);
+		for (int i = 0; i < SYMBOLS; i++){
+			symbols.add("S" + i);
+		}
+		source.fetch(symbols); // creates the symbols' companies
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SYMBOLS)
+	public List<Quote> syntheticTicks() {
+		return source.fetch(symbols);
+	}
+
+} // End of SourceBenchmark definition
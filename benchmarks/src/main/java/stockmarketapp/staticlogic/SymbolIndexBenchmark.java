@@ -0,0 +1,71 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time SymbolIndex takes to suggest symbols for one keystroke, and to check a symbol before it is
+ * requested, with a made-up listing of 300,000 symbols (fewer once duplicates are removed).
+ * @author Sadruddin Junejo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SymbolIndexBenchmark {
+
+	/** the number of lines in the listing */
+	private static final int LINES = 300000;
+	/** what is typed, one keystroke at a time */
+	private static final String[] TYPED = { "G", "GO", "GOO", "GOOG", "M", "MI", "MIC", "MICR", "MICRO", "V", "VO", "VOD.L" };
+
+	private SymbolIndex index;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		SplittableRandom random = new SplittableRandom(1);
+		String[] words = { "Alpha", "Beta", "Micro", "Global", "Holdings", "Group" };
+		StringBuilder listing = new StringBuilder(LINES * 24);
+		for (int i = 0; i < LINES; i++){
+			int length = 1 + random.nextInt(5);
+			int start = listing.length();
+			for (int j = 0; j < length; j++){
+				listing.append((char) ('A' + random.nextInt(26)));
+			}
+			String symbol = listing.substring(start);
+			listing.append(',').append(words[random.nextInt(words.length)]).append(' ').append(symbol).append(" plc\n");
+		}
+		index = new SymbolIndex(new StringReader(listing.toString()));
+	}
+
+	@Benchmark
+	public List<String> suggest() {
+		next = (next + 1) % TYPED.length;
+		return index.suggest(TYPED[next], 5);
+	}
+
+	@Benchmark
+	public boolean contains() {
+		next = (next + 1) % TYPED.length;
+		return index.contains(TYPED[next]);
+	}
+
+} // End of SymbolIndexBenchmark definition
@@ -0,0 +1,102 @@
+package stockmarketapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import stockmarketapp.staticlogic.BatchProcessor;
+import stockmarketapp.staticlogic.MetricsDump;
+import stockmarketapp.staticlogic.Settings;
+
+/**
+ * Runs the program without a window ("batch mode"), e.g. from a cron job:
+ * <code>java -cp stockmarketapp.jar stockmarketapp.BatchApp [--format csv|json] [--output file] [symbol file]</code>
+ * The symbols are read from the file given, or from standard input if there is none (or it is "-"),
+ * and the quotes are written to the output file, or standard output, as they arrive (see BatchProcessor).
+ * The program exits with status 0 if every quote was obtained, 1 if some could not be, and 2 if it could not run.
+ * @author Sadruddin Junejo
+ */
+public class BatchApp {
+
+	/**
+	 * Serves as the starting point for batch mode.
+	 * @param args the options and the symbol file, as above
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true"); // no window is ever created
+		// nothing looks at the moving statistics, which would otherwise be kept for every symbol (see AnalyticsEngine)
+		defaultTo("analyticsSymbols", "0");
+		// a run through a large list would otherwise leave a file for every symbol in the tick store (see TickStore)
+		defaultTo("tickStore", "off");
+		MetricsDump.startIfConfigured();
+		BatchProcessor.Format format = BatchProcessor.Format.CSV;
+		String input = "-";
+		String output = "-";
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (args[i].equals("--format") && i + 1 < args.length){
+					format = BatchProcessor.Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+				}
+				else if (args[i].equals("--output") && i + 1 < args.length){
+					output = args[++i];
+				}
+				else if (!args[i].startsWith("--") || args[i].equals("-")){
+					input = args[i];
+				}
+				else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Usage: BatchApp [--format csv|json] [--output file] [symbol file]");
+			System.exit(2);
+		}
+
+		InputStream in = System.in;
+		OutputStream out = System.out;
+		try {
+			if (!input.equals("-")){
+				in = new FileInputStream(input);
+			}
+			if (!output.equals("-")){
+				out = new FileOutputStream(output);
+			}
+			BatchProcessor processor;
+			try (Reader symbols = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+					Writer quotes = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+				processor = new BatchProcessor(quotes, format, Settings.getChunkSize() * Settings.getParallelism());
+				processor.process(symbols);
+			}
+			if (processor.getFailed() > 0){
+				System.err.println(processor.getFailed() + " of " + processor.getWritten() + " quotes could not be obtained");
+				System.exit(1);
+			}
+			System.exit(0);
+		} catch (IOException e) {
+			System.err.println("Unable to process symbols: " + e.getMessage());
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Sets a setting for this run, unless it has been set on the command line.
+	 * @param name the name of the setting, without the "stockmarketapp." prefix (see Settings)
+	 * @param value the value it is to have
+	 */
+	private static void defaultTo(String name, String value) {
+		if (System.getProperty("stockmarketapp." + name) == null){
+			System.setProperty("stockmarketapp." + name, value);
+		}
+	}
+
+} // End of BatchApp definition
@@ -1,56 +1,220 @@
 package stockmarketapp;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import stockmarketapp.gui.MainWindow;
+import stockmarketapp.staticlogic.Alert;
+import stockmarketapp.staticlogic.AlertListener;
+import stockmarketapp.staticlogic.AnalyticsEngine;
+import stockmarketapp.staticlogic.BackgroundExecutor;
+import stockmarketapp.staticlogic.MetricsDump;
+import stockmarketapp.staticlogic.Quote;
+import stockmarketapp.staticlogic.QuoteCache;
+import stockmarketapp.staticlogic.QuoteServer;
+import stockmarketapp.staticlogic.ReturnButtonLogic;
+import stockmarketapp.staticlogic.Settings;
+import stockmarketapp.staticlogic.Snapshot;
+import stockmarketapp.staticlogic.WatchButtonLogic;
 
 /**
  * The purpose of this program is to display company and shares data requested by the user.
  * It uses an on-screen keyboard to enter stock symbols.
- * The stock symbols are then searched for in Yahoo Quotes' database, and the relevant data is processed and output. 
+ * The stock symbols are then searched for in Yahoo Quotes' database, and the relevant data is processed and output.
  * The MainApp class contains the "main" method that runs when the program is started.
- * It creates the user interface window.
+ * It creates the user interface window, and any further windows asked for; all of them share the quotes fetched
+ * (see QuoteEngine), as do the clients of the HTTP endpoint if it is switched on (see QuoteServer).
+ * The boards on display are saved at intervals and on exit (see Snapshot). At start-up they are shown again straight
+ * away, with the saved quotes, while the engine starts in the background; the quotes are then fetched again.
+ * The program exits when the last window is closed.
  * @author Sadruddin Junejo
  */
 public class MainApp  {
-	
-	/** the window that forms the basis of the program **/
-	static MainWindow program; 
-	
+
+	/** the windows that are open **/
+	static final List<MainWindow> windows = new CopyOnWriteArrayList<MainWindow>();
+	/** the board restored in each window that has not yet been fetched again, as the engine has not started */
+	private static final Map<MainWindow, Snapshot.Board> restored = new ConcurrentHashMap<MainWindow, Snapshot.Board>();
+	/** writes the snapshot away from the Swing event thread */
+	private static final ExecutorService snapshotWriter =
+			Executors.newSingleThreadExecutor(BackgroundExecutor.daemonThreadFactory("snapshot"));
+	/** true once the engine has started; only used on the Swing event thread */
+	private static boolean started;
+
 	/**
 	 * Serves as the starting point for the program, creating the window the program runs in.
 	 * @param args
 	 */
 	public static void main(String[] args){
-		program = new MainWindow(); // See MainWindow class for more info.
+		Snapshot snapshot = Snapshot.readIfConfigured(); // takes milliseconds; nothing is fetched until the boards are up
+		List<Snapshot.Board> boards = snapshot == null ? Collections.<Snapshot.Board>emptyList() : snapshot.getBoards();
+		if (boards.isEmpty()){
+			openWindow();
+		}
+		for (Snapshot.Board board : boards){
+			restored.put(openWindow(board), board);
+		}
+		// Starting the engine takes a while (e.g. the HTTP client, the symbol listing), so the windows do not wait for it.
+		Thread starter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				startEngine();
+			}
+		}, "engine-start");
+		starter.setDaemon(true);
+		starter.start();
+	}
+
+	/**
+	 * Starts the engine and, once it is ready, hands it to the windows and fetches their quotes again.
+	 * Runs in the background.
+	 */
+	private static void startEngine(){
+		MetricsDump.startIfConfigured();
+		QuoteServer.startIfConfigured();
+		ReturnButtonLogic.getCache().addListener(new QuoteCache.Listener() { // stale quotes are replaced when refreshed
+			@Override
+			public void revalidated(List<Quote> quotes) {
+				for (MainWindow window : windows){
+					window.updateQuotes(quotes);
+				}
+			}
+		});
+		ReturnButtonLogic.getAlerts().addListener(new AlertListener() { // price alerts are shown as they fire
+			@Override
+			public void alertFired(Alert alert) {
+				for (MainWindow window : windows){
+					window.showAlert(alert.toString());
+				}
+			}
+		});
+		final AnalyticsEngine analytics = ReturnButtonLogic.getAnalytics();
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				started = true;
+				for (MainWindow window : windows){
+					window.quoteTableModel.setAnalytics(analytics);
+					window.startSuggesting();
+					Snapshot.Board board = restored.remove(window);
+					if (board != null){
+						ReturnButtonLogic.resumeQuery(window, board.getSymbols(), board.isWatching());
+					}
+				}
+				startSaving();
+			}
+		});
+	}
+
+	/**
+	 * Opens another window, with its own query and watch mode. Must be called on the Swing event thread,
+	 * except when the program starts.
+	 */
+	public static void openWindow(){
+		openWindow(null);
+	}
+
+	/**
+	 * Opens another window.
+	 * @param board the board to show in it, saved when the program last ran; null for an empty window
+	 * @return the window
+	 */
+	private static MainWindow openWindow(Snapshot.Board board){
+		final MainWindow program = new MainWindow(); // See MainWindow class for more info.
 		program.setTitle("Simple Stock Market App");
-		program.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		program.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		program.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				if (started && windows.size() == 1){
+					save(takeSnapshot()); // the last window: the program is about to exit
+				}
+				ReturnButtonLogic.viewClosed(program); // symbols watched only by this window are no longer fetched
+				windows.remove(program);
+				if (windows.isEmpty()){
+					System.exit(0);
+				}
+			}
+		});
+		if (board != null){
+			program.setQuotes(board.getQuotes()); // shown as stale until they are fetched again
+		}
+		if (started){
+			program.quoteTableModel.setAnalytics(ReturnButtonLogic.getAnalytics());
+			program.startSuggesting();
+		}
 		program.pack();
+		windows.add(program);
 		program.setVisible(true);
+		return program;
 	}
-	
+
 	/**
-	 * Method for setting the input whenever the user presses an input button.
-	 * @param str the text from the input button pressed
+	 * Saves the boards at intervals (see Settings.getSnapshotIntervalMillis), unless snapshots are switched off.
+	 * Must be called on the Swing event thread.
 	 */
-	public static void setInputString(String str){
-		program.inputStringLabel.setText(str);
+	private static void startSaving(){
+		if (Settings.getSnapshotFile() == null){
+			return;
+		}
+		int interval = (int) Math.min(Integer.MAX_VALUE, Settings.getSnapshotIntervalMillis());
+		new Timer(interval, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				final Snapshot snapshot = takeSnapshot(); // the boards are only read on the event thread
+				snapshotWriter.execute(new Runnable() {
+					@Override
+					public void run() {
+						save(snapshot);
+					}
+				});
+			}
+		}).start();
 	}
-	
+
 	/**
-	 * Retrieves the current input.
-	 * @return the current input
+	 * Takes the boards of every window. Must be called on the Swing event thread.
+	 * @return the boards
 	 */
-	public static String getInputString(){
-		return program.inputStringLabel.getText();
+	private static Snapshot takeSnapshot(){
+		List<Snapshot.Board> boards = new ArrayList<Snapshot.Board>(windows.size());
+		for (MainWindow window : windows){
+			boards.add(new Snapshot.Board(WatchButtonLogic.getSymbols(window), WatchButtonLogic.isWatching(window),
+					window.quoteTableModel.getQuotes()));
+		}
+		return new Snapshot(boards, System.currentTimeMillis());
 	}
-	
+
 	/**
-	 * Used for setting the output (stock data)
-	 * @param str the stock data
+	 * Writes the boards to the snapshot file, reporting on the error stream if they cannot be written.
+	 * @param snapshot the boards
 	 */
-	public static void setOutputString(String str){
-		program.outputStringLabel.setText(str);
+	private static synchronized void save(Snapshot snapshot){
+		String file = Settings.getSnapshotFile();
+		if (file == null){
+			return;
+		}
+		try {
+			snapshot.write(Paths.get(file), Settings.isSnapshotCompressed());
+		} catch (IOException e) {
+			System.err.println("Unable to save the boards to " + file + ": " + e.getMessage());
+		}
 	}
-	
+
 }
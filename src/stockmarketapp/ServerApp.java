@@ -0,0 +1,46 @@
+package stockmarketapp;
+
+import java.io.IOException;
+
+import stockmarketapp.staticlogic.MetricsDump;
+import stockmarketapp.staticlogic.QuoteServer;
+import stockmarketapp.staticlogic.ReturnButtonLogic;
+import stockmarketapp.staticlogic.Settings;
+
+/**
+ * Runs the program without a window as a quote server ("server mode"), so that one process can feed every board on a
+ * trading floor, each symbol being fetched once however many boards follow it (see QuoteServer):
+ * <code>java -cp stockmarketapp.jar stockmarketapp.ServerApp [port]</code>
+ * The port defaults to the "stockmarketapp.serverPort" system property, or 8080; the address listened on is set by
+ * "stockmarketapp.serverAddress" (see Settings). The server runs until the program is stopped.
+ * @author Sadruddin Junejo
+ */
+public class ServerApp {
+
+	/**
+	 * Serves as the starting point for server mode.
+	 * @param args the port to listen on, as above
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true"); // no window is ever created
+		MetricsDump.startIfConfigured();
+		int port = Settings.getServerPort() != 0 ? Settings.getServerPort() : 8080;
+		try {
+			if (args.length > 0){
+				port = Integer.parseInt(args[0]);
+			}
+		} catch (NumberFormatException e) {
+			System.err.println("Usage: ServerApp [port]");
+			System.exit(2);
+		}
+		try {
+			QuoteServer server = new QuoteServer(ReturnButtonLogic.getEngine(), Settings.getServerAddress(), port);
+			server.start(); // the server's own thread keeps the program running
+			System.err.println("Serving quotes on " + server.getUrl() + " (/quotes, /stream, /status)");
+		} catch (IOException e) {
+			System.err.println("Unable to serve quotes on port " + port + ": " + e.getMessage());
+			System.exit(2);
+		}
+	}
+
+} // End of ServerApp definition
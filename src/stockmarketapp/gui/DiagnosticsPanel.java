@@ -0,0 +1,88 @@
+package stockmarketapp.gui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+import stockmarketapp.staticlogic.Metrics;
+
+/**
+ * Shows the measurements of each stage of obtaining and showing quotes (see Metrics), updated every second while
+ * the panel is showing, so that the cause of a slow refresh can be seen as it happens.
+ * @author Sadruddin Junejo
+ *
+ */
+public class DiagnosticsPanel extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+
+	/** the time between updates, in milliseconds */
+	private static final int UPDATE_MILLIS = 1000;
+
+	/** the measurements, as a table */
+	private final JTextArea report = new JTextArea(20, 80);
+	/** updates the measurements while the panel is showing */
+	private final Timer timer;
+
+	/**
+	 * Constructor method for the panel.
+	 */
+	public DiagnosticsPanel() {
+		super(new BorderLayout());
+		report.setEditable(false);
+		report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		add(new JScrollPane(report), BorderLayout.CENTER);
+
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		JButton reset = new JButton("Reset");
+		reset.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				Metrics.reset();
+				update();
+			}
+		});
+		buttons.add(reset);
+		add(buttons, BorderLayout.SOUTH);
+
+		timer = new Timer(UPDATE_MILLIS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				update();
+			}
+		});
+		addHierarchyListener(new HierarchyListener() { // only updates while it can be seen
+			@Override
+			public void hierarchyChanged(HierarchyEvent e) {
+				if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0){
+					if (isShowing()){
+						update();
+						timer.start();
+					}
+					else {
+						timer.stop();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Shows the latest measurements.
+	 */
+	private void update() {
+		report.setText(Metrics.report());
+		report.setCaretPosition(0);
+	}
+
+} // End of DiagnosticsPanel definition
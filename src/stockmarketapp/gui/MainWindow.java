@@ -1,36 +1,63 @@
 package stockmarketapp.gui;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.FlowLayout;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.Dimension;
+import java.util.List;
 
+import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableRowSorter;
 
 import stockmarketapp.MainApp; 
 import stockmarketapp.gui.buttons.InputButton;
 import stockmarketapp.gui.buttons.KeyboardButton;
+import stockmarketapp.staticlogic.Metrics;
+import stockmarketapp.staticlogic.Quote;
+import stockmarketapp.staticlogic.QuoteView;
 import stockmarketapp.staticlogic.ReturnButtonLogic;
+import stockmarketapp.staticlogic.WatchButtonLogic;
 
 /**
  * Constructs the window which contains, from top to bottom:
- * (1) The output that is displayed once the user presses the "Return Button".
+ * (1) The output that is displayed once the user presses the "Return Button": a table of quotes (the quote board),
+ *     with a message above it when there is something to report.
  * (2) A label displaying the current input
  * (3) An on-screen keyboard consisting of the letters A-Z, the numbers 0-9, '.' and a spacebar to allow for multiple
  * 	   symbol input.
- *	   Additionally, a "Delete" button is included, as well as a "Return" button. 
+ *	   Additionally, a "Delete" button is included, as well as a "Return" button and a "Watch" button. 
+ * Several windows can be open at once (see MainApp.openWindow), each with its own query.
  * @author Sadruddin Junejo
  *
  */
-public class MainWindow extends JFrame {
+public class MainWindow extends JFrame implements QuoteView {
 	/** This label contains the input string that is added to when the user clicks an input button */
 	public JLabel inputStringLabel; 
-	/** This label contains the output string that displays data (or an error message) after "return" key is pressed */
+	/** This label contains the output string that displays a message (e.g. an error message) after "return" key is pressed */
 	public JLabel outputStringLabel; 
+	/** Shown while stock data is being retrieved in the background */
+	public JProgressBar progressBar;
+	/** suggests symbols for the one being typed (see SymbolIndex) */
+	public JLabel suggestionLabel;
+	/** shows the latest price alert that fired (see AlertEngine) */
+	public JLabel alertLabel;
+	/** Holds the quotes displayed in the quote board */
+	public QuoteTableModel quoteTableModel;
+	/** The quote board: displays one quote per row. Only the visible rows are painted. */
+	public JTable quoteTable;
+	/** Applies changes to the quote board at most once per frame */
+	public RepaintCoalescer repaintCoalescer;
+	/** Enters and leaves watch mode; its label shows which one pressing it will do */
+	public KeyboardButton watchButton;
 	/** The panel which, directly or indirectly, contains all the widgets of the program */
 	private JPanel mainPanel; 
 	/** Contains both the input and output panels */
@@ -39,6 +66,10 @@ public class MainWindow extends JFrame {
 	private JPanel inputPanel;
 	/** the panel which contains the on-screen keyboard buttons */
 	private JPanel keyPanel; 
+	/** the window showing the measurements of each stage; created when first shown */
+	private JDialog diagnosticsDialog;
+	/** true once the engine has started (see startSuggesting); until then nothing is suggested */
+	private boolean suggesting;
 	
 	/**
 	 * Constructor class. This runs each creation step in turn.
@@ -70,8 +101,14 @@ public class MainWindow extends JFrame {
 		outputPanel = new JPanel(new BorderLayout());
 		outputPanel.add(new JLabel(" Output:    "), BorderLayout.WEST);
 		outputStringLabel = new JLabel();
-		JScrollPane outputScrollPane = new JScrollPane(); // implementing a scroll bar
-		outputScrollPane.getViewport().add(outputStringLabel);
+		outputPanel.add(outputStringLabel, BorderLayout.NORTH);
+		quoteTableModel = new QuoteTableModel();
+		repaintCoalescer = new RepaintCoalescer(quoteTableModel);
+		quoteTable = new JTable(quoteTableModel);
+		quoteTable.setDefaultRenderer(Long.class, new QuoteCellRenderer());
+		quoteTable.setRowSorter(new TableRowSorter<QuoteTableModel>(quoteTableModel)); // sorts by any column when its header is clicked
+		quoteTable.setFillsViewportHeight(true);
+		JScrollPane outputScrollPane = new JScrollPane(quoteTable); // implementing a scroll bar
 		outputPanel.add(outputScrollPane, BorderLayout.CENTER);
 		inputOutputPanel.add(outputPanel);
 		
@@ -80,6 +117,16 @@ public class MainWindow extends JFrame {
 		inputPanel.add(new JLabel("Input: "));
 		inputStringLabel = new JLabel();
 		inputPanel.add(inputStringLabel);
+		progressBar = new JProgressBar();
+		progressBar.setIndeterminate(true); // the length of a request is not known in advance
+		progressBar.setVisible(false); // only shown while a request is in progress
+		inputPanel.add(progressBar);
+		suggestionLabel = new JLabel();
+		suggestionLabel.setForeground(Color.GRAY);
+		inputPanel.add(suggestionLabel);
+		alertLabel = new JLabel();
+		alertLabel.setForeground(Color.RED);
+		inputPanel.add(alertLabel);
 		inputOutputPanel.add(inputPanel, BorderLayout.SOUTH);
 		
 		mainPanel.add(inputOutputPanel);
@@ -110,8 +157,8 @@ public class MainWindow extends JFrame {
 		lettersRow1.add(new KeyboardButton("Delete") { // Addition of delete button as anonymous inner class
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
-				if (MainApp.getInputString().length() > 0){ // checks that input is NOT empty before executing deletion
-					MainApp.setInputString(MainApp.getInputString().substring(0, MainApp.getInputString().length()-1)); // ACTUAL DELETION
+				if (getInputString().length() > 0){ // checks that input is NOT empty before executing deletion
+					setInputString(getInputString().substring(0, getInputString().length()-1)); // ACTUAL DELETION
 				}
 			}
 		}); // end of anonymous class definition
@@ -125,24 +172,119 @@ public class MainWindow extends JFrame {
 		lettersRow2.add(new KeyboardButton("Return") { // Addition of return button key (with definition as an anonymous inner class)
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
-				ReturnButtonLogic.buttonPressed(); 
+				ReturnButtonLogic.buttonPressed(MainWindow.this); 
 			}			
 		}); // End of return button definition
 		keyPanel.add(lettersRow2);
 		
-		// Row of Letters ZXCVBNM + '.' key
+		// Row of Letters ZXCVBNM + '.' key + Watch key
 		JPanel lettersRow3 = new JPanel(new FlowLayout());
 		for (String input: jButtonSet3){
 			lettersRow3.add(new InputButton(input));
 		}
+		watchButton = new KeyboardButton("Watch") { // Addition of watch button (with definition as an anonymous inner class)
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				WatchButtonLogic.buttonPressed(MainWindow.this);
+			}
+		}; // End of watch button definition
+		lettersRow3.add(watchButton);
 		keyPanel.add(lettersRow3);
 		
 		// Creation of spacebar in row 5
 		JPanel lettersRow4 = new JPanel(new FlowLayout());
 		lettersRow4.add(new InputButton("Spacebar"));
+		lettersRow4.add(new KeyboardButton("Diagnostics") { // shows the measurements of each stage (see DiagnosticsPanel)
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				showDiagnostics();
+			}
+		});
+		lettersRow4.add(new KeyboardButton("New Window") { // another board, sharing the quotes fetched (see QuoteEngine)
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				MainApp.openWindow();
+			}
+		});
 		keyPanel.add(lettersRow4);
 		
 		mainPanel.add(keyPanel);
 	} // End of createKeyPanel definition
+	
+	/**
+	 * Shows the diagnostics window, creating it the first time. It stays open alongside the main window.
+	 */
+	private void showDiagnostics(){
+		if (diagnosticsDialog == null){
+			diagnosticsDialog = new JDialog(this, "Diagnostics");
+			diagnosticsDialog.add(new DiagnosticsPanel());
+			diagnosticsDialog.pack();
+			diagnosticsDialog.setLocationRelativeTo(this);
+		}
+		diagnosticsDialog.setVisible(true);
+	}
+	
+	@Override
+	public String getInputString(){
+		return inputStringLabel.getText();
+	}
+	
+	@Override
+	public void setInputString(String str){
+		inputStringLabel.setText(str);
+		if (suggesting){ // before then, looking the listing up would start the engine on this thread
+			suggestionLabel.setText(ReturnButtonLogic.suggest(str)); // e.g. companies starting with what is typed
+		}
+	}
+	
+	/**
+	 * Starts suggesting symbols for the one being typed, once the engine has started in the background (see MainApp).
+	 * Must be called on the Swing event thread.
+	 */
+	public void startSuggesting(){
+		suggesting = true;
+		suggestionLabel.setText(ReturnButtonLogic.suggest(getInputString()));
+	}
+	
+	@Override
+	public void setOutputString(String str){
+		repaintCoalescer.cancel();
+		quoteTableModel.clear();
+		outputStringLabel.setText(str);
+	}
+	
+	@Override
+	public void setQuotes(List<Quote> quotes){
+		repaintCoalescer.cancel(); // changes to the previous quotes are no longer of interest
+		long start = System.nanoTime();
+		outputStringLabel.setText("");
+		quoteTableModel.setQuotes(quotes);
+		Metrics.record(Metrics.Stage.RENDER, start);
+	}
+	
+	@Override
+	public void updateQuotes(List<Quote> changed){
+		repaintCoalescer.submit(changed); // applied on the event thread, no more than once per frame
+	}
+	
+	@Override
+	public void setWatching(boolean watching){
+		watchButton.setText(watching ? "Stop" : "Watch");
+	}
+	
+	@Override
+	public void setBusy(boolean busy){
+		progressBar.setVisible(busy);
+	}
+	
+	@Override
+	public void showAlert(final String str){
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				alertLabel.setText(str);
+			}
+		});
+	}
 
 } // End of Main Window class definition
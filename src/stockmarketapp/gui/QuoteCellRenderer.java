@@ -0,0 +1,92 @@
+package stockmarketapp.gui;
+
+import java.awt.Color;
+import java.awt.Component;
+
+import javax.swing.JLabel;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import stockmarketapp.staticlogic.Price;
+
+/**
+ * Draws the numeric cells of the quote board: prices and their moving statistics, and price changes (including the
+ * trend over the statistics' window) coloured
+ * red if negative, green if positive and black if there has been no change.
+ * The numbers are written exactly from their fixed-point values (see Price), always with at least two decimal places.
+ * Missing numbers (e.g. for a symbol that was not found) are left blank, and the numbers of stale quotes are grey.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteCellRenderer extends DefaultTableCellRenderer {
+
+	private static final long serialVersionUID = 1L;
+
+	/** the colour of a negative price change */
+	private static final Color FALLING = new Color(0xFF0000);
+	/** the colour of a positive price change */
+	private static final Color RISING = new Color(0x4AA02C);
+	/** the colour of the numbers of a stale quote (see Quote.isStale) */
+	private static final Color STALE = Color.GRAY;
+	/** the number of decimal places always shown, e.g. 123.40 */
+	private static final int MIN_DECIMALS = 2;
+
+	/** where the text of a cell is written; cells are only drawn on the event thread, one at a time */
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Constructor method for the renderer. Numbers are aligned to the right.
+	 */
+	public QuoteCellRenderer() {
+		setHorizontalAlignment(JLabel.RIGHT);
+	}
+
+	@Override
+	public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+			int row, int column) {
+		super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+		int modelColumn = table.convertColumnIndexToModel(column);
+		boolean isPercent = modelColumn == QuoteTableModel.CHANGE_PERCENT || modelColumn == QuoteTableModel.TREND_PERCENT;
+		boolean isChange = modelColumn == QuoteTableModel.CHANGE || isPercent;
+		long number = value instanceof Long ? (Long) value : 0;
+
+		if (!(value instanceof Long)){
+			setText("");
+		}
+		else {
+			text.setLength(0);
+			if (isPercent && number > 0){
+				text.append('+');
+			}
+			Price.append(text, number, QuoteTableModel.decimalsOf(modelColumn), MIN_DECIMALS);
+			setText(isPercent ? text.append('%').toString() : text.toString());
+		}
+
+		if (!isSelected){
+			if (isStale(table, row)){
+				setForeground(STALE); // the last good price, while the current one is obtained
+			}
+			else if (isChange && number < 0){
+				setForeground(FALLING); // price change is negative, therefore displayed in red
+			}
+			else if (isChange && number > 0){
+				setForeground(RISING); // price change is positive, therefore displayed in green
+			}
+			else {
+				setForeground(table.getForeground());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if the quote shown in a row of the view is stale
+	 */
+	private static boolean isStale(JTable table, int row) {
+		if (!(table.getModel() instanceof QuoteTableModel)){
+			return false;
+		}
+		return ((QuoteTableModel) table.getModel()).getQuote(table.convertRowIndexToModel(row)).isStale();
+	}
+
+} // End of QuoteCellRenderer definition
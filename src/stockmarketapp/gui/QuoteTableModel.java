@@ -0,0 +1,275 @@
+package stockmarketapp.gui;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+import stockmarketapp.staticlogic.AnalyticsEngine;
+import stockmarketapp.staticlogic.Price;
+import stockmarketapp.staticlogic.Quote;
+import stockmarketapp.staticlogic.QuoteFormatter;
+import stockmarketapp.staticlogic.Settings;
+
+/**
+ * Holds the quotes shown in the quote board (a JTable), one row per symbol.
+ * When quotes change, only the rows holding them are reported as updated, so the table only repaints those rows
+ * (and only if they are visible), instead of the whole output being laid out again.
+ * Next to the prices are their moving statistics (see AnalyticsEngine), read as each cell is drawn once the engine
+ * has been handed over (see setAnalytics); until then, e.g. while quotes saved at exit are shown, they are blank.
+ * Must only be used on the Swing event thread.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteTableModel extends AbstractTableModel {
+
+	private static final long serialVersionUID = 1L;
+
+	// column indices
+	public static final int SYMBOL = 0;
+	public static final int NAME = 1;
+	public static final int PRICE = 2;
+	public static final int CURRENCY = 3;
+	public static final int CHANGE = 4;
+	public static final int CHANGE_PERCENT = 5;
+	public static final int AVERAGE = 6;
+	public static final int EXPONENTIAL_AVERAGE = 7;
+	public static final int LOW = 8;
+	public static final int HIGH = 9;
+	public static final int STANDARD_DEVIATION = 10;
+	public static final int TREND_PERCENT = 11;
+	public static final int DIVIDEND = 12;
+	public static final int MARKET_CAP = 13;
+	public static final int EXCHANGE = 14;
+
+	/** headers for data values; %d is replaced by the number of prices the moving statistics cover */
+	private static final String[] COLUMN_NAMES = {
+		"Symbol", "Name", "Price", "", "Change", "Change %", "SMA %d", "EMA %d", "Low %d", "High %d", "Std Dev %d",
+		"Trend %d %%", "Dividends", "Market Cap", "Stock Exchange"
+	};
+
+	/** the moving statistics shown next to the prices, those of the first window; null until set */
+	private AnalyticsEngine analytics;
+	/** the number of prices the statistics shown cover */
+	private final int window = Settings.getAnalyticsWindows()[0];
+
+	/** the quotes on display, one per row */
+	private final List<Quote> rows = new ArrayList<Quote>();
+	/** the row of each symbol */
+	private final Map<String, Integer> rowBySymbol = new HashMap<String, Integer>();
+
+	/**
+	 * Displays a new set of quotes, replacing whatever was on display.
+	 * @param quotes the quotes, in the order they are to be displayed (unless the table is sorted)
+	 */
+	public void setQuotes(List<Quote> quotes) {
+		rows.clear();
+		rowBySymbol.clear();
+		for (Quote quote : quotes){
+			rowBySymbol.put(key(quote.getSymbol()), rows.size());
+			rows.add(quote);
+		}
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Updates some of the quotes on display. Quotes for symbols that are not on display are ignored.
+	 * An update is reported for each run of consecutive rows that changed, so rows in between that did not change
+	 * are not repainted; the table only repaints the part of each run that is visible.
+	 * @param changed the quotes that have changed
+	 */
+	public void updateQuotes(Collection<Quote> changed) {
+		BitSet changedRows = new BitSet(rows.size());
+		for (Quote quote : changed){
+			Integer row = rowBySymbol.get(key(quote.getSymbol()));
+			if (row != null){
+				rows.set(row, quote);
+				changedRows.set(row);
+			}
+		}
+		for (int first = changedRows.nextSetBit(0); first >= 0; first = changedRows.nextSetBit(first)){
+			int end = changedRows.nextClearBit(first); // the row after the run
+			fireTableRowsUpdated(first, end - 1);
+			first = end;
+		}
+	}
+
+	/**
+	 * Starts showing the moving statistics of the quotes. Separate from the constructor, so that a board can be shown
+	 * before the engine, which takes a while to start, is ready (see MainApp).
+	 * @param analytics the moving statistics (see ReturnButtonLogic.getAnalytics)
+	 */
+	public void setAnalytics(AnalyticsEngine analytics) {
+		this.analytics = analytics;
+		if (!rows.isEmpty()){
+			fireTableRowsUpdated(0, rows.size() - 1);
+		}
+	}
+
+	/**
+	 * Removes all the quotes from display.
+	 */
+	public void clear() {
+		setQuotes(new ArrayList<Quote>());
+	}
+
+	/**
+	 * @param row the index of a row in the model (not the view, which may be sorted)
+	 * @return the quote shown in the row
+	 */
+	public Quote getQuote(int row) {
+		return rows.get(row);
+	}
+
+	/**
+	 * @return the quotes on display, in the order they were given
+	 */
+	public List<Quote> getQuotes() {
+		return new ArrayList<Quote>(rows);
+	}
+
+	@Override
+	public int getRowCount() {
+		return rows.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMN_NAMES.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return String.format(COLUMN_NAMES[column], window);
+	}
+
+	/**
+	 * The numeric columns hold Longs, exactly as they were worked out (see Price): prices and their statistics in ticks,
+	 * changes and percentages in thousandths. They sort as numbers, and are written and coloured by QuoteCellRenderer
+	 * (see decimalsOf). A missing number is null.
+	 */
+	@Override
+	public Class<?> getColumnClass(int column) {
+		switch (column) {
+		case PRICE:
+		case CHANGE:
+		case CHANGE_PERCENT:
+		case AVERAGE:
+		case EXPONENTIAL_AVERAGE:
+		case LOW:
+		case HIGH:
+		case STANDARD_DEVIATION:
+		case TREND_PERCENT:
+			return Long.class;
+		default:
+			return String.class;
+		}
+	}
+
+	/**
+	 * @param column a numeric column
+	 * @return the number of decimal places held in the column's values
+	 */
+	static int decimalsOf(int column) {
+		switch (column) {
+		case CHANGE:
+		case CHANGE_PERCENT:
+		case TREND_PERCENT:
+			return Price.DISPLAY_DECIMALS;
+		default:
+			return Price.DECIMALS;
+		}
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		Quote quote = rows.get(row);
+		boolean ok = quote.getStatus() == Quote.Status.OK;
+		switch (column) {
+		case SYMBOL:
+			return quote.getSymbol();
+		case NAME:
+			return describe(quote);
+		case PRICE:
+			return ok ? number(quote.getLastTicks()) : null;
+		case CURRENCY:
+			return quote.getCurrency();
+		case CHANGE:
+			return ok ? number(QuoteFormatter.displayedChange(quote)) : null;
+		case CHANGE_PERCENT:
+			return ok ? number(QuoteFormatter.displayedChangePercent(quote)) : null;
+		case AVERAGE:
+			return ok ? statistic(quote, AnalyticsEngine.Statistic.AVERAGE) : null;
+		case EXPONENTIAL_AVERAGE:
+			return ok ? statistic(quote, AnalyticsEngine.Statistic.EXPONENTIAL_AVERAGE) : null;
+		case LOW:
+			return ok ? statistic(quote, AnalyticsEngine.Statistic.LOW) : null;
+		case HIGH:
+			return ok ? statistic(quote, AnalyticsEngine.Statistic.HIGH) : null;
+		case STANDARD_DEVIATION:
+			return ok ? statistic(quote, AnalyticsEngine.Statistic.STANDARD_DEVIATION) : null;
+		case TREND_PERCENT:
+			return ok ? statistic(quote, AnalyticsEngine.Statistic.CHANGE_PERCENT) : null; // thousandths of a percent
+		case DIVIDEND:
+			return ok ? quote.getDividend() : "";
+		case MARKET_CAP:
+			return ok ? quote.getMarketCap() : "";
+		case EXCHANGE:
+			return quote.getExchange();
+		default:
+			throw new IndexOutOfBoundsException("no column " + column);
+		}
+	}
+
+	/**
+	 * @param quote a quote
+	 * @param statistic a moving statistic
+	 * @return the statistic for the quote's symbol (see Statistic for its units), or null if there are too few prices
+	 *         for it (or none yet)
+	 */
+	private Long statistic(Quote quote, AnalyticsEngine.Statistic statistic) {
+		if (analytics == null){
+			return null;
+		}
+		return number(analytics.get(quote.getSymbol(), 0, statistic));
+	}
+
+	/**
+	 * @param value a fixed-point number, or Price.NONE
+	 * @return the number, or null if it is missing
+	 */
+	private static Long number(long value) {
+		return value == Price.NONE ? null : value;
+	}
+
+	/**
+	 * @param quote a quote
+	 * @return the company name (marked if the quote is stale), or an explanation if the quote has no usable data
+	 */
+	private static String describe(Quote quote) {
+		switch (quote.getStatus()) {
+		case NOT_FOUND:
+			return "not found";
+		case UNAVAILABLE:
+			return "Data unavailable for " + quote.getName();
+		case FAILED:
+			return "Unable to retrieve data: " + quote.getError();
+		default:
+			return quote.isStale() ? quote.getName() + " (stale)" : quote.getName();
+		}
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form used to match changed quotes with those on display
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+} // End of QuoteTableModel definition
@@ -0,0 +1,107 @@
+package stockmarketapp.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import stockmarketapp.staticlogic.Metrics;
+import stockmarketapp.staticlogic.Quote;
+
+/**
+ * Collects changed quotes from any thread and applies them to the quote board on the Swing event thread,
+ * no more than once per frame. Quotes that change several times before the board is updated are only applied once
+ * (the latest version), so a burst of changes costs a single update of the display.
+ * The table model then reports each run of consecutive changed rows separately, so only those rows are repainted.
+ * @author Sadruddin Junejo
+ *
+ */
+public class RepaintCoalescer {
+
+	/** the shortest time between two updates of the board, in milliseconds (about 60 frames per second) */
+	private static final int FRAME_MILLIS = 16;
+
+	/** the model of the board the quotes are applied to */
+	private final QuoteTableModel board;
+	/** the quotes waiting to be applied, by symbol. Guarded by this. */
+	private Map<String, Quote> pending = new LinkedHashMap<String, Quote>();
+	/** true if an update of the board has been scheduled but not yet carried out. Guarded by this. */
+	private boolean scheduled;
+	/** the time of the last update of the board, in System.nanoTime() terms. Only used on the event thread. */
+	private long lastFlush;
+	/** runs the scheduled update on the event thread */
+	private final Timer timer;
+
+	/**
+	 * Constructor method for the coalescer.
+	 * @param board the model of the board the quotes are applied to
+	 */
+	public RepaintCoalescer(QuoteTableModel board) {
+		this.board = board;
+		this.timer = new Timer(0, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				flush();
+			}
+		});
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * Adds changed quotes to those waiting to be applied, scheduling an update of the board if none is scheduled.
+	 * May be called on any thread.
+	 * @param changed the quotes that have changed
+	 */
+	public void submit(List<Quote> changed) {
+		synchronized (this) {
+			for (Quote quote : changed){
+				pending.put(quote.getSymbol().toUpperCase(Locale.ROOT), quote);
+			}
+			if (scheduled){
+				return; // the scheduled update will include these quotes
+			}
+			scheduled = true;
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				// waits until a frame has passed since the last update
+				long sinceLast = (System.nanoTime() - lastFlush) / 1000000;
+				timer.setInitialDelay((int) Math.max(0, FRAME_MILLIS - sinceLast));
+				timer.restart();
+			}
+		});
+	}
+
+	/**
+	 * Discards any quotes waiting to be applied, e.g. because a new set of quotes has been put on the board.
+	 */
+	public synchronized void cancel() {
+		pending = new LinkedHashMap<String, Quote>();
+	}
+
+	/**
+	 * Applies the waiting quotes to the board.
+	 */
+	private void flush() {
+		Map<String, Quote> changed;
+		synchronized (this) {
+			changed = pending;
+			pending = new LinkedHashMap<String, Quote>();
+			scheduled = false;
+		}
+		if (!changed.isEmpty()){
+			long start = System.nanoTime();
+			board.updateQuotes(new ArrayList<Quote>(changed.values()));
+			Metrics.record(Metrics.Stage.RENDER, start);
+		}
+		lastFlush = System.nanoTime();
+	}
+
+} // End of RepaintCoalescer definition
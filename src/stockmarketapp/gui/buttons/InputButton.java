@@ -1,7 +1,9 @@
 package stockmarketapp.gui.buttons;
 import java.awt.event.ActionEvent;
 
-import stockmarketapp.MainApp;
+import javax.swing.SwingUtilities;
+
+import stockmarketapp.staticlogic.QuoteView;
 
 /**
  * Button that, when pressed, adds a specific character to the input string.
@@ -24,20 +26,21 @@ public class InputButton extends KeyboardButton {
 	 * Executed when the button is pressed.
 	 */
 	public void actionPerformed(ActionEvent e) { 
+		QuoteView view = (QuoteView) SwingUtilities.getWindowAncestor(this); // the window the button is in
 		// The below condition is used to make sure that there is no more than one space in succession.
 		// This condition is necessary for testing the length of individual symbols.
 		if (!(
-				MainApp.getInputString().length() != 0	
-				&& MainApp.getInputString().charAt(MainApp.getInputString().length()-1) == ' ' 
+				view.getInputString().length() != 0	
+				&& view.getInputString().charAt(view.getInputString().length()-1) == ' ' 
 				&& this.getText().equals("Spacebar")
 				)){
 			if (this.getText().equals("Spacebar")){ // If the spacebar is used
-				MainApp.setInputString(MainApp.getInputString() + " "); // add a space.
+				view.setInputString(view.getInputString() + " "); // add a space.
 			}
-			else if (MainApp.getInputString().length()-MainApp.getInputString().lastIndexOf(' ') != 9){ // checks if the current symbol is no longer than 8 characters
+			else if (view.getInputString().length()-view.getInputString().lastIndexOf(' ') != 9){ // checks if the current symbol is no longer than 8 characters
 				// The line that is executed if the above condition if fulfilled.
 				// Adds a character unique to the button pressed.
-				MainApp.setInputString(MainApp.getInputString() + this.getText());
+				view.setInputString(view.getInputString() + this.getText());
 			}
 		
 		}
@@ -0,0 +1,70 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * The firing of a price alert: which rule fired, on which quote, and when (see AlertEngine).
+ * @author Sadruddin Junejo
+ *
+ */
+public final class Alert {
+
+	private final AlertRule rule;
+	/** the quote that met the rule's condition */
+	private final Quote quote;
+	/** the value of the rule's field in the quote, in the field's units */
+	private final long value;
+	/** when the quote was obtained, in milliseconds since 1970 */
+	private final long time;
+
+	/**
+	 * Constructor method for an alert.
+	 * @param rule the rule that fired
+	 * @param quote the quote that met the rule's condition
+	 * @param value the value of the rule's field in the quote, in the field's units
+	 * @param time when the quote was obtained, in milliseconds since 1970
+	 */
+	public Alert(AlertRule rule, Quote quote, long value, long time) {
+		this.rule = rule;
+		this.quote = quote;
+		this.value = value;
+		this.time = time;
+	}
+
+	public AlertRule getRule() {
+		return rule;
+	}
+
+	public Quote getQuote() {
+		return quote;
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return a description for the user, e.g. "AAPL change% is -3.12 (AAPL change &lt; -3%)"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder(64).append(quote.getSymbol()).append(' ');
+		switch (rule.getField()) {
+		case PRICE:
+			out.append("price is ");
+			Price.append(out, value, Price.DECIMALS);
+			break;
+		case CHANGE:
+			out.append("change is ");
+			Price.append(out, value, Price.DECIMALS);
+			break;
+		default:
+			out.append("change% is ");
+			Price.append(out, value, Price.DISPLAY_DECIMALS);
+		}
+		return out.append(" (").append(rule.getText()).append(')').toString();
+	}
+
+} // End of Alert definition
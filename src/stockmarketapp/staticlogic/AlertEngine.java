@@ -0,0 +1,268 @@
+package stockmarketapp.staticlogic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Checks every quote obtained against the price alerts set for its symbol (see AlertRule), and tells the listeners
+ * (e.g. the window and AlertLog) about each alert that fires.
+ * The rules are indexed by symbol and then by field, so a quote is only checked against its own rules, and each field
+ * is only worked out if a rule tests it. The rules of one symbol and field are held in primitive arrays, and checking
+ * them creates no objects unless one fires.
+ * Rules are edge-triggered: a rule fires when its condition becomes met, not for as long as it is met, and may only fire
+ * again once the field has moved back by the rule's hysteresis. A rule whose condition is already met the first time
+ * its symbol is seen fires straight away; a "crosses" rule only fires once its symbol has been seen on one side.
+ * May be used from any thread.
+ * @author Sadruddin Junejo
+ *
+ */
+public class AlertEngine {
+
+	// the conditions, as held in RuleSet.conditions
+	private static final byte ABOVE = (byte) AlertRule.Condition.ABOVE.ordinal();
+	private static final byte BELOW = (byte) AlertRule.Condition.BELOW.ordinal();
+	// states of an ABOVE or BELOW rule
+	private static final byte ARMED = 0;
+	private static final byte FIRED = 1;
+	// states of a CROSSES rule: the side the field was last seen on, plus a flag set once it has been far enough away
+	// (the hysteresis) from the threshold since the rule last fired
+	private static final byte SIDE_UNKNOWN = 0;
+	private static final byte SIDE_ABOVE = 1;
+	private static final byte SIDE_BELOW = 2;
+	private static final byte SIDE_MASK = 3;
+	private static final byte CROSS_ARMED = 4;
+
+	private static final AlertRule.Field[] FIELDS = AlertRule.Field.values();
+
+	/** the rules of each symbol, by upper-case symbol. Guarded by this. */
+	private final Map<String, SymbolRules> index = new HashMap<String, SymbolRules>();
+	/** the number of rules. Guarded by this. */
+	private int ruleCount;
+	/** who is told when an alert fires */
+	private final List<AlertListener> listeners = new CopyOnWriteArrayList<AlertListener>();
+
+	/**
+	 * The rules of one symbol, by field (null where there are none).
+	 */
+	private static final class SymbolRules {
+		final RuleSet[] byField = new RuleSet[FIELDS.length];
+	}
+
+	/**
+	 * The rules of one symbol that test one field, with their thresholds and states in primitive arrays.
+	 */
+	private static final class RuleSet {
+		AlertRule[] rules = new AlertRule[2];
+		byte[] conditions = new byte[2];
+		long[] thresholds = new long[2];
+		long[] hystereses = new long[2];
+		byte[] states = new byte[2];
+		int count;
+
+		void add(AlertRule rule) {
+			if (count == rules.length){
+				rules = Arrays.copyOf(rules, count * 2);
+				conditions = Arrays.copyOf(conditions, count * 2);
+				thresholds = Arrays.copyOf(thresholds, count * 2);
+				hystereses = Arrays.copyOf(hystereses, count * 2);
+				states = Arrays.copyOf(states, count * 2);
+			}
+			rules[count] = rule;
+			conditions[count] = (byte) rule.getCondition().ordinal();
+			thresholds[count] = rule.getThreshold();
+			hystereses[count] = rule.getHysteresis();
+			states[count] = rule.getCondition() == AlertRule.Condition.CROSSES ? SIDE_UNKNOWN : ARMED;
+			count++;
+		}
+
+		/**
+		 * Checks a new value of the field against every rule, updating their states.
+		 * @return fired, with the alerts of the rules that fired added (created if needed)
+		 */
+		List<Alert> check(Quote quote, long value, long time, List<Alert> fired) {
+			for (int i = 0; i < count; i++){
+				long threshold = thresholds[i];
+				long hysteresis = hystereses[i];
+				byte state = states[i];
+				boolean fire = false;
+				if (conditions[i] == ABOVE){
+					if (state == ARMED && value > threshold){
+						fire = true;
+						states[i] = FIRED;
+					}
+					else if (state == FIRED && value <= threshold - hysteresis){
+						states[i] = ARMED;
+					}
+				}
+				else if (conditions[i] == BELOW){
+					if (state == ARMED && value < threshold){
+						fire = true;
+						states[i] = FIRED;
+					}
+					else if (state == FIRED && value >= threshold + hysteresis){
+						states[i] = ARMED;
+					}
+				}
+				else {
+					int lastSide = state & SIDE_MASK;
+					int side = value > threshold ? SIDE_ABOVE : value < threshold ? SIDE_BELOW : lastSide;
+					boolean armed = (state & CROSS_ARMED) != 0
+							|| value >= threshold + hysteresis || value <= threshold - hysteresis;
+					if (lastSide == SIDE_UNKNOWN){
+						states[i] = (byte) (side | (armed ? CROSS_ARMED : 0));
+					}
+					else if (armed && side != lastSide){
+						fire = true;
+						states[i] = (byte) side; // no longer armed
+					}
+					else if (armed){
+						states[i] = (byte) (lastSide | CROSS_ARMED);
+					}
+					// otherwise the field is wavering around the threshold since the rule last fired: nothing changes
+				}
+				if (fire){
+					if (fired == null){
+						fired = new ArrayList<Alert>();
+					}
+					fired.add(new Alert(rules[i], quote, value, time));
+				}
+			}
+			return fired;
+		} // End of check
+	}
+
+	/**
+	 * Adds a rule. Its symbol's quotes are checked against it from the next time they are obtained.
+	 * @param rule the rule
+	 */
+	public synchronized void add(AlertRule rule) {
+		SymbolRules rules = index.get(rule.getSymbol());
+		if (rules == null){
+			rules = new SymbolRules();
+			index.put(rule.getSymbol(), rules);
+		}
+		int field = rule.getField().ordinal();
+		if (rules.byField[field] == null){
+			rules.byField[field] = new RuleSet();
+		}
+		rules.byField[field].add(rule);
+		ruleCount++;
+	}
+
+	/**
+	 * Adds the rules in a text, one per line. Blank lines and lines starting with "#" are ignored;
+	 * lines that are not valid rules are reported on the error stream and skipped.
+	 * @param in the rules
+	 * @return the number of rules added
+	 * @throws IOException if the rules cannot be read
+	 */
+	public int load(Reader in) throws IOException {
+		BufferedReader lines = new BufferedReader(in);
+		int added = 0;
+		int lineNumber = 0;
+		for (String line = lines.readLine(); line != null; line = lines.readLine()){
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")){
+				continue;
+			}
+			try {
+				add(AlertRule.parse(line));
+				added++;
+			} catch (IllegalArgumentException e) {
+				System.err.println("Ignoring alert rule on line " + lineNumber + ": " + e.getMessage());
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Removes every rule.
+	 */
+	public synchronized void clear() {
+		index.clear();
+		ruleCount = 0;
+	}
+
+	/**
+	 * @return the number of rules
+	 */
+	public synchronized int getRuleCount() {
+		return ruleCount;
+	}
+
+	/**
+	 * @param listener told about every alert that fires from now on
+	 */
+	public void addListener(AlertListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener no longer told about alerts
+	 */
+	public void removeListener(AlertListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Checks the quotes just obtained against their symbols' rules, and tells the listeners about the alerts that fire,
+	 * once the rules have been checked. Quotes without usable data are ignored.
+	 * @param quotes the quotes
+	 * @param now when the quotes were obtained, in milliseconds since 1970
+	 * @return the number of alerts that fired
+	 */
+	public int evaluate(List<Quote> quotes, long now) {
+		List<Alert> fired = null;
+		synchronized (this) {
+			if (index.isEmpty()){
+				return 0;
+			}
+			for (int i = 0, n = quotes.size(); i < n; i++){
+				Quote quote = quotes.get(i);
+				if (quote.getStatus() != Quote.Status.OK){
+					continue;
+				}
+				SymbolRules rules = index.get(key(quote.getSymbol()));
+				if (rules == null){
+					continue;
+				}
+				for (int field = 0; field < FIELDS.length; field++){
+					RuleSet set = rules.byField[field];
+					if (set != null){
+						long value = AlertRule.valueOf(quote, FIELDS[field]);
+						if (value != Price.NONE){
+							fired = set.check(quote, value, now, fired);
+						}
+					}
+				}
+			}
+		}
+		if (fired == null){
+			return 0;
+		}
+		for (Alert alert : fired){
+			for (AlertListener listener : listeners){
+				listener.alertFired(alert);
+			}
+		}
+		return fired.size();
+	} // End of evaluate
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form the rules are indexed by
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+} // End of AlertEngine definition
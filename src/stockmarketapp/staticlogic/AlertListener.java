@@ -0,0 +1,16 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * Is told when a price alert fires (see AlertEngine).
+ * @author Sadruddin Junejo
+ *
+ */
+public interface AlertListener {
+
+	/**
+	 * Called on the thread that obtained the quote, after the rules have been checked; must not take long.
+	 * @param alert the alert that fired
+	 */
+	void alertFired(Alert alert);
+
+} // End of AlertListener definition
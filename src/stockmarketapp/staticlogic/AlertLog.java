@@ -0,0 +1,56 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Writes every alert that fires to a file, one line per alert: the time it was obtained (in ISO-8601 form),
+ * followed by its description (see Alert.toString).
+ * @author Sadruddin Junejo
+ *
+ */
+public class AlertLog implements AlertListener {
+
+	/** the file the alerts are added to; kept open. Guarded by this. */
+	private final Writer out;
+
+	/**
+	 * Constructor method for the log, opening (or creating) the file.
+	 * @param file the file the alerts are added to
+	 * @throws IOException if the file cannot be opened
+	 */
+	public AlertLog(Path file) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null){
+			Files.createDirectories(dir);
+		}
+		this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	@Override
+	public synchronized void alertFired(Alert alert) {
+		try {
+			out.write(Instant.ofEpochMilli(alert.getTime()).toString());
+			out.write(' ');
+			out.write(alert.toString());
+			out.write(System.lineSeparator());
+			out.flush(); // alerts are rare, and each should be there if the program stops
+		} catch (IOException e) {
+			System.err.println("Unable to log alert " + alert + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Closes the file.
+	 * @throws IOException if it cannot be closed
+	 */
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+} // End of AlertLog definition
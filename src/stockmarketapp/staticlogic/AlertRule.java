@@ -0,0 +1,198 @@
+package stockmarketapp.staticlogic;
+
+import java.util.Locale;
+
+/**
+ * A price alert, written in a small language of its own, one rule per line:
+ * <code>&lt;symbol&gt; &lt;field&gt; &lt;condition&gt; &lt;value&gt;[%] [hysteresis &lt;amount&gt;]</code>, for example
+ * <code>AAPL change &lt; -3%</code>, <code>MSFT price crosses 200</code> or <code>VOD.L price &gt;= 250 hysteresis 2</code>.
+ * The fields are "price", "change" and "change%" (a change whose value ends in "%" is a percentage change too).
+ * The conditions are &lt;, &lt;=, &gt;, &gt;= (or "below" and "above"), and "crosses", which is met by a move to
+ * either side of the value. A rule fires when its condition becomes met (see AlertEngine), and may only fire again
+ * once the field has moved back by at least the hysteresis, which stops a price wavering around the value from firing
+ * it again and again. The hysteresis is in the units of the field; by default it is a small fraction of the value
+ * (see Settings.getAlertHysteresis).
+ * Values are held as whole numbers: prices and changes in ticks and percentages in thousandths (see Price).
+ * @author Sadruddin Junejo
+ *
+ */
+public final class AlertRule {
+
+	/** the values of a quote a rule can test */
+	public enum Field {
+		/** the current price, in ticks */
+		PRICE,
+		/** the change since the previous close, in ticks */
+		CHANGE,
+		/** the change since the previous close, in thousandths of a percent */
+		CHANGE_PERCENT
+	}
+
+	/** when a rule fires */
+	public enum Condition {
+		/** when the field rises above the threshold */
+		ABOVE,
+		/** when the field falls below the threshold */
+		BELOW,
+		/** when the field moves from one side of the threshold to the other */
+		CROSSES
+	}
+
+	/** the rule as written */
+	private final String text;
+	/** the stock symbol, in upper case */
+	private final String symbol;
+	private final Field field;
+	private final Condition condition;
+	/** the value the field is compared with, in the field's units; for ABOVE and BELOW the rule fires beyond it */
+	private final long threshold;
+	/** how far back past the threshold the field must move before the rule may fire again, in the field's units */
+	private final long hysteresis;
+
+	/**
+	 * Constructor method for a rule.
+	 * @param text the rule as written
+	 * @param symbol the stock symbol
+	 * @param field the value of a quote the rule tests
+	 * @param condition when the rule fires
+	 * @param threshold the value the field is compared with, in the field's units; the rule fires on values strictly
+	 *                  above (ABOVE) or below (BELOW) it
+	 * @param hysteresis how far back the field must move before the rule may fire again, at least 1
+	 */
+	public AlertRule(String text, String symbol, Field field, Condition condition, long threshold, long hysteresis) {
+		this.text = text;
+		this.symbol = symbol.toUpperCase(Locale.ROOT);
+		this.field = field;
+		this.condition = condition;
+		this.threshold = threshold;
+		this.hysteresis = Math.max(1, hysteresis);
+	}
+
+	/**
+	 * Compiles a rule written in the rule language (see above).
+	 * @param text the rule
+	 * @return the rule
+	 * @throws IllegalArgumentException if the rule is not valid, with an explanation
+	 */
+	public static AlertRule parse(String text) {
+		String[] words = text.trim().split("\\s+");
+		if (words.length != 4 && words.length != 6){
+			throw new IllegalArgumentException("expected <symbol> <field> <condition> <value> [hysteresis <amount>]: " + text);
+		}
+		String value = words[3];
+		boolean percent = value.endsWith("%");
+		if (percent){
+			value = value.substring(0, value.length() - 1);
+		}
+
+		Field field;
+		String fieldName = words[1].toLowerCase(Locale.ROOT);
+		if (fieldName.equals("price") && !percent){
+			field = Field.PRICE;
+		}
+		else if (fieldName.equals("change")){
+			field = percent ? Field.CHANGE_PERCENT : Field.CHANGE;
+		}
+		else if (fieldName.equals("change%")){
+			field = Field.CHANGE_PERCENT;
+		}
+		else {
+			throw new IllegalArgumentException("unknown field " + words[1] + ": " + text);
+		}
+
+		long threshold = toUnits(value, field, text);
+		Condition condition;
+		String op = words[2].toLowerCase(Locale.ROOT);
+		if (op.equals(">") || op.equals("above")){
+			condition = Condition.ABOVE;
+		}
+		else if (op.equals(">=")){
+			condition = Condition.ABOVE;
+			threshold--; // whole numbers, so "at least t" is "above t - 1"
+		}
+		else if (op.equals("<") || op.equals("below")){
+			condition = Condition.BELOW;
+		}
+		else if (op.equals("<=")){
+			condition = Condition.BELOW;
+			threshold++;
+		}
+		else if (op.equals("crosses")){
+			condition = Condition.CROSSES;
+		}
+		else {
+			throw new IllegalArgumentException("unknown condition " + words[2] + ": " + text);
+		}
+
+		long hysteresis;
+		if (words.length == 6){
+			if (!words[4].equalsIgnoreCase("hysteresis")){
+				throw new IllegalArgumentException("expected hysteresis, found " + words[4] + ": " + text);
+			}
+			String amount = words[5].endsWith("%") ? words[5].substring(0, words[5].length() - 1) : words[5];
+			hysteresis = Math.abs(toUnits(amount, field, text));
+		}
+		else {
+			hysteresis = Math.round(Math.abs(threshold) * Settings.getAlertHysteresis());
+		}
+		return new AlertRule(text.trim(), words[0], field, condition, threshold, hysteresis);
+	} // End of parse
+
+	/**
+	 * @return the number, in the units of the field
+	 */
+	private static long toUnits(String number, Field field, String text) {
+		long ticks = Price.parse(number);
+		if (ticks == Price.NONE){
+			throw new IllegalArgumentException("not a number: " + number + ": " + text);
+		}
+		// percentages are kept to DISPLAY_DECIMALS places, prices to DECIMALS
+		return field == Field.CHANGE_PERCENT ? Math.round(ticks / 10.0) : ticks;
+	}
+
+	/**
+	 * @param quote a quote with usable data
+	 * @param field a field
+	 * @return the value of the field in the quote, or Price.NONE if it is missing
+	 */
+	static long valueOf(Quote quote, Field field) {
+		switch (field) {
+		case PRICE:
+			return quote.getLastTicks();
+		case CHANGE:
+			return quote.getChangeTicks();
+		default:
+			return Price.percent(quote.getChangeTicks(), quote.getPreviousCloseTicks());
+		}
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public String getSymbol() {
+		return symbol;
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	public Condition getCondition() {
+		return condition;
+	}
+
+	public long getThreshold() {
+		return threshold;
+	}
+
+	public long getHysteresis() {
+		return hysteresis;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+} // End of AlertRule definition
@@ -0,0 +1,229 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Works out moving statistics for every symbol as its quotes are obtained: the simple and exponential moving averages,
+ * the lowest and highest price, the standard deviation of the price and the change in price over one or more windows,
+ * each covering a number of the most recent prices (see Settings.getAnalyticsWindows).
+ * Adding a price takes the same time however large the windows are, and creates no objects once a symbol has been
+ * seen, so thousands of symbols can be updated on every refresh. A symbol seen for the first time starts with the
+ * most recent prices kept in the tick store, if there is one, so its statistics are meaningful straight away.
+ * Statistics are kept for a limited number of symbols, those least recently updated or read being forgotten first, so
+ * that looking up ever more symbols (e.g. a batch run, see BatchApp) does not use ever more memory.
+ * May be used from any thread.
+ * @author Sadruddin Junejo
+ *
+ */
+public class AnalyticsEngine {
+
+	/** the statistics available for each window */
+	public enum Statistic {
+		/** the simple moving average, in ticks */
+		AVERAGE,
+		/** the exponential moving average, in ticks */
+		EXPONENTIAL_AVERAGE,
+		/** the lowest price, in ticks */
+		LOW,
+		/** the highest price, in ticks */
+		HIGH,
+		/** the standard deviation of the price, in ticks */
+		STANDARD_DEVIATION,
+		/** the change from the oldest to the latest price, in thousandths of a percent */
+		CHANGE_PERCENT
+	}
+
+	/** the number of prices covered by each window */
+	private final int[] windows;
+	/** the number of prices covered by the largest window */
+	private final int largestWindow;
+	/** where the first prices of a symbol are read from, or null */
+	private final TickStore store;
+	/** the largest number of symbols statistics are kept for; 0 to keep none */
+	private final int maxSymbols;
+	/** the windows of each symbol, by upper-case symbol, least recently used first. Guarded by itself. */
+	private final LinkedHashMap<String, SymbolWindows> symbols;
+
+	/**
+	 * The windows of one symbol, guarded by the object itself.
+	 */
+	private static final class SymbolWindows {
+		final RollingWindow[] windows;
+
+		SymbolWindows(int[] sizes) {
+			windows = new RollingWindow[sizes.length];
+			for (int i = 0; i < sizes.length; i++){
+				windows[i] = new RollingWindow(sizes[i]);
+			}
+		}
+
+		synchronized void add(long price) {
+			for (RollingWindow window : windows){
+				window.add(price);
+			}
+		}
+
+		synchronized long get(int window, Statistic statistic) {
+			RollingWindow rolling = windows[window];
+			switch (statistic) {
+			case AVERAGE:
+				return rolling.getAverage();
+			case EXPONENTIAL_AVERAGE:
+				return rolling.getExponentialAverage();
+			case LOW:
+				return rolling.getLow();
+			case HIGH:
+				return rolling.getHigh();
+			case STANDARD_DEVIATION:
+				return rolling.getStandardDeviation();
+			default:
+				return rolling.getChangePercent();
+			}
+		}
+	}
+
+	/**
+	 * Constructor method for the engine.
+	 * @param windows the number of prices covered by each window, each at least 2
+	 * @param maxSymbols the largest number of symbols statistics are kept for (see Settings.getAnalyticsSymbols);
+	 *                   0 to keep none, when prices are not looked at at all
+	 * @param store where the first prices of a symbol are read from, or null to start every symbol afresh
+	 */
+	public AnalyticsEngine(int[] windows, final int maxSymbols, TickStore store) {
+		if (windows.length == 0){
+			throw new IllegalArgumentException("at least one window is needed");
+		}
+		int largest = 0;
+		for (int size : windows){
+			if (size < 2){
+				throw new IllegalArgumentException("a window must cover at least 2 prices: " + size);
+			}
+			largest = Math.max(largest, size);
+		}
+		this.windows = windows.clone();
+		this.largestWindow = largest;
+		this.maxSymbols = maxSymbols;
+		this.store = store;
+		// ordered by access, to forget the least recently used
+		this.symbols = new LinkedHashMap<String, SymbolWindows>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SymbolWindows> eldest) {
+				return size() > maxSymbols;
+			}
+		};
+	}
+
+	/**
+	 * Adds the latest prices to the statistics of their symbols. Quotes without a price are ignored.
+	 * A symbol seen for the first time is started from the prices kept in the tick store (if any) before these, so
+	 * it does not matter whether these have been written to the store yet.
+	 * @param quotes the quotes just obtained
+	 * @param now the time the quotes were obtained, in milliseconds since 1970
+	 */
+	public void update(List<Quote> quotes, long now) {
+		if (maxSymbols == 0){
+			return;
+		}
+		for (int i = 0, n = quotes.size(); i < n; i++){
+			Quote quote = quotes.get(i);
+			long price = quote.getLastTicks();
+			if (quote.getStatus() != Quote.Status.OK || price == Price.NONE){
+				continue;
+			}
+			String key = key(quote.getSymbol());
+			SymbolWindows existing;
+			synchronized (symbols) {
+				existing = symbols.get(key);
+			}
+			if (existing != null){
+				existing.add(price);
+			}
+			else {
+				SymbolWindows created = new SymbolWindows(windows);
+				seed(created, key, now); // not under the lock, as it may read the tick store
+				created.add(price);
+				synchronized (symbols) {
+					existing = symbols.get(key);
+					if (existing == null){
+						symbols.put(key, created);
+					}
+				}
+				if (existing != null){
+					existing.add(price); // another thread saw the symbol first
+				}
+			}
+		}
+	} // End of update
+
+	/**
+	 * Starts the windows of a symbol seen for the first time from the prices kept in the tick store that were obtained
+	 * before now, i.e. not the latest price, which may or may not have been stored yet.
+	 */
+	private void seed(SymbolWindows created, String symbol, long now) {
+		if (store == null){
+			return;
+		}
+		try {
+			for (Tick tick : store.lastTicks(symbol, largestWindow - 1, now - 1)){
+				created.add(tick.getLast());
+			}
+		} catch (IOException e) {
+			// started afresh
+		}
+	}
+
+	/**
+	 * Reads a statistic of a symbol. No objects are created.
+	 * @param symbol the stock symbol
+	 * @param window the index of the window, as given to the constructor
+	 * @param statistic the statistic wanted
+	 * @return the statistic (see Statistic for its units), or Price.NONE if the symbol has too few prices for it
+	 */
+	public long get(String symbol, int window, Statistic statistic) {
+		SymbolWindows found;
+		synchronized (symbols) {
+			found = symbols.get(key(symbol)); // also keeps the symbol, e.g. while it is on a board
+		}
+		return found == null ? Price.NONE : found.get(window, statistic);
+	}
+
+	/**
+	 * @return the number of prices covered by each window
+	 */
+	public int[] getWindows() {
+		return windows.clone();
+	}
+
+	/**
+	 * @return the number of symbols with statistics
+	 */
+	public int getSymbolCount() {
+		synchronized (symbols) {
+			return symbols.size();
+		}
+	}
+
+	/**
+	 * Forgets the statistics of every symbol.
+	 */
+	public void clear() {
+		synchronized (symbols) {
+			symbols.clear();
+		}
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form the statistics are kept under
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+} // End of AnalyticsEngine definition
@@ -0,0 +1,50 @@
+package stockmarketapp.staticlogic;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors used to run slow work (such as reading from Yahoo! Quotes) away from the Swing event thread.
+ * Virtual threads are used when the running JVM supports them; otherwise a cached pool of daemon threads is used,
+ * so that background work never prevents the program from exiting.
+ * @author Sadruddin Junejo
+ *
+ */
+public class BackgroundExecutor {
+
+	/**
+	 * Creates a new executor for background tasks.
+	 * @param name the prefix given to the names of the threads created by the executor
+	 * @return an executor backed by virtual threads if available, or by daemon platform threads otherwise
+	 */
+	public static ExecutorService create(final String name) {
+		try {
+			// Looked up reflectively so that the program still runs on JVMs without virtual threads.
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(daemonThreadFactory(name));
+		}
+	}
+
+	/**
+	 * Creates a thread factory producing named daemon threads.
+	 * @param name the prefix given to the names of the threads
+	 * @return the thread factory
+	 */
+	public static ThreadFactory daemonThreadFactory(final String name) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+} // End of BackgroundExecutor definition
@@ -0,0 +1,141 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Looks up every symbol in a list of any size and writes the quotes as CSV or JSON, without a window.
+ * The symbols are read and processed a window at a time: each window is fetched with the same processing as the
+ * return button (see ReturnButtonLogic.fetchQuotes), and its quotes are written out as soon as they have arrived.
+ * Only one window of symbols and quotes is held at once, so memory use does not grow with the size of the list.
+ * Duplicate symbols are removed within a window, but not across windows.
+ * @author Sadruddin Junejo
+ *
+ */
+public class BatchProcessor {
+
+	/** The formats the quotes can be written in */
+	public enum Format {
+		/** a header line followed by a line for each quote (see QuoteFormatter.appendCsv) */
+		CSV,
+		/** a JSON object on a line of its own for each quote (see QuoteFormatter.appendJson) */
+		JSON
+	}
+
+	/** the approximate number of characters of output for one quote, used to size the output buffer */
+	private static final int CHARS_PER_QUOTE = 160;
+
+	/** where the quotes are written */
+	private final Writer out;
+	/** the format the quotes are written in */
+	private final Format format;
+	/** the number of symbols fetched at once */
+	private final int windowSize;
+	/** the number of quotes written so far */
+	private long written;
+	/** the number of quotes whose data could not be obtained */
+	private long failed;
+
+	/**
+	 * Constructor method for the processor.
+	 * @param out where the quotes are written
+	 * @param format the format the quotes are written in
+	 * @param windowSize the number of symbols fetched at once; large enough to keep every parallel request
+	 *                   busy (see Settings.getChunkSize and Settings.getParallelism)
+	 */
+	public BatchProcessor(Writer out, Format format, int windowSize) {
+		this.out = out;
+		this.format = format;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Reads all the symbols and writes a quote for each, in the order the symbols were read.
+	 * Should a whole window fail, its symbols are written with the status FAILED and processing carries on.
+	 * @param symbols the symbols, separated by spaces, commas, '+' signs or line breaks, and possibly surrounded by quotes
+	 * @throws IOException if the symbols cannot be read or the quotes cannot be written
+	 * @throws InterruptedIOException if the thread is interrupted
+	 */
+	public void process(Reader symbols) throws IOException {
+		StringBuilder output = new StringBuilder(windowSize * CHARS_PER_QUOTE);
+		if (format == Format.CSV){
+			output.append(QuoteFormatter.CSV_HEADER).append('\n');
+		}
+		List<String> window = new ArrayList<String>(windowSize);
+		StringBuilder symbol = new StringBuilder(16);
+		int c;
+		do {
+			c = symbols.read();
+			if (c == -1 || c == ',' || c == '+' || c == '"' || Character.isWhitespace(c)){
+				if (symbol.length() > 0){
+					window.add(symbol.toString());
+					symbol.setLength(0);
+				}
+				if (window.size() == windowSize || (c == -1 && !window.isEmpty())){
+					processWindow(window, output);
+					window.clear();
+				}
+			}
+			else {
+				symbol.append((char) c);
+			}
+		} while (c != -1);
+		if (output.length() > 0){ // only the header, if there were no symbols
+			out.write(output.toString());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Fetches one window of symbols and writes its quotes.
+	 * @param window the symbols
+	 * @param output a buffer for the output, reused for every window
+	 */
+	private void processWindow(List<String> window, StringBuilder output) throws IOException {
+		List<Quote> quotes;
+		try {
+			quotes = ReturnButtonLogic.fetchQuotes(window);
+		} catch (InterruptedIOException e) {
+			throw e;
+		} catch (IOException e) {
+			quotes = new ArrayList<Quote>(window.size());
+			for (String symbol : window){
+				quotes.add(Quote.failed(symbol, e.getMessage()));
+			}
+		}
+		for (Quote quote : quotes){
+			if (format == Format.CSV){
+				QuoteFormatter.appendCsv(output, quote);
+			}
+			else {
+				QuoteFormatter.appendJson(output, quote);
+			}
+			if (quote.getStatus() == Quote.Status.FAILED){
+				failed++;
+			}
+		}
+		written += quotes.size();
+		out.write(output.toString());
+		out.flush(); // the quotes are passed on as soon as they have arrived
+		output.setLength(0);
+	}
+
+	/**
+	 * @return the number of quotes written so far
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	/**
+	 * @return the number of quotes written so far whose data could not be obtained
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+} // End of BatchProcessor definition
@@ -0,0 +1,105 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * Stops requests being sent to a feed that keeps failing, so that they fail at once instead of each waiting for
+ * a timeout, and so that the feed is not kept busy while it recovers.
+ * (1) Closed: requests are sent. After a number of failures in a row, the breaker opens.
+ * (2) Open: requests fail at once, for a set time.
+ * (3) Half open: once that time has passed, a single request is sent as a trial. If it succeeds the breaker closes;
+ *     if it fails the breaker opens again. Other requests fail at once until the trial is over.
+ * May be used from any thread.
+ * @author Sadruddin Junejo
+ *
+ */
+public class CircuitBreaker {
+
+	/** The states of a breaker */
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	/** the number of failures in a row that opens the breaker */
+	private final int failureThreshold;
+	/** the time the breaker stays open for, in milliseconds */
+	private final long openMillis;
+
+	/** Guarded by this. */
+	private State state = State.CLOSED;
+	/** the number of failures in a row. Guarded by this. */
+	private int failures;
+	/** when the breaker may next let a trial request through, in System.nanoTime() terms. Guarded by this. */
+	private long openUntil;
+	/** true while the trial request of a half-open breaker is in progress. Guarded by this. */
+	private boolean trialInProgress;
+
+	/**
+	 * Constructor method for a breaker, which starts closed.
+	 * @param failureThreshold the number of failures in a row that opens the breaker
+	 * @param openMillis the time the breaker stays open for before a trial request, in milliseconds
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * Asks whether a request may be sent. If it may, exactly one of onSuccess, onFailure or onAbandoned
+	 * must be called once it is over.
+	 * @throws FeedException (CIRCUIT_OPEN) if the request may not be sent
+	 */
+	public synchronized void acquire() throws FeedException {
+		if (state == State.OPEN && System.nanoTime() - openUntil >= 0){
+			state = State.HALF_OPEN;
+		}
+		if (state == State.OPEN || (state == State.HALF_OPEN && trialInProgress)){
+			Metrics.count(Metrics.Counter.SHORT_CIRCUITED, 1);
+			long waitMillis = Math.max(0, (openUntil - System.nanoTime()) / 1000000);
+			throw new FeedException(FeedException.Kind.CIRCUIT_OPEN,
+					"the feed is failing; trying again in " + (waitMillis / 1000 + 1) + " s", null);
+		}
+		if (state == State.HALF_OPEN){
+			trialInProgress = true;
+		}
+	}
+
+	/**
+	 * Reports that a request succeeded, closing the breaker.
+	 */
+	public synchronized void onSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+		trialInProgress = false;
+	}
+
+	/**
+	 * Reports that a request failed, opening the breaker if it was a trial or if too many have failed in a row.
+	 */
+	public synchronized void onFailure() {
+		failures++;
+		if (state == State.HALF_OPEN || failures >= failureThreshold){
+			state = State.OPEN;
+			openUntil = System.nanoTime() + openMillis * 1000000;
+		}
+		trialInProgress = false;
+	}
+
+	/**
+	 * Reports that a request was given up (e.g. cancelled by the user) without telling whether the feed works.
+	 */
+	public synchronized void onAbandoned() {
+		trialInProgress = false;
+	}
+
+	/**
+	 * @return the state of the breaker
+	 */
+	public synchronized State getState() {
+		if (state == State.OPEN && System.nanoTime() - openUntil >= 0){
+			return State.HALF_OPEN; // the next request will be a trial
+		}
+		return state;
+	}
+
+} // End of CircuitBreaker definition
@@ -0,0 +1,130 @@
+package stockmarketapp.staticlogic;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * The details of one stock exchange: the currency its prices are in and when it trades.
+ * Exchanges trade from Monday to Friday between their opening and closing times, in their own time zone;
+ * public holidays are not taken into account.
+ * Exchanges are created by ExchangeRegistry, which numbers them in the order they are listed (see getIndex).
+ * @author Sadruddin Junejo
+ *
+ */
+public final class Exchange {
+
+	/** the name of the exchange as supplied by Yahoo! Quotes, e.g. "NYSE" */
+	private final String code;
+	/** the ISO code of the currency, e.g. "USD" (or "GBp" for pence) */
+	private final String currency;
+	/** the currency symbol displayed after prices, e.g. "$" */
+	private final String currencySymbol;
+	/** the time zone the trading hours are in */
+	private final ZoneId zone;
+	/** the time trading starts */
+	private final LocalTime opens;
+	/** the time trading ends */
+	private final LocalTime closes;
+	/** the position of the exchange in the registry */
+	private final int index;
+
+	/**
+	 * Constructor method for an exchange.
+	 * @param code the name of the exchange as supplied by Yahoo! Quotes
+	 * @param currency the ISO code of the currency
+	 * @param currencySymbol the currency symbol displayed after prices
+	 * @param zone the time zone the trading hours are in
+	 * @param opens the time trading starts
+	 * @param closes the time trading ends
+	 * @param index the position of the exchange in the registry
+	 */
+	Exchange(String code, String currency, String currencySymbol, ZoneId zone, LocalTime opens, LocalTime closes, int index) {
+		if (!opens.isBefore(closes)){
+			throw new IllegalArgumentException(code + ": opens at " + opens + " but closes at " + closes);
+		}
+		this.code = code;
+		this.currency = currency;
+		this.currencySymbol = currencySymbol;
+		this.zone = zone;
+		this.opens = opens;
+		this.closes = closes;
+		this.index = index;
+	}
+
+	/**
+	 * @param epochMillis a point in time, in milliseconds since 1970 (as System.currentTimeMillis)
+	 * @return true if the exchange is trading at that time
+	 */
+	public boolean isOpen(long epochMillis) {
+		ZonedDateTime local = Instant.ofEpochMilli(epochMillis).atZone(zone);
+		LocalTime time = local.toLocalTime();
+		return isTradingDay(local.toLocalDate()) && !time.isBefore(opens) && time.isBefore(closes);
+	}
+
+	/**
+	 * @param epochMillis a point in time, in milliseconds since 1970
+	 * @return the most recent time at or before then that trading ended, in milliseconds since 1970
+	 */
+	public long lastClose(long epochMillis) {
+		LocalDate date = Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+		for (int i = 0; i < 8; i++, date = date.minusDays(1)){ // a trading day is never more than a week ago
+			if (isTradingDay(date)){
+				long close = date.atTime(closes).atZone(zone).toInstant().toEpochMilli();
+				if (close <= epochMillis){
+					return close;
+				}
+			}
+		}
+		throw new IllegalStateException("no trading day found before " + Instant.ofEpochMilli(epochMillis));
+	}
+
+	/**
+	 * @param date a date in the exchange's time zone
+	 * @return true if the exchange trades on that day
+	 */
+	private static boolean isTradingDay(LocalDate date) {
+		DayOfWeek day = date.getDayOfWeek();
+		return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
+	public String getCurrencySymbol() {
+		return currencySymbol;
+	}
+
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	public LocalTime getOpens() {
+		return opens;
+	}
+
+	public LocalTime getCloses() {
+		return closes;
+	}
+
+	/**
+	 * @return the position of the exchange in the registry, from 0; useful as an index into arrays
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return code + " (" + currency + ", " + zone + " " + opens + "-" + closes + ")";
+	}
+
+} // End of Exchange definition
@@ -0,0 +1,190 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Knows the stock exchanges the program can display prices for, replacing the chain of comparisons in detCurrency.
+ * The exchanges are listed in the exchanges.csv resource next to this class, or in the file named by the
+ * "stockmarketapp.exchangeFile" system property. Each line gives an exchange's name as supplied by Yahoo! Quotes,
+ * its ISO currency code, the currency symbol displayed, its time zone and its opening and closing times, e.g.
+ * <code>NYSE,USD,$,America/New_York,09:30,16:00</code>
+ * Lines starting with '#' are ignored.
+ * Exchanges are looked up by name in a hash table that compares characters in place, so a name can be looked up
+ * directly in the parser's buffer (see QuoteRow.exchange) without creating any objects.
+ * @author Sadruddin Junejo
+ *
+ */
+public class ExchangeRegistry {
+
+	/** the registry used by the program, loaded when first needed */
+	private static ExchangeRegistry defaultRegistry;
+
+	/** the exchanges, in the order they are listed */
+	private final List<Exchange> exchanges;
+	/** the exchanges, by hash of their name (open addressing with linear probing) */
+	private final Exchange[] table;
+	/** table.length - 1; the table's length is a power of two */
+	private final int mask;
+
+	/**
+	 * Constructor method for a registry.
+	 * @param in the list of exchanges, in the format described above
+	 * @throws IOException if the list cannot be read or is not in the expected format
+	 */
+	public ExchangeRegistry(Reader in) throws IOException {
+		List<Exchange> read = new ArrayList<Exchange>();
+		QuoteTokenizer tokenizer = new QuoteTokenizer(in);
+		while (tokenizer.next()){
+			QuoteTokenizer.QuoteRow row = tokenizer.row();
+			if (row.length(0) > 0 && row.charAt(0, 0) == '#'){
+				continue;
+			}
+			if (row.getFieldCount() != 6){
+				throw new IOException("exchange " + (read.size() + 1) + ": expected 6 columns, found " + row.getFieldCount());
+			}
+			try {
+				read.add(new Exchange(row.valueString(0).trim(), row.valueString(1).trim(), row.valueString(2).trim(),
+						ZoneId.of(row.valueString(3).trim()), LocalTime.parse(row.valueString(4).trim()),
+						LocalTime.parse(row.valueString(5).trim()), read.size()));
+			} catch (RuntimeException e) { // an unknown time zone, a badly written time, or closing before opening
+				throw new IOException("exchange " + (read.size() + 1) + ": " + e.getMessage(), e);
+			}
+		}
+		exchanges = Collections.unmodifiableList(read);
+		table = new Exchange[Integer.highestOneBit(Math.max(1, read.size()) * 4) * 2]; // at most a quarter full
+		mask = table.length - 1;
+		for (Exchange exchange : read){
+			String code = exchange.getCode();
+			int slot = hash(code, 0, code.length()) & mask;
+			while (table[slot] != null){
+				if (table[slot].getCode().equals(code)){
+					throw new IOException("exchange " + code + " is listed more than once");
+				}
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = exchange;
+		}
+	}
+
+	/**
+	 * @return the registry used by the program, loaded from exchanges.csv or the file named by the
+	 *         "stockmarketapp.exchangeFile" system property the first time it is needed
+	 * @throws IllegalStateException if the list of exchanges cannot be read
+	 */
+	public static synchronized ExchangeRegistry getDefault() {
+		if (defaultRegistry == null){
+			String file = Settings.getString("exchangeFile", null);
+			try (Reader in = file != null ? Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8) : openResource()) {
+				defaultRegistry = new ExchangeRegistry(in);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to read the list of stock exchanges: " + e.getMessage(), e);
+			}
+		}
+		return defaultRegistry;
+	}
+
+	/**
+	 * @return the exchanges.csv resource
+	 */
+	private static Reader openResource() throws IOException {
+		InputStream in = ExchangeRegistry.class.getResourceAsStream("exchanges.csv");
+		if (in == null){
+			throw new IOException("exchanges.csv not found");
+		}
+		return new InputStreamReader(in, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Looks up an exchange by name, without creating any objects.
+	 * @param data the characters the name is in
+	 * @param start the index of the name's first character
+	 * @param end the index after the name's last character
+	 * @return the exchange, or null if it is not known
+	 */
+	public Exchange lookup(char[] data, int start, int end) {
+		int length = end - start;
+		for (int slot = hash(data, start, end) & mask; table[slot] != null; slot = (slot + 1) & mask){
+			String code = table[slot].getCode();
+			if (code.length() == length){
+				int i = 0;
+				while (i < length && code.charAt(i) == data[start + i]){
+					i++;
+				}
+				if (i == length){
+					return table[slot];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Looks up an exchange by name, or by part of a string (e.g. a name within quotes), without creating any objects.
+	 * @param str the string the name is in
+	 * @param start the index of the name's first character
+	 * @param end the index after the name's last character
+	 * @return the exchange, or null if it is not known
+	 */
+	public Exchange lookup(CharSequence str, int start, int end) {
+		int length = end - start;
+		for (int slot = hash(str, start, end) & mask; table[slot] != null; slot = (slot + 1) & mask){
+			String code = table[slot].getCode();
+			if (code.length() == length){
+				int i = 0;
+				while (i < length && code.charAt(i) == str.charAt(start + i)){
+					i++;
+				}
+				if (i == length){
+					return table[slot];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param name the name of an exchange
+	 * @return the exchange, or null if it is not known
+	 */
+	public Exchange lookup(String name) {
+		return lookup(name, 0, name.length());
+	}
+
+	/**
+	 * @return every exchange, in the order they are listed; an exchange's position is its index (see Exchange.getIndex)
+	 */
+	public List<Exchange> getExchanges() {
+		return exchanges;
+	}
+
+	/**
+	 * The same hash as String.hashCode, spread so that the low bits used for the table depend on all the characters.
+	 */
+	private static int hash(char[] data, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++){
+			h = 31 * h + data[i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static int hash(CharSequence str, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++){
+			h = 31 * h + str.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+} // End of ExchangeRegistry definition
@@ -0,0 +1,93 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+
+/**
+ * Thrown when data could not be obtained from the quote feed.
+ * The reason for the failure is described by a {@link Kind}, so that callers can decide
+ * how to react (and how to explain the problem to the user) without inspecting messages.
+ * @author Sadruddin Junejo
+ *
+ */
+public class FeedException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The different reasons for which a request to the feed can fail */
+	public enum Kind {
+		/** the URL of the feed is not valid */
+		MALFORMED_URL,
+		/** no connection could be made to the feed */
+		CONNECT,
+		/** the feed took too long to respond */
+		TIMEOUT,
+		/** the feed responded with an HTTP error status */
+		HTTP_STATUS,
+		/** the connection failed while the response was being read */
+		READ,
+		/** the feed has failed repeatedly, so no requests are sent to it for a while (see CircuitBreaker) */
+		CIRCUIT_OPEN,
+		/** too many requests to the feed are already in progress (see ResilientQuoteSource) */
+		OVERLOADED
+	}
+
+	/** the reason for the failure */
+	private final Kind kind;
+	/** the HTTP status returned by the feed, or -1 if no response was received */
+	private final int statusCode;
+
+	/**
+	 * Constructor for failures that happened before a response was received.
+	 * @param kind the reason for the failure
+	 * @param message a description of the failure
+	 * @param cause the underlying exception, may be null
+	 */
+	public FeedException(Kind kind, String message, Throwable cause) {
+		this(kind, -1, message, cause);
+	}
+
+	/**
+	 * Constructor for failures with a known HTTP status.
+	 * @param kind the reason for the failure
+	 * @param statusCode the HTTP status returned by the feed, or -1 if none
+	 * @param message a description of the failure
+	 * @param cause the underlying exception, may be null
+	 */
+	public FeedException(Kind kind, int statusCode, String message, Throwable cause) {
+		super(message, cause);
+		this.kind = kind;
+		this.statusCode = statusCode;
+	}
+
+	/**
+	 * @return the reason for the failure
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the HTTP status returned by the feed, or -1 if no response was received
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Determines whether the same request could succeed if it were sent again.
+	 * @return true for timeouts, connection problems and server-side (5xx or 429) errors
+	 */
+	public boolean isRetryable() {
+		switch (kind) {
+		case CONNECT:
+		case TIMEOUT:
+		case READ:
+			return true;
+		case HTTP_STATUS:
+			return statusCode >= 500 || statusCode == 429;
+		default:
+			return false;
+		}
+	}
+
+} // End of FeedException definition
@@ -0,0 +1,76 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Obtains quotes from Yahoo! Quotes, or from any feed that answers the same requests in the same format
+ * (such as StubQuoteServer). All the symbols are requested at once, in a single CSV download.
+ * @author Sadruddin Junejo
+ *
+ */
+public class HttpQuoteSource implements QuoteSource {
+
+	/** the address of Yahoo! Quotes' CSV download */
+	public static final String YAHOO_URL = "http://finance.yahoo.com/d/quotes.csv";
+	/** added to the end of the request: the columns wanted (name, last price, previous close, dividend, market cap, stock exchange, error indication, symbol) */
+	private static final String URLPOSTFIX = "&f=nl1pdj1xe1s";
+
+	/** added to the front of the symbols */
+	private final String urlPrefix;
+	/** sends the requests */
+	private final QuoteTransport transport;
+
+	/**
+	 * Constructor method for the source.
+	 * @param feedUrl the address of the feed, e.g. YAHOO_URL
+	 * @param transport sends the requests
+	 */
+	public HttpQuoteSource(String feedUrl, QuoteTransport transport) {
+		this.urlPrefix = feedUrl + "?s=";
+		this.transport = transport;
+	}
+
+	/**
+	 * Converts the symbols to a URL (see setupURL), requests the data and reads the response as it arrives
+	 * (see ReturnButtonLogic.parseQuotes).
+	 * @throws FeedException in case the data cannot be obtained from the feed
+	 */
+	@Override
+	public List<Quote> fetch(List<String> symbols) throws IOException {
+		return transport.get(setupURL(symbols), new QuoteTransport.BodyParser<List<Quote>>() {
+			@Override
+			public List<Quote> parse(Reader body) throws IOException {
+				return ReturnButtonLogic.parseQuotes(body);
+			}
+		});
+	}
+
+	/**
+	 * Creates the URL that is used to obtain data from the feed.
+	 * Each symbol is percent-encoded before they are joined with '+' signs: indices such as ^GSPC contain characters a
+	 * URL cannot, and a symbol handed on from a client (see QuoteServer), which arrives decoded, must not be able to
+	 * add parameters (e.g. "X&amp;f=...") to the request.
+	 * @param symbols the symbols
+	 * @return A complete URL
+	 */
+	String setupURL(List<String> symbols) {
+		StringBuilder url = new StringBuilder(urlPrefix);
+		for (int i = 0; i < symbols.size(); i++){
+			if (i > 0){
+				url.append('+');
+			}
+			url.append(URLEncoder.encode(symbols.get(i), StandardCharsets.UTF_8));
+		}
+		return url.append(URLPOSTFIX).toString();
+	}
+
+	@Override
+	public String toString() {
+		return urlPrefix.substring(0, urlPrefix.length() - 3);
+	}
+
+} // End of HttpQuoteSource definition
@@ -0,0 +1,126 @@
+package stockmarketapp.staticlogic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often each duration occurs, in the manner of HdrHistogram: durations are counted in buckets whose width
+ * grows with the duration, so that every recorded value is known to within 1/64 (about 1.6%) of itself whether it is
+ * a few nanoseconds or several hours, using a fixed 30 KB of counts. Recording a value takes a few atomic additions
+ * and creates no objects, so it can be done for every request. Percentiles are read from the counts.
+ * May be used from any thread; a reading taken while values are being recorded may miss the latest ones.
+ * @author Sadruddin Junejo
+ *
+ */
+public final class LatencyHistogram {
+
+	/** values below this are counted exactly, one bucket each */
+	private static final int EXACT = 128;
+	/** the number of buckets for each power of two above EXACT */
+	private static final int PER_POWER = 64;
+	/** the number of buckets, up to the largest long */
+	private static final int BUCKETS = EXACT + (63 - 7) * PER_POWER;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 * @param nanos the duration in nanoseconds; negative values are recorded as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)){
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @param value a non-negative value
+	 * @return the index of the bucket it is counted in
+	 */
+	private static int bucket(long value) {
+		if (value < EXACT){
+			return (int) value;
+		}
+		int power = 63 - Long.numberOfLeadingZeros(value); // at least 7
+		int shift = power - 6;
+		return EXACT + (power - 7) * PER_POWER + (int) (value >>> shift) - PER_POWER;
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the largest value counted in the bucket
+	 */
+	private static long highestIn(int bucket) {
+		if (bucket < EXACT){
+			return bucket;
+		}
+		int power = (bucket - EXACT) / PER_POWER + 7;
+		int shift = power - 6;
+		long lowest = (long) ((bucket - EXACT) % PER_POWER + PER_POWER) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the longest duration recorded, in nanoseconds, or 0 if there are none
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean duration, in nanoseconds, or 0 if there are none
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * @param percentile a percentile, from 0 to 100 (e.g. 99.9)
+	 * @return the duration, in nanoseconds, that the given percentage of the durations recorded did not exceed
+	 *         (to within the accuracy of the buckets), or 0 if there are none
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = count.get();
+		if (total == 0){
+			return 0;
+		}
+		long wanted = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			seen += counts.get(i);
+			if (seen >= wanted){
+				return Math.min(highestIn(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets every duration recorded.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++){
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+} // End of LatencyHistogram definition
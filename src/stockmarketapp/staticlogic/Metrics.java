@@ -0,0 +1,163 @@
+package stockmarketapp.staticlogic;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.EventType;
+
+/**
+ * Measures each stage of obtaining and showing quotes, so that a slow refresh can be traced to its cause: the time
+ * taken by each stage (see LatencyHistogram) and counts of what passed through them, such as bytes read, rows parsed
+ * and cache hits. Each measurement costs a few atomic additions; each stage is also reported to Java Flight Recorder
+ * while a recording is running (see StageEvent). The measurements can be seen in the diagnostics window and written
+ * to a file at intervals (see MetricsDump).
+ * @author Sadruddin Junejo
+ *
+ */
+public class Metrics {
+
+	/** the stages that are timed */
+	public enum Stage {
+		/** a lookup, from the symbols to their quotes, whether cached or fetched (see ReturnButtonLogic.fetchQuotes) */
+		REQUEST,
+		/** a request for one chunk of symbols to the quote source, including reading and parsing the response */
+		FETCH,
+		/** reading and parsing one response (streamed, so this includes waiting for the data to arrive) */
+		PARSE,
+		/** keeping the prices of one chunk (see TickStore) */
+		STORE,
+		/** adding the prices of one chunk to the moving statistics (see AnalyticsEngine) */
+		ANALYTICS,
+		/** checking the quotes of one chunk against the price alerts (see AlertEngine) */
+		ALERTS,
+		/** putting quotes on the quote board, on the Swing event thread */
+		RENDER
+	}
+
+	/** the things that are counted */
+	public enum Counter {
+		/** bytes received from the feed, as sent (i.e. compressed, if they were) */
+		BYTES_READ,
+		/** rows parsed from responses, one per symbol */
+		ROWS_PARSED,
+		/** responses that could not be parsed */
+		PARSE_ERRORS,
+		/** symbols the quote source does not know */
+		NOT_FOUND,
+		/** symbols turned away without a request, as they are not in the listing (see SymbolIndex) */
+		UNLISTED,
+		/** symbols whose quotes could not be obtained */
+		FAILED,
+		/** symbols whose quotes were taken from the cache */
+		CACHE_HITS,
+		/** symbols whose quotes were not in the cache */
+		CACHE_MISSES,
+		/** price alerts that fired */
+		ALERTS_FIRED,
+		/** requests not sent because the feed was failing (see CircuitBreaker) */
+		SHORT_CIRCUITED,
+		/** requests not sent because too many were in progress (see ResilientQuoteSource) */
+		OVERLOADED,
+		/** second requests sent because the first was slow (see ResilientQuoteSource) */
+		HEDGED,
+		/** second requests that answered before the first */
+		HEDGE_WINS,
+		/** stale quotes shown, while being refreshed or because the feed failed (see QuoteCache) */
+		STALE_SERVED
+	}
+
+	private static final Stage[] STAGES = Stage.values();
+	private static final Counter[] COUNTERS = Counter.values();
+
+	private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[STAGES.length];
+	private static final LongAdder[] TOTALS = new LongAdder[COUNTERS.length];
+	/** whether stages are reported to Java Flight Recorder; checked before an event is created */
+	private static final EventType EVENT_TYPE = EventType.getEventType(StageEvent.class);
+
+	static {
+		for (int i = 0; i < HISTOGRAMS.length; i++){
+			HISTOGRAMS[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < TOTALS.length; i++){
+			TOTALS[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records the time taken by a stage.
+	 * @param stage the stage
+	 * @param startNanos when the stage started, as given by System.nanoTime()
+	 */
+	public static void record(Stage stage, long startNanos) {
+		long elapsed = System.nanoTime() - startNanos;
+		HISTOGRAMS[stage.ordinal()].record(elapsed);
+		if (EVENT_TYPE.isEnabled()){
+			StageEvent event = new StageEvent();
+			event.stage = stage.name();
+			event.elapsed = elapsed;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Adds to a count.
+	 * @param counter what is counted
+	 * @param amount the amount to add
+	 */
+	public static void count(Counter counter, long amount) {
+		TOTALS[counter.ordinal()].add(amount);
+	}
+
+	/**
+	 * @param stage a stage
+	 * @return the times taken by the stage
+	 */
+	public static LatencyHistogram getHistogram(Stage stage) {
+		return HISTOGRAMS[stage.ordinal()];
+	}
+
+	/**
+	 * @param counter what is counted
+	 * @return the count
+	 */
+	public static long getCount(Counter counter) {
+		return TOTALS[counter.ordinal()].sum();
+	}
+
+	/**
+	 * Forgets every measurement.
+	 */
+	public static void reset() {
+		for (LatencyHistogram histogram : HISTOGRAMS){
+			histogram.reset();
+		}
+		for (LongAdder total : TOTALS){
+			total.reset();
+		}
+	}
+
+	/**
+	 * Describes every measurement as a table: for each stage, the number of times it ran and its mean, median,
+	 * 90th, 99th and 99.9th percentile and longest times in milliseconds, followed by the counts.
+	 * @return the description, one line per stage or counter
+	 */
+	public static String report() {
+		StringBuilder out = new StringBuilder(1024);
+		out.append(String.format(Locale.ROOT, "%-10s %9s %9s %9s %9s %9s %9s %9s%n",
+				"stage (ms)", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+		for (Stage stage : STAGES){
+			LatencyHistogram histogram = getHistogram(stage);
+			out.append(String.format(Locale.ROOT, "%-10s %9d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+					stage.name().toLowerCase(Locale.ROOT), histogram.getCount(), histogram.getMean() / 1e6,
+					histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+					histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6,
+					histogram.getMax() / 1e6));
+		}
+		out.append(String.format("%n"));
+		for (Counter counter : COUNTERS){
+			out.append(String.format(Locale.ROOT, "%-14s %14d%n", counter.name().toLowerCase(Locale.ROOT), getCount(counter)));
+		}
+		return out.toString();
+	}
+
+} // End of Metrics definition
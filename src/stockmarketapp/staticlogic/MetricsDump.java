@@ -0,0 +1,73 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the measurements (see Metrics.report) to a file at regular intervals and when the program exits, each headed
+ * by the time it was taken, so that a slow period can be looked into afterwards.
+ * @author Sadruddin Junejo
+ *
+ */
+public class MetricsDump implements Runnable {
+
+	/** the file the measurements are added to */
+	private final Path file;
+
+	/**
+	 * Constructor method for the dump.
+	 * @param file the file the measurements are added to
+	 */
+	public MetricsDump(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Starts adding the measurements to the file chosen with the "stockmarketapp.metricsFile" system property
+	 * every "stockmarketapp.metricsInterval" milliseconds (see Settings), and once more when the program exits.
+	 * Does nothing if no file is chosen.
+	 */
+	public static void startIfConfigured() {
+		String file = Settings.getMetricsFile();
+		if (file == null){
+			return;
+		}
+		MetricsDump dump = new MetricsDump(Paths.get(file));
+		long interval = Settings.getMetricsIntervalMillis();
+		ScheduledExecutorService timer =
+				Executors.newSingleThreadScheduledExecutor(BackgroundExecutor.daemonThreadFactory("metrics-dump"));
+		timer.scheduleWithFixedDelay(dump, interval, interval, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(dump, "metrics-dump-exit"));
+	}
+
+	/**
+	 * Adds the measurements to the file, reporting on the error stream if they cannot be written.
+	 */
+	@Override
+	public synchronized void run() {
+		try {
+			Path dir = file.toAbsolutePath().getParent();
+			if (dir != null){
+				Files.createDirectories(dir);
+			}
+			try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+				out.write("# " + Instant.now() + System.lineSeparator());
+				out.write(Metrics.report());
+				out.write(System.lineSeparator());
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to write measurements to " + file + ": " + e.getMessage());
+		}
+	}
+
+} // End of MetricsDump definition
@@ -0,0 +1,213 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * Works with prices held as whole numbers of ticks, one tick being a ten-thousandth of the currency unit
+ * (so 112.34 is held as 1123400). Prices are read from the feed straight into ticks and stay in ticks until they are
+ * written out, so changes and percentages are exact and the same prices always give the same output.
+ * Numbers are written without creating any objects (see append).
+ * @author Sadruddin Junejo
+ *
+ */
+public final class Price {
+
+	/** the number of decimal places of a price */
+	public static final int DECIMALS = 4;
+	/** the number of ticks in one unit of currency */
+	public static final long SCALE = 10000;
+	/** the number of decimal places changes and percentages are displayed with (as ReturnButtonLogic.round did) */
+	public static final int DISPLAY_DECIMALS = 3;
+	/** stands for a missing price, e.g. "N/A" in the feed */
+	public static final long NONE = Long.MIN_VALUE;
+
+	/** the powers of ten that fit in a long */
+	private static final long[] POWERS_OF_TEN = new long[19];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++){
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/** the largest number of digits parse handles itself, leaving room to scale the result to ticks */
+	private static final int MAX_DIGITS = 14;
+
+	private Price() {
+	}
+
+	/**
+	 * Reads a decimal number (such as "-12.345") directly into ticks. Digits beyond the fourth decimal place are rounded,
+	 * halves away from zero. Anything else that is numeric (for example, a number with an exponent) is read with
+	 * Double.parseDouble and rounded to the nearest tick.
+	 * @param data the characters the number is in
+	 * @param start the index of the number's first character
+	 * @param end the index after the number's last character
+	 * @return the number in ticks, or NONE if the characters are not a number (for example "N/A")
+	 */
+	public static long parse(char[] data, int start, int end) {
+		int i = start;
+		if (i >= end){
+			return NONE;
+		}
+		boolean negative = false;
+		if (data[i] == '-' || data[i] == '+'){
+			negative = data[i] == '-';
+			i++;
+		}
+		long ticks = 0;
+		int digits = 0;
+		int fractionDigits = -1; // -1 until the decimal point is found
+		boolean roundUp = false;
+		for (; i < end; i++){
+			char c = data[i];
+			if (c >= '0' && c <= '9'){
+				if (fractionDigits < DECIMALS){
+					ticks = ticks * 10 + (c - '0');
+					if (++digits > MAX_DIGITS){
+						return slowParse(data, start, end);
+					}
+					if (fractionDigits >= 0){
+						fractionDigits++;
+					}
+				}
+				else if (fractionDigits == DECIMALS){
+					roundUp = c >= '5'; // the first digit beyond a tick decides the rounding
+					fractionDigits++;
+				}
+			}
+			else if (c == '.' && fractionDigits < 0){
+				fractionDigits = 0;
+			}
+			else {
+				return slowParse(data, start, end);
+			}
+		}
+		if (digits == 0){
+			return NONE;
+		}
+		ticks *= POWERS_OF_TEN[DECIMALS - Math.min(DECIMALS, Math.max(0, fractionDigits))];
+		if (roundUp){
+			ticks++;
+		}
+		return negative ? -ticks : ticks;
+	}
+
+	/**
+	 * Reads a decimal number into ticks, as parse(char[], int, int) does.
+	 * @param str the number
+	 * @return the number in ticks, or NONE if the string is not a number
+	 */
+	public static long parse(String str) {
+		return parse(str.toCharArray(), 0, str.length());
+	}
+
+	/**
+	 * Reads a number with Double.parseDouble, for the formats parse does not handle itself.
+	 */
+	private static long slowParse(char[] data, int start, int end) {
+		try {
+			return fromDouble(Double.parseDouble(new String(data, start, end - start)));
+		} catch (NumberFormatException e) {
+			return NONE;
+		}
+	}
+
+	/**
+	 * @param value an amount of currency
+	 * @return the amount rounded to the nearest tick, or NONE if it is NaN or too large
+	 */
+	public static long fromDouble(double value) {
+		if (Double.isNaN(value) || Math.abs(value) >= (double) Long.MAX_VALUE / SCALE){
+			return NONE;
+		}
+		return Math.round(value * SCALE);
+	}
+
+	/**
+	 * @param ticks an amount in ticks
+	 * @return the amount in units of currency, or NaN if it is NONE
+	 */
+	public static double toDouble(long ticks) {
+		return ticks == NONE ? Double.NaN : ticks / (double) SCALE;
+	}
+
+	/**
+	 * Rounds a price change to the accuracy it is displayed with.
+	 * @param ticks a price change in ticks
+	 * @return the change in thousandths of the currency unit, rounded as Math.round rounds (halves upwards)
+	 */
+	public static long toDisplay(long ticks) {
+		if (ticks == NONE){
+			return NONE;
+		}
+		return divideRounded(ticks, POWERS_OF_TEN[DECIMALS - DISPLAY_DECIMALS]);
+	}
+
+	/**
+	 * Works out a price change as a percentage of the original price, exactly.
+	 * @param change the change in ticks
+	 * @param base the original price in ticks
+	 * @return the percentage in thousandths of a percent, rounded as Math.round rounds, or NONE if the base is zero or missing
+	 */
+	public static long percent(long change, long base) {
+		if (change == NONE || base == NONE || base == 0){
+			return NONE;
+		}
+		return divideRounded(change * 100 * POWERS_OF_TEN[DISPLAY_DECIMALS], base);
+	}
+
+	/**
+	 * Divides two whole numbers, rounding the result to the nearest whole number and halves upwards (as Math.round).
+	 */
+	private static long divideRounded(long dividend, long divisor) {
+		if (divisor < 0){
+			dividend = -dividend;
+			divisor = -divisor;
+		}
+		return Math.floorDiv(2 * dividend + divisor, 2 * divisor);
+	}
+
+	/**
+	 * Writes a fixed-point number in the same form as Double.toString writes an ordinary price: at least one digit
+	 * before and after the decimal point, and no trailing zeros after the first decimal place ("112.34", "-0.04", "3.0").
+	 * No objects are created.
+	 * @param out where the number is written
+	 * @param value the number, as a whole number of units of the last decimal place
+	 * @param decimals the number of decimal places held in the value (e.g. DECIMALS for ticks)
+	 * @return out
+	 */
+	public static StringBuilder append(StringBuilder out, long value, int decimals) {
+		return append(out, value, decimals, 1);
+	}
+
+	/**
+	 * Writes a fixed-point number with at least a given number of decimal places, and no trailing zeros beyond them
+	 * (with two places: "112.30", "0.0045", "12345678.00"). No objects are created.
+	 * @param out where the number is written
+	 * @param value the number, as a whole number of units of the last decimal place
+	 * @param decimals the number of decimal places held in the value (e.g. DECIMALS for ticks)
+	 * @param minDecimals the number of decimal places always written, from 1 to decimals
+	 * @return out
+	 */
+	public static StringBuilder append(StringBuilder out, long value, int decimals, int minDecimals) {
+		if (value == NONE){
+			return out.append("N/A");
+		}
+		if (value < 0){
+			out.append('-');
+			value = -value;
+		}
+		long scale = POWERS_OF_TEN[decimals];
+		out.append(value / scale).append('.');
+		long fraction = value % scale;
+		int digits = decimals;
+		while (digits > minDecimals && fraction % 10 == 0){ // trailing zeros are not written
+			fraction /= 10;
+			digits--;
+		}
+		for (long leading = POWERS_OF_TEN[digits - 1]; leading > 1 && leading > fraction; leading /= 10){
+			out.append('0'); // zeros after the decimal point, e.g. the first two in 0.005
+		}
+		return out.append(fraction);
+	}
+
+} // End of Price definition
@@ -0,0 +1,184 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Plans and carries out the requests needed to obtain the data for a list of symbols.
+ * Rather than putting every symbol into one (possibly enormous) request, the planner:
+ * (1) Removes duplicate symbols.
+ * (2) Splits the symbols into chunks of a limited size.
+ * (3) Requests the chunks at the same time, with no more than a set number of requests in progress at once.
+ * (4) Puts the results back together in the order the symbols were given.
+ * If the request for a chunk fails, the symbols in that chunk are given a FAILED quote explaining why,
+ * and the data for all the other symbols is still returned.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QueryPlanner {
+
+	/**
+	 * Obtains the data for a single chunk of symbols, typically in one request.
+	 */
+	public interface ChunkFetcher {
+		/**
+		 * @param symbols the symbols to obtain data for
+		 * @return a quote for each symbol that data was obtained for, in any order
+		 * @throws IOException if the data cannot be obtained
+		 */
+		List<Quote> fetch(List<String> symbols) throws IOException;
+	}
+
+	/** obtains the data for each chunk */
+	private final ChunkFetcher fetcher;
+	/** the maximum number of symbols in a chunk */
+	private final int chunkSize;
+	/** the maximum number of chunks requested at the same time */
+	private final int parallelism;
+	/** runs the requests for the chunks */
+	private final ExecutorService executor;
+
+	/**
+	 * Constructor method for the planner.
+	 * @param fetcher obtains the data for each chunk
+	 * @param chunkSize the maximum number of symbols in a chunk
+	 * @param parallelism the maximum number of chunks requested at the same time
+	 * @param executor runs the requests for the chunks
+	 */
+	public QueryPlanner(ChunkFetcher fetcher, int chunkSize, int parallelism, ExecutorService executor) {
+		if (chunkSize < 1 || parallelism < 1){
+			throw new IllegalArgumentException("chunkSize and parallelism must be at least 1");
+		}
+		this.fetcher = fetcher;
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+		this.executor = executor;
+	}
+
+	/**
+	 * Obtains the data for a list of symbols.
+	 * @param symbols the symbols, which may contain duplicates
+	 * @return one quote for each distinct symbol, in the order the symbols first appear; none if none are given
+	 * @throws IOException if no data at all could be obtained (the reason the first request failed)
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting; outstanding requests are cancelled
+	 */
+	public List<Quote> fetch(List<String> symbols) throws IOException {
+		if (symbols.isEmpty()){
+			return new ArrayList<Quote>(); // there is no request to make, and so no failure to report
+		}
+		List<String> distinct = new ArrayList<String>(new LinkedHashSet<String>(symbols));
+		List<List<String>> chunks = new ArrayList<List<String>>();
+		for (int i = 0; i < distinct.size(); i += chunkSize){
+			chunks.add(distinct.subList(i, Math.min(i + chunkSize, distinct.size())));
+		}
+		if (chunks.size() == 1){ // nothing to gain from handing the only request to another thread
+			return merge(distinct, fetcher.fetch(chunks.get(0)));
+		}
+
+		Map<String, Quote> results = new HashMap<String, Quote>(distinct.size() * 2);
+		IOException firstFailure = null;
+		int failedChunks = 0;
+
+		CompletionService<List<Quote>> completion = new ExecutorCompletionService<List<Quote>>(executor);
+		Map<Future<List<Quote>>, List<String>> pending = new HashMap<Future<List<Quote>>, List<String>>();
+		int nextChunk = 0;
+		try {
+			while (nextChunk < chunks.size() || !pending.isEmpty()){
+				// keeps up to 'parallelism' requests in progress
+				while (nextChunk < chunks.size() && pending.size() < parallelism){
+					final List<String> chunk = chunks.get(nextChunk++);
+					pending.put(completion.submit(new Callable<List<Quote>>() {
+						@Override
+						public List<Quote> call() throws IOException {
+							return fetcher.fetch(chunk);
+						}
+					}), chunk);
+				}
+				Future<List<Quote>> done = completion.take();
+				List<String> chunk = pending.remove(done);
+				try {
+					for (Quote quote : done.get()){
+						results.put(key(quote.getSymbol()), quote);
+					}
+				} catch (ExecutionException e) {
+					IOException failure = asIOException(e.getCause());
+					if (firstFailure == null){
+						firstFailure = failure;
+					}
+					failedChunks++;
+					for (String symbol : chunk){
+						results.put(key(symbol), Quote.failed(symbol, String.valueOf(failure.getMessage())));
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("request cancelled");
+		} finally {
+			for (Future<List<Quote>> future : pending.keySet()){
+				future.cancel(true); // only does anything if this method is leaving early
+			}
+		}
+
+		if (failedChunks == chunks.size()){
+			throw firstFailure;
+		}
+		List<Quote> ordered = new ArrayList<Quote>(distinct.size());
+		for (String symbol : distinct){
+			Quote quote = results.get(key(symbol));
+			ordered.add(quote != null ? quote : Quote.failed(symbol, "no data returned."));
+		}
+		return ordered;
+	}
+
+	/**
+	 * Puts the quotes returned for a single chunk into the order the symbols were given.
+	 * @param symbols the symbols requested, without duplicates
+	 * @param quotes the quotes returned
+	 * @return one quote for each symbol
+	 */
+	private static List<Quote> merge(List<String> symbols, List<Quote> quotes) {
+		Map<String, Quote> bySymbol = new HashMap<String, Quote>(quotes.size() * 2);
+		for (Quote quote : quotes){
+			bySymbol.put(key(quote.getSymbol()), quote);
+		}
+		List<Quote> ordered = new ArrayList<Quote>(symbols.size());
+		for (String symbol : symbols){
+			Quote quote = bySymbol.get(key(symbol));
+			ordered.add(quote != null ? quote : Quote.failed(symbol, "no data returned."));
+		}
+		return ordered;
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form used to match quotes with the symbols requested (Yahoo! Quotes ignores case)
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param cause the reason a request failed
+	 * @return the reason as an IOException
+	 */
+	private static IOException asIOException(Throwable cause) {
+		if (cause instanceof IOException){
+			return (IOException) cause;
+		}
+		return new IOException(String.valueOf(cause), cause);
+	}
+
+} // End of QueryPlanner definition
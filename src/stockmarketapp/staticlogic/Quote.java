@@ -0,0 +1,341 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * The data for *one* stock symbol, as obtained from Yahoo! Quotes.
+ * Quotes are created by the parser (see fromRow) and are not changed afterwards.
+ * How a quote is displayed is decided separately, by QuoteFormatter.
+ * @author Sadruddin Junejo
+ *
+ */
+public final class Quote {
+
+	/** Whether usable data was obtained for a symbol */
+	public enum Status {
+		/** the symbol was found and its prices are known */
+		OK,
+		/** Yahoo! Quotes does not know the symbol */
+		NOT_FOUND,
+		/** the symbol was found but its prices are missing */
+		UNAVAILABLE,
+		/** the data for the symbol could not be obtained (see getError) */
+		FAILED
+	}
+
+	private final String symbol;
+	/** the company name; for a symbol that was not found, Yahoo! Quotes puts the symbol here */
+	private final String name;
+	/** the current price per share, in ticks (see Price); Price.NONE if missing */
+	private final long last;
+	/** the price per share at the previous close, in ticks (see Price); Price.NONE if missing */
+	private final long previousClose;
+	/** the dividend per share, exactly as supplied (may be "N/A") */
+	private final String dividend;
+	/** the market capitalisation, exactly as supplied (e.g. "2.1B" or "N/A") */
+	private final String marketCap;
+	/** the name of the stock exchange the company is listed in */
+	private final String exchange;
+	/** the currency symbol determined from the stock exchange (see ExchangeRegistry); empty if the exchange is not known */
+	private final String currency;
+	private final Status status;
+	/** why the data could not be obtained; null unless the status is FAILED */
+	private final String error;
+	/** true if this is the last good quote, shown while it is being refreshed or because the feed is failing (see QuoteCache) */
+	private final boolean stale;
+
+	/**
+	 * Constructor method for a quote.
+	 * @param symbol the stock symbol
+	 * @param name the company name
+	 * @param last the current price per share, in ticks (see Price)
+	 * @param previousClose the price per share at the previous close, in ticks
+	 * @param dividend the dividend per share as supplied by Yahoo! Quotes
+	 * @param marketCap the market capitalisation as supplied by Yahoo! Quotes
+	 * @param exchange the stock exchange the company is listed in
+	 * @param currency the currency symbol of the prices
+	 * @param status whether the data is usable
+	 */
+	public Quote(String symbol, String name, long last, long previousClose, String dividend, String marketCap,
+			String exchange, String currency, Status status) {
+		this.symbol = symbol;
+		this.name = name;
+		this.last = last;
+		this.previousClose = previousClose;
+		this.dividend = dividend;
+		this.marketCap = marketCap;
+		this.exchange = exchange;
+		this.currency = currency;
+		this.status = status;
+		this.error = null;
+		this.stale = false;
+	}
+
+	/**
+	 * Constructor method for a stale copy of a quote (see asStale).
+	 */
+	private Quote(Quote fresh) {
+		this.symbol = fresh.symbol;
+		this.name = fresh.name;
+		this.last = fresh.last;
+		this.previousClose = fresh.previousClose;
+		this.dividend = fresh.dividend;
+		this.marketCap = fresh.marketCap;
+		this.exchange = fresh.exchange;
+		this.currency = fresh.currency;
+		this.status = fresh.status;
+		this.error = fresh.error;
+		this.stale = true;
+	}
+
+	/**
+	 * Constructor method for a symbol whose data could not be obtained.
+	 * @param symbol the stock symbol
+	 * @param error why the data could not be obtained
+	 */
+	private Quote(String symbol, String error) {
+		this.symbol = symbol;
+		this.name = symbol;
+		this.last = Price.NONE;
+		this.previousClose = Price.NONE;
+		this.dividend = "N/A";
+		this.marketCap = "N/A";
+		this.exchange = "";
+		this.currency = "";
+		this.status = Status.FAILED;
+		this.error = error;
+		this.stale = false;
+	}
+
+	/**
+	 * Creates a quote for a symbol whose data could not be obtained, for example because the request for it failed.
+	 * @param symbol the stock symbol
+	 * @param error why the data could not be obtained
+	 * @return the quote
+	 */
+	public static Quote failed(String symbol, String error) {
+		return new Quote(symbol, error);
+	}
+
+	/**
+	 * Creates a quote from a row of data in the column order requested by ReturnButtonLogic (nl1pdj1xe1s):
+	 * name, last price, previous close, dividend, market cap, stock exchange, error indication, symbol.
+	 * Prices are read directly from the row as exact ticks (see QuoteRow.parsePrice) and no other fields are copied unless needed.
+	 * Should the row have more than 8 fields (a company name containing commas but no quotes), the extra fields
+	 * at the start are taken to be part of the company name.
+	 * @param row a row of data with at least 8 fields
+	 * @return the quote
+	 */
+	public static Quote fromRow(QuoteTokenizer.QuoteRow row) {
+		return fromRow(row, 0);
+	}
+
+	/**
+	 * Creates a quote from a row of data that begins with fields of its own, e.g. the time of a recorded quote
+	 * (see ReplayQuoteSource). The data from Yahoo! Quotes starts at field firstField and is read as by fromRow(row).
+	 * @param row a row of data with at least firstField + 8 fields
+	 * @param firstField the index of the company name field
+	 * @return the quote
+	 */
+	static Quote fromRow(QuoteTokenizer.QuoteRow row, int firstField) {
+		int extraFields = row.getFieldCount() - 8 - firstField;
+		if (extraFields < 0){
+			throw new IllegalArgumentException("expected " + (firstField + 8) + " columns of data, found " + row.getFieldCount());
+		}
+		int last = firstField + extraFields; // the index of the last field of the company name
+		String name = extraFields == 0 ? row.valueString(firstField) : row.rawString(firstField, last);
+		String symbol = row.valueString(last + 7);
+		if (!row.isNA(last + 6)){ // Yahoo! Quotes puts an error message here if the symbol is not known
+			return notFound(symbol, name);
+		}
+		long lastPrice = row.parsePrice(last + 1);
+		long previousClose = row.parsePrice(last + 2);
+		Exchange exchange = row.exchange(last + 5); // looked up in place, so known exchanges need no copying
+		return create(symbol, name, lastPrice, previousClose, row.valueString(last + 3), row.valueString(last + 4),
+				exchange != null ? exchange.getCode() : row.valueString(last + 5), exchange);
+	}
+
+	/**
+	 * Creates a quote from the array of fields produced by ReturnButtonLogic.splitter.
+	 * @param strArray the 8 fields of data for one symbol, including any quotes around them
+	 * @return the quote
+	 */
+	public static Quote fromFields(String[] strArray) {
+		String name = unquote(strArray[0]);
+		String symbol = unquote(strArray[7]);
+		if (!strArray[6].equals("\"N/A\"")){
+			return notFound(symbol, name);
+		}
+		String exchange = unquote(strArray[5]);
+		return create(symbol, name, Price.parse(strArray[1]), Price.parse(strArray[2]), strArray[3], strArray[4],
+				exchange, ExchangeRegistry.getDefault().lookup(exchange));
+	}
+
+	/**
+	 * Creates a quote for a symbol that was found, marking it as unavailable if either price is missing.
+	 * The currency is that of the exchange, if the exchange is known (see ExchangeRegistry).
+	 */
+	private static Quote create(String symbol, String name, long last, long previousClose, String dividend,
+			String marketCap, String exchange, Exchange known) {
+		Status status = last == Price.NONE || previousClose == Price.NONE ? Status.UNAVAILABLE : Status.OK;
+		return new Quote(symbol, name, last, previousClose, dividend, marketCap, exchange,
+				known != null ? known.getCurrencySymbol() : "", status);
+	}
+
+	/**
+	 * Creates a quote for a symbol that Yahoo! Quotes does not know.
+	 */
+	static Quote notFound(String symbol, String name) {
+		return new Quote(symbol, name, Price.NONE, Price.NONE, "N/A", "N/A", "", "", Status.NOT_FOUND);
+	}
+
+	/**
+	 * @param str a field which may be surrounded by quotes
+	 * @return the field without the quotes
+	 */
+	private static String unquote(String str) {
+		if (str.length() >= 2 && str.charAt(0) == '"' && str.charAt(str.length() - 1) == '"'){
+			return str.substring(1, str.length() - 1);
+		}
+		return str;
+	}
+
+	/**
+	 * @return the absolute change in price since the previous close, exactly, in ticks; Price.NONE if either price is missing
+	 */
+	public long getChangeTicks() {
+		return last == Price.NONE || previousClose == Price.NONE ? Price.NONE : last - previousClose;
+	}
+
+	/**
+	 * @return the absolute change in price since the previous close, or NaN if either price is missing
+	 */
+	public double getChange() {
+		return Price.toDouble(getChangeTicks());
+	}
+
+	/**
+	 * @return the change in price since the previous close, as a percentage of the previous close, or NaN if unknown
+	 */
+	public double getChangePercent() {
+		long change = getChangeTicks();
+		return change == Price.NONE || previousClose == 0 ? Double.NaN : (change * 100.0) / previousClose;
+	}
+
+	public String getSymbol() {
+		return symbol;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the current price per share, or NaN if missing
+	 */
+	public double getLast() {
+		return Price.toDouble(last);
+	}
+
+	/**
+	 * @return the current price per share in ticks (see Price), or Price.NONE if missing
+	 */
+	public long getLastTicks() {
+		return last;
+	}
+
+	/**
+	 * @return the price per share at the previous close, or NaN if missing
+	 */
+	public double getPreviousClose() {
+		return Price.toDouble(previousClose);
+	}
+
+	/**
+	 * @return the price per share at the previous close in ticks (see Price), or Price.NONE if missing
+	 */
+	public long getPreviousCloseTicks() {
+		return previousClose;
+	}
+
+	public String getDividend() {
+		return dividend;
+	}
+
+	public String getMarketCap() {
+		return marketCap;
+	}
+
+	public String getExchange() {
+		return exchange;
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return why the data could not be obtained, or null unless the status is FAILED
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return true if this is the last good quote rather than a current one: it is shown while a current one is
+	 *         obtained in the background, or because the current one could not be obtained (see QuoteCache)
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * @return a copy of this quote marked as stale (see isStale), or this quote if it already is
+	 */
+	public Quote asStale() {
+		return stale ? this : new Quote(this);
+	}
+
+	/**
+	 * Two quotes are equal if all their data is the same, so that a refresh can tell whether a quote has changed.
+	 * A stale quote is not equal to its current version, so that the current version replaces it on display.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj){
+			return true;
+		}
+		if (!(obj instanceof Quote)){
+			return false;
+		}
+		Quote other = (Quote) obj;
+		return status == other.status
+				&& stale == other.stale
+				&& last == other.last
+				&& previousClose == other.previousClose
+				&& symbol.equals(other.symbol)
+				&& name.equals(other.name)
+				&& dividend.equals(other.dividend)
+				&& marketCap.equals(other.marketCap)
+				&& exchange.equals(other.exchange)
+				&& (error == null ? other.error == null : error.equals(other.error));
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = symbol.hashCode();
+		hash = 31 * hash + Long.hashCode(last);
+		hash = 31 * hash + Long.hashCode(previousClose);
+		hash = 31 * hash + status.hashCode();
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return Price.append(new StringBuilder(32).append(symbol).append(' ').append(status).append(' '), last, Price.DECIMALS)
+				.append(currency).toString();
+	}
+
+} // End of Quote definition
@@ -0,0 +1,462 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps recently obtained quotes so that symbols looked up again shortly afterwards need not be fetched again.
+ * (1) Each quote is kept for a limited time, which can be set separately for each stock exchange (see getTtlMillis).
+ * (2) The number of quotes kept is limited; when full, the quote that was used least recently is discarded.
+ * (3) If several requests need the same symbol at the same time, only one of them fetches it and
+ *     the others wait for and share its result ("single flight").
+ * (4) Once a quote has expired it is kept a while longer as the last good quote ("stale while revalidate"): a lookup
+ *     returns it at once, marked as stale (see Quote.isStale), while a current quote is fetched in the background and
+ *     passed to the listeners when it arrives. If a quote cannot be fetched, e.g. while the feed is down, the last good
+ *     quote is returned, marked as stale, instead of a failure.
+ * Counts of hits, misses, evictions and shared fetches are kept for diagnostics.
+ * Quotes whose data could not be obtained (status FAILED) are never kept.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteCache {
+
+	/**
+	 * Fetches the quotes that are not in the cache.
+	 */
+	public interface Loader {
+		/**
+		 * @param symbols the symbols to fetch, without duplicates
+		 * @return a quote for each symbol, in the same order
+		 * @throws IOException if the quotes cannot be fetched
+		 */
+		List<Quote> load(List<String> symbols) throws IOException;
+	}
+
+	/**
+	 * Is told about the quotes fetched in the background to replace stale ones.
+	 */
+	public interface Listener {
+		/**
+		 * Called on the background thread that fetched the quotes.
+		 * @param quotes the quotes fetched (which may still be stale, if they could not be fetched)
+		 */
+		void revalidated(List<Quote> quotes);
+	}
+
+	/**
+	 * A quote together with the time at which it stops being valid, and the time until which it may be used as stale.
+	 */
+	private static final class Entry {
+		final Quote quote;
+		final long expiresAt; // in System.nanoTime() terms
+		final long staleUntil; // likewise
+
+		Entry(Quote quote, long expiresAt, long staleUntil) {
+			this.quote = quote;
+			this.expiresAt = expiresAt;
+			this.staleUntil = staleUntil;
+		}
+	}
+
+	/** fetches the quotes that are not in the cache */
+	private final Loader loader;
+	/** the maximum number of quotes kept */
+	private final int maxEntries;
+	/** the time a quote is kept for if no time is set for its stock exchange */
+	private final long defaultTtlMillis;
+	/** the time an expired quote is kept for as the last good quote, in nanoseconds */
+	private final long maxStaleNanos;
+	/** fetches current quotes in place of stale ones in the background; null not to return expired quotes */
+	private final Executor revalidator;
+	/** who is told about the quotes fetched in the background */
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	/** the quotes, in order of use (least recently used first). Guarded by itself. */
+	private final LinkedHashMap<String, Entry> entries;
+	/** the fetches currently in progress, by symbol */
+	private final ConcurrentHashMap<String, CompletableFuture<Quote>> inFlight = new ConcurrentHashMap<String, CompletableFuture<Quote>>();
+	/** the time quotes are kept for, by stock exchange, once looked up */
+	private final ConcurrentHashMap<String, Long> ttlByExchange = new ConcurrentHashMap<String, Long>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	/** the number of symbols that were obtained by waiting for another request's fetch */
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Constructor method for the cache.
+	 * @param loader fetches the quotes that are not in the cache
+	 * @param maxEntries the maximum number of quotes kept
+	 * @param defaultTtlMillis the time a quote is kept for, unless a different time is set for its stock exchange
+	 */
+	public QuoteCache(Loader loader, final int maxEntries, long defaultTtlMillis) {
+		this(loader, maxEntries, defaultTtlMillis, 0, null);
+	}
+
+	/**
+	 * Constructor method for a cache that keeps expired quotes as the last good quotes (see (4) above).
+	 * @param loader fetches the quotes that are not in the cache
+	 * @param maxEntries the maximum number of quotes kept
+	 * @param defaultTtlMillis the time a quote is kept for, unless a different time is set for its stock exchange
+	 * @param maxStaleMillis the time an expired quote is kept for as the last good quote; 0 to discard quotes once expired
+	 * @param revalidator fetches current quotes in place of stale ones in the background; if null, lookups never
+	 *                    return expired quotes, which are only used when a quote cannot be fetched
+	 */
+	public QuoteCache(Loader loader, final int maxEntries, long defaultTtlMillis, long maxStaleMillis, Executor revalidator) {
+		this.loader = loader;
+		this.maxEntries = maxEntries;
+		this.defaultTtlMillis = defaultTtlMillis;
+		this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(maxStaleMillis);
+		this.revalidator = revalidator;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) { // ordered by access, for LRU eviction
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, QuoteCache.Entry> eldest) {
+				if (size() > maxEntries){
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Obtains quotes for a list of symbols, from the cache where possible and from the loader otherwise.
+	 * @param symbols the symbols, which may contain duplicates
+	 * @return one quote for each distinct symbol, in the order the symbols first appear
+	 * @throws IOException if none of the quotes could be obtained
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 */
+	public List<Quote> get(List<String> symbols) throws IOException {
+		return get(symbols, false);
+	}
+
+	/**
+	 * Fetches fresh quotes for a list of symbols, ignoring any quotes in the cache, and puts them into the cache.
+	 * Used when data must be up to date, e.g. when the user is watching prices change.
+	 * Fetches already in progress for the same symbols are still shared.
+	 * @param symbols the symbols, which may contain duplicates
+	 * @return one quote for each distinct symbol, in the order the symbols first appear
+	 * @throws IOException if none of the quotes could be obtained
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 */
+	public List<Quote> refresh(List<String> symbols) throws IOException {
+		return get(symbols, true);
+	}
+
+	/**
+	 * Obtains quotes for a list of symbols.
+	 * @param symbols the symbols, which may contain duplicates
+	 * @param ignoreCached true if quotes in the cache should not be used
+	 * @return one quote for each distinct symbol, in the order the symbols first appear
+	 * @throws IOException if none of the quotes could be obtained
+	 */
+	private List<Quote> get(List<String> symbols, boolean ignoreCached) throws IOException {
+		List<String> distinct = new ArrayList<String>(new LinkedHashSet<String>(symbols));
+		Map<String, Quote> found = new HashMap<String, Quote>(distinct.size() * 2);
+		List<String> toLoad = new ArrayList<String>();
+		Map<String, CompletableFuture<Quote>> owned = new LinkedHashMap<String, CompletableFuture<Quote>>();
+		Map<String, CompletableFuture<Quote>> joined = new LinkedHashMap<String, CompletableFuture<Quote>>();
+
+		List<String> toRevalidate = new ArrayList<String>();
+
+		long now = System.nanoTime();
+		for (String symbol : distinct){
+			Entry cached = ignoreCached ? null : lookup(key(symbol), now);
+			if (cached != null && now - cached.expiresAt < 0){
+				hits.incrementAndGet();
+				Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+				found.put(symbol, cached.quote);
+				continue;
+			}
+			if (cached != null && revalidator != null){ // the last good quote is returned while a current one is fetched
+				Metrics.count(Metrics.Counter.STALE_SERVED, 1);
+				found.put(symbol, cached.quote.asStale());
+				if (!inFlight.containsKey(key(symbol))){
+					toRevalidate.add(symbol);
+				}
+				continue;
+			}
+			if (!ignoreCached){
+				misses.incrementAndGet(); // a refresh is not a miss, as the cache was not asked
+				Metrics.count(Metrics.Counter.CACHE_MISSES, 1);
+			}
+			CompletableFuture<Quote> future = new CompletableFuture<Quote>();
+			CompletableFuture<Quote> existing = inFlight.putIfAbsent(key(symbol), future);
+			if (existing != null){ // another request is already fetching this symbol
+				coalesced.incrementAndGet();
+				joined.put(symbol, existing);
+			}
+			else {
+				owned.put(symbol, future);
+				toLoad.add(symbol);
+			}
+		}
+
+		if (!toLoad.isEmpty()){
+			load(toLoad, owned, found, toLoad.size() == distinct.size());
+		}
+		List<String> retry = new ArrayList<String>();
+		for (Map.Entry<String, CompletableFuture<Quote>> waiting : joined.entrySet()){
+			try {
+				found.put(waiting.getKey(), waiting.getValue().get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("request cancelled");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof InterruptedIOException){
+					retry.add(waiting.getKey()); // the other request was cancelled, so the symbol is fetched here instead
+				}
+				else {
+					found.put(waiting.getKey(), Quote.failed(waiting.getKey(), String.valueOf(e.getCause().getMessage())));
+				}
+			}
+		}
+		if (!retry.isEmpty()){
+			List<Quote> retried = get(retry, ignoreCached);
+			for (int i = 0; i < retry.size(); i++){
+				found.put(retry.get(i), retried.get(i));
+			}
+		}
+
+		List<Quote> ordered = new ArrayList<Quote>(distinct.size());
+		for (String symbol : distinct){
+			Quote quote = found.get(symbol);
+			ordered.add(quote != null ? quote : Quote.failed(symbol, "no data returned."));
+		}
+		if (!toRevalidate.isEmpty()){
+			revalidate(toRevalidate);
+		}
+		return ordered;
+	}
+
+	/**
+	 * Fetches current quotes for symbols whose stale quotes have been returned, in the background,
+	 * and passes them to the listeners.
+	 * @param symbols the symbols
+	 */
+	private void revalidate(final List<String> symbols) {
+		revalidator.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					List<Quote> quotes = refresh(symbols);
+					for (Listener listener : listeners){
+						listener.revalidated(quotes);
+					}
+				} catch (IOException e) {
+					// the stale quotes stay on display; the next lookup tries again
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param listener told about the quotes fetched in the background to replace stale ones
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param key the symbol, as returned by key()
+	 * @return the last good quote for the symbol, marked as stale, or null if there is none
+	 */
+	private Quote staleCopy(String key) {
+		Entry entry = lookup(key, System.nanoTime());
+		if (entry == null){
+			return null;
+		}
+		Metrics.count(Metrics.Counter.STALE_SERVED, 1);
+		return entry.quote.asStale();
+	}
+
+	/**
+	 * Fetches the symbols this request is responsible for, stores the results and passes them on to any waiting requests.
+	 * @param symbols the symbols to fetch
+	 * @param owned the futures through which waiting requests receive each symbol's quote
+	 * @param found where the quotes are put for this request
+	 * @param rethrow true if a failure should be thrown (as no quotes would be returned at all),
+	 *                false if it should be reported through FAILED quotes
+	 * @throws IOException if the quotes cannot be fetched and rethrow is true
+	 */
+	private void load(List<String> symbols, Map<String, CompletableFuture<Quote>> owned, Map<String, Quote> found,
+			boolean rethrow) throws IOException {
+		try {
+			List<Quote> loaded = loader.load(symbols);
+			long now = System.nanoTime();
+			for (int i = 0; i < symbols.size(); i++){
+				String symbol = symbols.get(i);
+				Quote quote = loaded.get(i);
+				if (quote.getStatus() != Quote.Status.FAILED){
+					store(key(symbol), quote, now);
+				}
+				else {
+					Quote stale = staleCopy(key(symbol));
+					quote = stale != null ? stale : quote;
+				}
+				found.put(symbol, quote);
+				owned.get(symbol).complete(quote);
+			}
+		} catch (IOException | RuntimeException e) {
+			Quote[] stale = new Quote[symbols.size()];
+			boolean anyStale = false;
+			if (e instanceof IOException && !(e instanceof InterruptedIOException)){
+				for (int i = 0; i < stale.length; i++){
+					stale[i] = staleCopy(key(symbols.get(i)));
+					anyStale |= stale[i] != null;
+				}
+			}
+			if (!anyStale && (rethrow || !(e instanceof IOException) || e instanceof InterruptedIOException)){
+				for (CompletableFuture<Quote> future : owned.values()){
+					future.completeExceptionally(e);
+				}
+				throw e;
+			}
+			for (int i = 0; i < stale.length; i++){ // the last good quotes, where there are any
+				String symbol = symbols.get(i);
+				Quote quote = stale[i] != null ? stale[i] : Quote.failed(symbol, String.valueOf(e.getMessage()));
+				found.put(symbol, quote);
+				owned.get(symbol).complete(quote);
+			}
+		} finally {
+			for (String symbol : symbols){
+				inFlight.remove(key(symbol), owned.get(symbol));
+			}
+		}
+	}
+
+	/**
+	 * @param key the symbol, as returned by key()
+	 * @param now the current time, in System.nanoTime() terms
+	 * @return the cached quote, which may have expired (but is still kept as the last good quote),
+	 *         or null if there is none
+	 */
+	private Entry lookup(String key, long now) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry == null){
+				return null;
+			}
+			if (now - entry.staleUntil >= 0){
+				entries.remove(key);
+				return null;
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Puts a quote into the cache, discarding the least recently used quote if the cache is full.
+	 * @param key the symbol, as returned by key()
+	 * @param quote the quote
+	 * @param now the current time, in System.nanoTime() terms
+	 */
+	private void store(String key, Quote quote, long now) {
+		long expiresAt = now + TimeUnit.MILLISECONDS.toNanos(getTtlMillis(quote.getExchange()));
+		Entry entry = new Entry(quote, expiresAt, expiresAt + maxStaleNanos);
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Determines how long quotes from a stock exchange are kept for.
+	 * This can be set for each of the exchanges named in ReturnButtonLogic.detCurrency with a system property,
+	 * e.g. -Dstockmarketapp.cacheTtl.London=120000 (in milliseconds).
+	 * @param exchange the name of the stock exchange, as supplied by Yahoo! Quotes
+	 * @return the time in milliseconds
+	 */
+	public long getTtlMillis(String exchange) {
+		Long ttl = ttlByExchange.get(exchange);
+		if (ttl == null){
+			ttl = exchange.isEmpty() ? defaultTtlMillis : Settings.getLong("cacheTtl." + exchange, defaultTtlMillis);
+			ttlByExchange.put(exchange, ttl);
+		}
+		return ttl;
+	}
+
+	/**
+	 * Discards every quote in the cache.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return the number of quotes in the cache
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the maximum number of quotes kept
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @return the number of symbols that were found in the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of symbols that were not found in the cache (including those then shared with another request)
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of quotes discarded because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of symbols obtained by waiting for a fetch made by another request
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	@Override
+	public String toString() {
+		return "QuoteCache[size=" + size() + "/" + maxEntries + ", hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + ", coalesced=" + coalesced + "]";
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form used as the key of the cache (Yahoo! Quotes ignores case)
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+} // End of QuoteCache definition
@@ -0,0 +1,262 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares the fetching of quotes between every client in the process: the program's windows (see QuoteView)
+ * and the clients of its HTTP endpoint (see QuoteServer).
+ * Lookups go through the shared cache, so a symbol that several clients look up at the same time is requested once.
+ * Clients that follow quotes as they change subscribe to their symbols: a single watcher (see QuoteWatcher) fetches
+ * every symbol subscribed to by anyone, once per interval, and each change is passed on to every subscriber of its
+ * symbol ("fan-out"). A symbol watched by a hundred clients therefore costs the feed no more than one watched by one.
+ * A new subscriber is given the latest quote of each of its symbols straight away, if there is one; it is marked stale
+ * if the watcher's fetches have been failing, and passed on again once one succeeds.
+ * Quotes are only kept for the symbols subscribed to.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteEngine {
+
+	/**
+	 * A client's interest in the changes to a set of symbols. Created by subscribe.
+	 */
+	public final class Subscription {
+
+		/** told about the changes; must not block, as it is called while the changes are handed out */
+		private final QuoteWatcher.Listener listener;
+		/** the symbols subscribed to, in capitals. Guarded by the engine. */
+		private Set<String> keys = Collections.emptySet();
+		/** true once cancelled. Guarded by the engine. */
+		private boolean cancelled;
+
+		private Subscription(QuoteWatcher.Listener listener) {
+			this.listener = listener;
+		}
+
+		/**
+		 * Changes the symbols subscribed to. The latest quotes of symbols added are passed on straight away;
+		 * symbols that nobody was watching are fetched straight away.
+		 * @param symbols the symbols to follow; none to stop following any without cancelling
+		 */
+		public void setSymbols(List<String> symbols) {
+			update(this, symbols);
+		}
+
+		/**
+		 * @return the symbols subscribed to, in capitals
+		 */
+		public List<String> getSymbols() {
+			synchronized (QuoteEngine.this) {
+				return new ArrayList<String>(keys);
+			}
+		}
+
+		/**
+		 * Stops passing on changes. Symbols that no other client subscribes to are no longer fetched.
+		 */
+		public void cancel() {
+			synchronized (QuoteEngine.this) {
+				update(this, Collections.<String>emptyList());
+				cancelled = true;
+			}
+		}
+
+	} // End of Subscription definition
+
+	/** looks up quotes for clients, through the cache */
+	private final QuoteWatcher.Fetcher lookup;
+	/** the time between fetches of the symbols subscribed to, in milliseconds */
+	private final long refreshMillis;
+	/** fetches every symbol subscribed to */
+	private final QuoteWatcher watcher;
+	/** the subscriptions to each symbol, by symbol in capitals. Guarded by this. */
+	private final Map<String, List<Subscription>> bySymbol = new LinkedHashMap<String, List<Subscription>>();
+	/** the latest quote of each symbol subscribed to, as fetched by the watcher, by symbol in capitals. Guarded by this. */
+	private final Map<String, Quote> latest = new HashMap<String, Quote>();
+	/** the number of subscriptions to at least one symbol. Guarded by this. */
+	private int subscriptionCount;
+
+	/**
+	 * Constructor method for the engine.
+	 * @param lookup looks up quotes for clients, normally through the cache (see ReturnButtonLogic.fetchQuotes)
+	 * @param refresh fetches current quotes of the symbols subscribed to (see ReturnButtonLogic.refreshQuotes)
+	 * @param refreshMillis the time between fetches of the symbols subscribed to, in milliseconds
+	 */
+	public QuoteEngine(QuoteWatcher.Fetcher lookup, QuoteWatcher.Fetcher refresh, long refreshMillis) {
+		this.lookup = lookup;
+		this.refreshMillis = refreshMillis;
+		this.watcher = new QuoteWatcher(refresh, new QuoteWatcher.Listener() {
+			@Override
+			public void quotesChanged(List<Quote> changed) {
+				fanOut(changed);
+			}
+
+			@Override
+			public void fetchFailed(IOException e) {
+				failed(e);
+			}
+		});
+	}
+
+	/**
+	 * Looks up quotes once, e.g. for a query typed into a window.
+	 * @param symbols the symbols to look up
+	 * @return one quote for each distinct symbol, in the order the symbols were given
+	 * @throws IOException if the quotes cannot be obtained, or the lookup is cancelled (InterruptedIOException)
+	 */
+	public List<Quote> lookup(List<String> symbols) throws IOException {
+		return lookup.fetch(symbols);
+	}
+
+	/**
+	 * Creates a subscription, which follows no symbols until they are set (see Subscription.setSymbols).
+	 * @param listener told about the changes to the symbols subscribed to, and failed fetches, on a background thread.
+	 *                 It must not block: it should hand the quotes on (e.g. to RepaintCoalescer) and return.
+	 * @return the subscription
+	 */
+	public Subscription subscribe(QuoteWatcher.Listener listener) {
+		return new Subscription(listener);
+	}
+
+	/**
+	 * @return the number of subscriptions that follow at least one symbol
+	 */
+	public synchronized int getSubscriptionCount() {
+		return subscriptionCount;
+	}
+
+	/**
+	 * @return the number of distinct symbols subscribed to, i.e. fetched at every interval
+	 */
+	public synchronized int getSymbolCount() {
+		return bySymbol.size();
+	}
+
+	/**
+	 * Changes the symbols of a subscription, and the symbols fetched to match.
+	 * @param subscription the subscription
+	 * @param symbols its new symbols
+	 */
+	private synchronized void update(Subscription subscription, List<String> symbols) {
+		if (subscription.cancelled){
+			return;
+		}
+		Set<String> keys = new LinkedHashSet<String>();
+		for (String symbol : symbols){
+			keys.add(key(symbol));
+		}
+		for (String key : subscription.keys){
+			if (!keys.contains(key)){
+				List<Subscription> subscribers = bySymbol.get(key);
+				subscribers.remove(subscription);
+				if (subscribers.isEmpty()){
+					bySymbol.remove(key);
+					latest.remove(key);
+				}
+			}
+		}
+		List<Quote> known = new ArrayList<Quote>();
+		// the quotes kept are current unless the fetches have been failing (allowing for a fetch in progress)
+		boolean current = System.currentTimeMillis() - watcher.getCurrentMillis() <= 2 * refreshMillis;
+		boolean unwatched = false;
+		for (String key : keys){
+			if (subscription.keys.contains(key)){
+				continue;
+			}
+			List<Subscription> subscribers = bySymbol.get(key);
+			if (subscribers == null){
+				subscribers = new ArrayList<Subscription>(1);
+				bySymbol.put(key, subscribers);
+				unwatched = true;
+			}
+			subscribers.add(subscription);
+			Quote quote = latest.get(key);
+			if (quote != null && current){
+				known.add(quote);
+			}
+			else if (quote != null){
+				known.add(quote.asStale());
+				watcher.forget(key); // so that the current quote is passed on once it is fetched
+			}
+		}
+		subscriptionCount += (keys.isEmpty() ? 0 : 1) - (subscription.keys.isEmpty() ? 0 : 1);
+		subscription.keys = keys;
+
+		if (bySymbol.isEmpty()){
+			watcher.stop();
+		}
+		else if (!watcher.isRunning()){
+			watcher.start(new ArrayList<String>(bySymbol.keySet()), refreshMillis); // fetches straight away
+		}
+		else {
+			watcher.setSymbols(new ArrayList<String>(bySymbol.keySet()));
+			if (unwatched){
+				watcher.fetchNow();
+			}
+		}
+		if (!known.isEmpty()){
+			subscription.listener.quotesChanged(known);
+		}
+	}
+
+	/**
+	 * Hands the quotes that have changed to the subscribers of their symbols, each receiving its own quotes in one list.
+	 * Runs under the lock, so that a new subscriber never receives a quote older than the one it started with.
+	 * @param changed the quotes that have changed
+	 */
+	private synchronized void fanOut(List<Quote> changed) {
+		Map<Subscription, List<Quote>> bySubscriber = new IdentityHashMap<Subscription, List<Quote>>();
+		for (Quote quote : changed){
+			String key = key(quote.getSymbol());
+			List<Subscription> subscribers = bySymbol.get(key);
+			if (subscribers == null){
+				continue; // no longer subscribed to
+			}
+			latest.put(key, quote);
+			for (Subscription subscription : subscribers){
+				List<Quote> quotes = bySubscriber.get(subscription);
+				if (quotes == null){
+					quotes = new ArrayList<Quote>();
+					bySubscriber.put(subscription, quotes);
+				}
+				quotes.add(quote);
+			}
+		}
+		for (Map.Entry<Subscription, List<Quote>> entry : bySubscriber.entrySet()){
+			entry.getKey().listener.quotesChanged(entry.getValue());
+		}
+	}
+
+	/**
+	 * Tells every subscriber that a fetch has failed.
+	 * @param e the reason the fetch failed
+	 */
+	private synchronized void failed(IOException e) {
+		Set<Subscription> subscriptions = Collections.newSetFromMap(new IdentityHashMap<Subscription, Boolean>());
+		for (List<Subscription> subscribers : bySymbol.values()){
+			subscriptions.addAll(subscribers);
+		}
+		for (Subscription subscription : subscriptions){
+			subscription.listener.fetchFailed(e);
+		}
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form used to match quotes with subscriptions
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+} // End of QuoteEngine definition
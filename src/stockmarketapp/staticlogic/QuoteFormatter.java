@@ -0,0 +1,246 @@
+package stockmarketapp.staticlogic;
+
+import java.util.List;
+
+/**
+ * Turns quotes into the HTML that is output to the user, or into CSV or JSON for batch mode (see BatchProcessor).
+ * All the output is written into a single StringBuilder, sized up front from the number of quotes,
+ * so the time taken grows in proportion to the number of quotes rather than with its square
+ * (as it did when each quote's string was concatenated onto the output so far).
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteFormatter {
+
+	/** the approximate number of characters of output for one quote, used to size the output buffer */
+	static final int CHARS_PER_QUOTE = 256;
+
+	// headers for data values
+	private static final String PRICE = "Price: ";
+	private static final String CHANGE = "Change: ";
+	private static final String DIVIDEND = "Dividends: ";
+	private static final String MARKET_CAP = "Market Cap: ";
+	private static final String STOCK_EXCHANGE = "Stock Exchange: ";
+
+	/** the first line of CSV output, naming the columns written by appendCsv */
+	public static final String CSV_HEADER = "symbol,name,price,currency,change,change_percent,dividend,market_cap,exchange,status,error,stale";
+
+	/**
+	 * Formats a list of quotes as a complete HTML document, in the order given.
+	 * @param quotes the quotes to format
+	 * @return the HTML
+	 */
+	public static String toHtml(List<Quote> quotes) {
+		StringBuilder out = new StringBuilder(quotes.size() * CHARS_PER_QUOTE + 16);
+		out.append("<html>");
+		for (Quote quote : quotes){
+			appendHtml(out, quote);
+		}
+		out.append("</html>");
+		return out.toString();
+	}
+
+	/**
+	 * Adds the HTML for *one* quote.
+	 * This includes (1) Company name (2) Price of stock (3) Absolute price change + percentage price change
+	 * (4) Dividends (5) Market Capitalisation (6) Stock Exchange company is listed in
+	 * If the symbol was not found, its prices are missing or its data could not be retrieved,
+	 * a message saying so is added instead.
+	 * @param out where the HTML is written
+	 * @param quote the quote to format
+	 */
+	public static void appendHtml(StringBuilder out, Quote quote) {
+		switch (quote.getStatus()) {
+		case NOT_FOUND:
+			out.append(quote.getName()).append(" not found. <br /><br />");
+			return;
+		case UNAVAILABLE:
+			out.append("Data unavailable for ").append(quote.getName()).append(". <br /><br />");
+			return;
+		case FAILED:
+			out.append("Unable to retrieve data for ").append(quote.getSymbol()).append(": ")
+				.append(quote.getError()).append(" <br /><br />");
+			return;
+		default:
+			break;
+		}
+
+		long change = displayedChange(quote);
+		long changePercent = displayedChangePercent(quote);
+
+		out.append("<u>").append(quote.getName()).append("</u><br />");
+		Price.append(out.append(PRICE), quote.getLastTicks(), Price.DECIMALS).append(quote.getCurrency()).append("<br />");
+
+		out.append(CHANGE);
+		if (change < 0){
+			// price change is negative, therefore displayed in red
+			appendDisplayed(out.append("<font color = '#FF0000'>"), change).append(" (");
+			appendDisplayed(out, changePercent).append("%)</font><br />");
+		}
+		else if (change > 0){
+			// price change is positive, therefore displayed in green
+			appendDisplayed(out.append("<font color = '#4AA02C'>"), change).append(" (+");
+			appendDisplayed(out, changePercent).append("%)</font><br />");
+		}
+		else {
+			// price has not changed recently, therefore displayed in black
+			appendDisplayed(out, change).append(" (");
+			appendDisplayed(out, changePercent).append("%)<br />");
+		}
+
+		out.append(DIVIDEND).append(quote.getDividend()).append("<br />");
+		out.append(MARKET_CAP).append(quote.getMarketCap()).append("<br />");
+		out.append(STOCK_EXCHANGE).append(quote.getExchange()).append("<br /><br />");
+	}
+
+	/**
+	 * Adds *one* quote as a line of CSV, in the columns named by CSV_HEADER.
+	 * Prices and changes are left empty if the quote has none (e.g. the percentage change of a quote without a previous
+	 * close); fields containing commas or quotes are quoted.
+	 * The last column says whether the quote is stale (see Quote.isStale), i.e. the last good one served while it is
+	 * being refreshed.
+	 * @param out where the CSV is written
+	 * @param quote the quote to format
+	 */
+	public static void appendCsv(StringBuilder out, Quote quote) {
+		boolean ok = quote.getStatus() == Quote.Status.OK;
+		appendCsvField(out, quote.getSymbol()).append(',');
+		appendCsvField(out, quote.getName()).append(',');
+		appendCsvNumber(out, ok ? quote.getLastTicks() : Price.NONE, Price.DECIMALS).append(',');
+		appendCsvField(out, quote.getCurrency()).append(',');
+		appendCsvNumber(out, ok ? displayedChange(quote) : Price.NONE, Price.DISPLAY_DECIMALS).append(',');
+		appendCsvNumber(out, ok ? displayedChangePercent(quote) : Price.NONE, Price.DISPLAY_DECIMALS).append(',');
+		appendCsvField(out, ok ? quote.getDividend() : "").append(',');
+		appendCsvField(out, ok ? quote.getMarketCap() : "").append(',');
+		appendCsvField(out, quote.getExchange()).append(',');
+		out.append(quote.getStatus()).append(',');
+		appendCsvField(out, quote.getError() == null ? "" : quote.getError()).append(',');
+		out.append(quote.isStale()).append('\n');
+	}
+
+	/**
+	 * Adds *one* quote as a JSON object on a line of its own ("JSON lines"), with the same fields as appendCsv.
+	 * Prices and changes are null if the quote has none.
+	 * @param out where the JSON is written
+	 * @param quote the quote to format
+	 */
+	public static void appendJson(StringBuilder out, Quote quote) {
+		boolean ok = quote.getStatus() == Quote.Status.OK;
+		out.append("{\"symbol\":");
+		appendJsonString(out, quote.getSymbol());
+		out.append(",\"name\":");
+		appendJsonString(out, quote.getName());
+		out.append(",\"price\":");
+		appendJsonNumber(out, ok ? quote.getLastTicks() : Price.NONE, Price.DECIMALS);
+		out.append(",\"currency\":");
+		appendJsonString(out, quote.getCurrency());
+		out.append(",\"change\":");
+		appendJsonNumber(out, ok ? displayedChange(quote) : Price.NONE, Price.DISPLAY_DECIMALS);
+		out.append(",\"change_percent\":");
+		appendJsonNumber(out, ok ? displayedChangePercent(quote) : Price.NONE, Price.DISPLAY_DECIMALS);
+		out.append(",\"dividend\":");
+		appendJsonString(out, ok ? quote.getDividend() : null);
+		out.append(",\"market_cap\":");
+		appendJsonString(out, ok ? quote.getMarketCap() : null);
+		out.append(",\"exchange\":");
+		appendJsonString(out, quote.getExchange());
+		out.append(",\"status\":\"").append(quote.getStatus()).append('"');
+		out.append(",\"error\":");
+		appendJsonString(out, quote.getError());
+		out.append(",\"stale\":").append(quote.isStale());
+		out.append("}\n");
+	}
+
+	/**
+	 * Adds a CSV field, surrounded by quotes if it contains a comma, a quote or a line break.
+	 */
+	private static StringBuilder appendCsvField(StringBuilder out, String field) {
+		boolean quoted = false;
+		for (int i = 0; i < field.length() && !quoted; i++){
+			char c = field.charAt(i);
+			quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quoted){
+			return out.append(field);
+		}
+		out.append('"');
+		for (int i = 0; i < field.length(); i++){
+			char c = field.charAt(i);
+			if (c == '"'){
+				out.append('"'); // quotes within a field are doubled
+			}
+			out.append(c);
+		}
+		return out.append('"');
+	}
+
+	/**
+	 * Adds a fixed-point number as a CSV field, left empty if it is missing.
+	 */
+	private static StringBuilder appendCsvNumber(StringBuilder out, long number, int decimals) {
+		return number != Price.NONE ? Price.append(out, number, decimals) : out;
+	}
+
+	/**
+	 * Adds a JSON string, or null.
+	 */
+	private static void appendJsonString(StringBuilder out, String str) {
+		if (str == null){
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < str.length(); i++){
+			char c = str.charAt(i);
+			if (c == '"' || c == '\\'){
+				out.append('\\').append(c);
+			}
+			else if (c < 0x20){
+				out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+			}
+			else {
+				out.append(c);
+			}
+		}
+		out.append('"');
+	}
+
+	/**
+	 * Adds a fixed-point number as a JSON number, or null if it is missing.
+	 */
+	private static void appendJsonNumber(StringBuilder out, long number, int decimals) {
+		if (number != Price.NONE){
+			Price.append(out, number, decimals);
+		}
+		else {
+			out.append("null");
+		}
+	}
+
+	/**
+	 * Adds a change or percentage with the accuracy it is displayed with (see displayedChange).
+	 */
+	private static StringBuilder appendDisplayed(StringBuilder out, long number) {
+		return Price.append(out, number, Price.DISPLAY_DECIMALS);
+	}
+
+	/**
+	 * Rounds a quote's absolute price change to the accuracy it is displayed with, three decimal places, as
+	 * ReturnButtonLogic.round did, but exactly (see Price).
+	 * @param quote the quote
+	 * @return the rounded change in thousandths of the currency unit, or Price.NONE if unknown
+	 */
+	public static long displayedChange(Quote quote) {
+		return Price.toDisplay(quote.getChangeTicks());
+	}
+
+	/**
+	 * Rounds a quote's percentage price change to the accuracy it is displayed with, three decimal places, exactly.
+	 * @param quote the quote
+	 * @return the rounded percentage in thousandths of a percent, or Price.NONE if unknown
+	 */
+	public static long displayedChangePercent(Quote quote) {
+		return Price.percent(quote.getChangeTicks(), quote.getPreviousCloseTicks());
+	}
+
+} // End of QuoteFormatter definition
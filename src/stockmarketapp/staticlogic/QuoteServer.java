@@ -0,0 +1,298 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves quotes over HTTP to other programs and to boards in a web browser, from the same engine as the windows
+ * (see QuoteEngine), so that any number of boards can be run from one process without each polling the feed:
+ * (1) GET /quotes?symbols=AAPL,MSFT looks the symbols up once and returns a JSON object per quote, one per line
+ *     (or CSV with &amp;format=csv; see QuoteFormatter).
+ * (2) GET /stream?symbols=AAPL,MSFT follows the symbols as Server-Sent Events (an EventSource in a browser): the latest
+ *     quote of each symbol, then every quote that changes, as "data:" lines holding the same JSON objects.
+ *     A failed fetch is sent as a "failure" event; the quotes carry on once the feed recovers.
+ * (3) GET /status reports the number of clients following quotes and the number of symbols being fetched.
+ * A client that does not keep up with its stream is disconnected rather than being allowed to hold up the others.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteServer {
+
+	/** the largest number of batches of changes waiting to be sent to a streaming client before it is disconnected */
+	private static final int MAX_PENDING = 1000;
+	/** the time without changes after which a comment is sent, so that a client that has gone away is noticed */
+	private static final long HEARTBEAT_MILLIS = 15000;
+
+	/** where the quotes come from */
+	private final QuoteEngine engine;
+	/** the underlying server */
+	private final HttpServer server;
+	/** the threads that answer requests; each streaming client holds one (a virtual thread, where available) */
+	private final ExecutorService workers = BackgroundExecutor.create("quote-server");
+	/** the number of clients currently following quotes */
+	private final AtomicInteger streaming = new AtomicInteger();
+
+	/**
+	 * Constructor method for the server. The server does not answer requests until it is started.
+	 * @param engine where the quotes come from
+	 * @param address the address to listen on, e.g. 127.0.0.1 to only be reachable from this computer
+	 * @param port the port to listen on, or 0 to use any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public QuoteServer(QuoteEngine engine, String address, int port) throws IOException {
+		this.engine = engine;
+		// Without TCP_NODELAY each event on a stream may wait ~40 ms for a delayed ACK.
+		// Only takes effect if set before the first server is created.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null){
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+		server.setExecutor(workers);
+		server.createContext("/quotes", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				lookup(exchange);
+			}
+		});
+		server.createContext("/stream", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				stream(exchange);
+			}
+		});
+		server.createContext("/status", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, "text/plain", "clients " + streaming.get() + "\nsubscriptions "
+						+ QuoteServer.this.engine.getSubscriptionCount() + "\nsymbols " + QuoteServer.this.engine.getSymbolCount() + "\n");
+			}
+		});
+	}
+
+	/**
+	 * Starts a server on the port chosen with the "stockmarketapp.serverPort" system property (see Settings),
+	 * serving the quotes of the program's engine (see ReturnButtonLogic.getEngine).
+	 * Reports on the error stream if the port cannot be opened.
+	 * @return the server, or null if no port is chosen or the server could not be started
+	 */
+	public static QuoteServer startIfConfigured() {
+		int port = Settings.getServerPort();
+		if (port == 0){
+			return null;
+		}
+		try {
+			QuoteServer server = new QuoteServer(ReturnButtonLogic.getEngine(), Settings.getServerAddress(), port);
+			server.start();
+			return server;
+		} catch (IOException e) {
+			System.err.println("Unable to serve quotes on port " + port + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Starts answering requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops answering requests, disconnects the streaming clients and releases the port.
+	 */
+	public void stop() {
+		server.stop(0);
+		workers.shutdownNow();
+	}
+
+	/**
+	 * @return the address of the server, e.g. http://127.0.0.1:8080
+	 */
+	public String getUrl() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort();
+	}
+
+	/**
+	 * @return the number of clients currently following quotes
+	 */
+	public int getClientCount() {
+		return streaming.get();
+	}
+
+	/**
+	 * Answers a request for the quotes of some symbols.
+	 * @param exchange the request
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void lookup(HttpExchange exchange) throws IOException {
+		List<String> symbols = symbolsOf(exchange);
+		if (symbols == null){
+			return;
+		}
+		List<Quote> quotes;
+		try {
+			quotes = engine.lookup(symbols);
+		} catch (IOException e) {
+			respond(exchange, 502, "text/plain", "Unable to retrieve data: " + e.getMessage() + "\n");
+			return;
+		}
+		boolean csv = "csv".equals(parameter(exchange.getRequestURI().getRawQuery(), "format"));
+		StringBuilder body = new StringBuilder(quotes.size() * QuoteFormatter.CHARS_PER_QUOTE);
+		if (csv){
+			body.append(QuoteFormatter.CSV_HEADER).append('\n');
+		}
+		for (Quote quote : quotes){
+			if (csv){
+				QuoteFormatter.appendCsv(body, quote);
+			}
+			else {
+				QuoteFormatter.appendJson(body, quote);
+			}
+		}
+		respond(exchange, 200, csv ? "text/csv" : "application/x-ndjson", body.toString());
+	}
+
+	/**
+	 * Follows some symbols for a client until it disconnects, sending each change as an event.
+	 * The engine hands the changes over through a queue, so that a slow client never holds up the engine.
+	 * @param exchange the request
+	 * @throws IOException if the events cannot be sent
+	 */
+	private void stream(HttpExchange exchange) throws IOException {
+		List<String> symbols = symbolsOf(exchange);
+		if (symbols == null){
+			return;
+		}
+		// each item is a list of changed quotes, or the IOException of a failed fetch
+		final BlockingQueue<Object> pending = new ArrayBlockingQueue<Object>(MAX_PENDING);
+		final AtomicBoolean overflowed = new AtomicBoolean();
+		QuoteEngine.Subscription subscription = engine.subscribe(new QuoteWatcher.Listener() {
+			@Override
+			public void quotesChanged(List<Quote> changed) {
+				if (!pending.offer(changed)){
+					overflowed.set(true);
+				}
+			}
+
+			@Override
+			public void fetchFailed(IOException e) {
+				pending.offer(e);
+			}
+		});
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(200, 0); // sent in chunks, for as long as the client stays
+		streaming.incrementAndGet();
+		try (OutputStream out = exchange.getResponseBody()) {
+			subscription.setSymbols(symbols);
+			StringBuilder event = new StringBuilder();
+			while (!overflowed.get()){
+				Object item = pending.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+				event.setLength(0);
+				if (item == null){
+					event.append(": keep-alive\n\n");
+				}
+				else if (item instanceof IOException){
+					String message = String.valueOf(((IOException) item).getMessage()).replace('\n', ' ');
+					event.append("event: failure\ndata: ").append(message).append("\n\n");
+				}
+				else {
+					@SuppressWarnings("unchecked")
+					List<Quote> changed = (List<Quote>) item;
+					for (Quote quote : changed){
+						event.append("data: ");
+						QuoteFormatter.appendJson(event, quote); // ends the line
+						event.append('\n'); // and the event
+					}
+				}
+				out.write(event.toString().getBytes(StandardCharsets.UTF_8));
+				out.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt(); // the server is stopping
+		} finally {
+			subscription.cancel();
+			streaming.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Reads the symbols of a request, answering it with an error if it has none.
+	 * @param exchange the request
+	 * @return the symbols, or null if the request has been answered with an error
+	 * @throws IOException if the error cannot be sent
+	 */
+	private static List<String> symbolsOf(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("GET")){
+			respond(exchange, 405, "text/plain", "Only GET is supported.\n");
+			return null;
+		}
+		String value = parameter(exchange.getRequestURI().getRawQuery(), "symbols");
+		List<String> symbols = new ArrayList<String>();
+		if (value != null){
+			for (String symbol : value.split("[ +,]")){
+				if (symbol.length() > 0){
+					symbols.add(symbol);
+				}
+			}
+		}
+		if (symbols.isEmpty()){
+			respond(exchange, 400, "text/plain", "Please give at least one symbol, e.g. ?symbols=AAPL,MSFT\n");
+			return null;
+		}
+		return symbols;
+	}
+
+	/**
+	 * @param rawQuery the query of a request's address, still encoded, or null
+	 * @param name the name of a parameter
+	 * @return the decoded value of the parameter, or null if it is not given
+	 */
+	private static String parameter(String rawQuery, String name) {
+		if (rawQuery == null){
+			return null;
+		}
+		for (String pair : rawQuery.split("&")){
+			int equals = pair.indexOf('=');
+			if (equals > 0 && pair.substring(0, equals).equals(name)){
+				return URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Answers a request with a whole body at once.
+	 * @param exchange the request
+	 * @param status the HTTP status code
+	 * @param type the content type of the body, without the character set
+	 * @param body the body
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void respond(HttpExchange exchange, int status, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type + "; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+} // End of QuoteServer definition
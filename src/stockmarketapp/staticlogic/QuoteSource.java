@@ -0,0 +1,29 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Supplies the quotes for a list of symbols. The rest of the program obtains all its data through a QuoteSource,
+ * so that the feed can be swapped for a recording or a simulated market, e.g. to run without a network or under load.
+ * Three sources are available (see Settings.getSource):
+ * (1) HttpQuoteSource: requests the data from Yahoo! Quotes, or a feed in the same format.
+ * (2) ReplayQuoteSource: plays back quotes recorded in a file, at a chosen speed.
+ * (3) SyntheticQuoteSource: makes up prices that move at random.
+ * Implementations must allow fetch to be called by several threads at once (see QueryPlanner).
+ * @author Sadruddin Junejo
+ *
+ */
+public interface QuoteSource {
+
+	/**
+	 * Obtains the quotes for a list of symbols in a single operation.
+	 * Symbols the source does not know are returned with the status NOT_FOUND.
+	 * @param symbols the symbols to look up, without duplicates
+	 * @return a quote for each symbol, normally in the order the symbols were given (QueryPlanner matches them up by symbol)
+	 * @throws IOException if the quotes cannot be obtained
+	 * @throws java.io.InterruptedIOException if the calling thread is interrupted
+	 */
+	List<Quote> fetch(List<String> symbols) throws IOException;
+
+} // End of QuoteSource definition
@@ -0,0 +1,455 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Splits the CSV data returned by Yahoo! Quotes into rows and columns in a single pass.
+ * Replaces splitting the whole response on '\n' and then splitting each row with substring calls.
+ *
+ * The tokenizer reads from a Reader into a char buffer and finds the boundaries of every field without copying them.
+ * A field enclosed in quotes may contain commas, for example "Canon, Inc America".
+ * The current row is exposed through a single QuoteRow object which is reused for every row
+ * (a flyweight), so reading any number of rows does not create any garbage unless a field is
+ * explicitly turned into a String.
+ *
+ * This class is meant to be used as follows: <code>
+ * QuoteTokenizer tokenizer = new QuoteTokenizer(reader);
+ * while (tokenizer.next()) {
+ *   QuoteRow row = tokenizer.row();
+ *   double price = row.parseDouble(1);
+ * }
+ * </code>
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteTokenizer {
+
+	/** the size of the buffer initially used for reading */
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/** where the data comes from; null if all the data was supplied up front */
+	private final Reader in;
+	/** the data that has been read but not yet tokenized, from position to limit */
+	private char[] buffer;
+	/** the start of the first row that has not yet been returned */
+	private int position;
+	/** the end of the valid data in the buffer */
+	private int limit;
+	/** true once the reader has no more data */
+	private boolean endOfInput;
+	/** the view of the current row; reused for every row */
+	private final QuoteRow row = new QuoteRow();
+
+	/**
+	 * Constructor method for tokenizing data as it is read.
+	 * @param in the data to tokenize
+	 */
+	public QuoteTokenizer(Reader in) {
+		this.in = in;
+		this.buffer = new char[INITIAL_BUFFER_SIZE];
+	}
+
+	/**
+	 * Constructor method for tokenizing data that is already in memory. The characters are not copied.
+	 * @param data the data to tokenize
+	 * @param offset the position of the first character in the array
+	 * @param length the number of characters to tokenize
+	 */
+	public QuoteTokenizer(char[] data, int offset, int length) {
+		this.in = null;
+		this.buffer = data;
+		this.position = offset;
+		this.limit = offset + length;
+		this.endOfInput = true;
+	}
+
+	/**
+	 * Moves on to the next row of data, skipping blank lines.
+	 * The fields of the row can then be accessed through row().
+	 * @return true if there is another row, false if all the data has been read
+	 * @throws IOException if the data cannot be read
+	 */
+	public boolean next() throws IOException {
+		while (true){
+			int end = scanRow(position);
+			if (end >= 0){
+				position = end;
+				if (!row.isBlank()){
+					return true;
+				}
+			}
+			else if (endOfInput){
+				return false; // scanRow only fails to find the end of a row when there is no more data
+			}
+			else {
+				fill();
+			}
+		}
+	}
+
+	/**
+	 * @return the current row. The same object is returned for every row; its contents change when next() is called.
+	 */
+	public QuoteRow row() {
+		return row;
+	}
+
+	/**
+	 * Finds the fields of the row starting at a given position in the buffer.
+	 * @param start the position of the first character of the row
+	 * @return the position just after the end of the row, or -1 if the row is not complete
+	 *         (either because more data needs to be read, or because there is no data left)
+	 */
+	private int scanRow(int start) {
+		if (start >= limit){
+			return -1;
+		}
+		row.reset(buffer);
+		int i = start;
+		int fieldStart = start;
+		boolean quoted = false;
+		while (true){
+			if (i >= limit){
+				if (!endOfInput){
+					return -1;
+				}
+				row.addField(fieldStart, i, quoted);
+				return i; // the last row need not end with a new line
+			}
+			char c = buffer[i];
+			if (c == '"' && i == fieldStart){
+				quoted = true;
+				i = skipQuotedText(i + 1);
+				if (i < 0){
+					if (!endOfInput){
+						return -1;
+					}
+					i = limit; // unterminated quote: the rest of the data forms the field
+				}
+				continue;
+			}
+			if (c == ','){
+				row.addField(fieldStart, i, quoted);
+				fieldStart = i + 1;
+				quoted = false;
+			}
+			else if (c == '\n' || c == '\r'){
+				row.addField(fieldStart, i, quoted);
+				if (c == '\r'){
+					if (i + 1 >= limit && !endOfInput){
+						return -1; // cannot tell yet whether a '\n' follows
+					}
+					if (i + 1 < limit && buffer[i + 1] == '\n'){
+						i++;
+					}
+				}
+				return i + 1;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Finds the end of a quoted field. A quote only ends the field if it is followed by a comma or the end of a line,
+	 * so stray quotes within a company name do not cause the rest of the row to be misread.
+	 * @param from the position just after the opening quote
+	 * @return the position just after the closing quote, or -1 if it is not in the buffer
+	 */
+	private int skipQuotedText(int from) {
+		for (int i = from; i < limit; i++){
+			if (buffer[i] == '"'){
+				if (i + 1 >= limit){
+					return endOfInput ? i + 1 : -1;
+				}
+				char next = buffer[i + 1];
+				if (next == ',' || next == '\n' || next == '\r'){
+					return i + 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads more data into the buffer, first moving any partly read row to the start of the buffer
+	 * and making the buffer larger if a single row does not fit.
+	 * @throws IOException if the data cannot be read
+	 */
+	private void fill() throws IOException {
+		int remaining = limit - position;
+		if (position > 0){
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+		}
+		else if (remaining == buffer.length){
+			char[] larger = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, larger, 0, remaining);
+			buffer = larger;
+		}
+		position = 0;
+		limit = remaining;
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0){
+			endOfInput = true;
+		}
+		else {
+			limit += read;
+		}
+	}
+
+	/**
+	 * A view of one row of data, giving access to its fields without copying them.
+	 * The view is only valid until the tokenizer moves on to the next row.
+	 */
+	public static class QuoteRow {
+
+		/** the maximum number of fields recorded for a row; any further fields are ignored */
+		private static final int MAX_FIELDS = 32;
+
+		/** powers of ten that can be represented exactly by a double */
+		private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+		};
+
+		/** the buffer the fields are found in */
+		private char[] data;
+		/** the number of fields in the row */
+		private int fieldCount;
+		/** the position of the first character of each field, including any opening quote */
+		private final int[] starts = new int[MAX_FIELDS];
+		/** the position just after the last character of each field, including any closing quote */
+		private final int[] ends = new int[MAX_FIELDS];
+		/** whether each field is enclosed in quotes */
+		private final boolean[] quoted = new boolean[MAX_FIELDS];
+
+		/**
+		 * Prepares the view for a new row.
+		 * @param data the buffer the row is in
+		 */
+		void reset(char[] data) {
+			this.data = data;
+			this.fieldCount = 0;
+		}
+
+		/**
+		 * Records the position of the next field.
+		 * @param start the position of the first character, including any opening quote
+		 * @param end the position just after the last character, including any closing quote
+		 * @param isQuoted whether the field is enclosed in quotes
+		 */
+		void addField(int start, int end, boolean isQuoted) {
+			if (fieldCount < MAX_FIELDS){
+				starts[fieldCount] = start;
+				ends[fieldCount] = end;
+				quoted[fieldCount] = isQuoted;
+				fieldCount++;
+			}
+		}
+
+		/**
+		 * @return true if the row is an empty line
+		 */
+		boolean isBlank() {
+			return fieldCount == 1 && starts[0] == ends[0];
+		}
+
+		/**
+		 * @return the number of fields in the row
+		 */
+		public int getFieldCount() {
+			return fieldCount;
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return the position of the first character of the field's value, i.e. after any opening quote
+		 */
+		private int valueStart(int field) {
+			return quoted[field] ? starts[field] + 1 : starts[field];
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return the position just after the field's value, i.e. before any closing quote
+		 */
+		private int valueEnd(int field) {
+			if (quoted[field] && ends[field] - starts[field] >= 2 && data[ends[field] - 1] == '"'){
+				return ends[field] - 1;
+			}
+			return ends[field];
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return the length of the field's value, not counting any enclosing quotes
+		 */
+		public int length(int field) {
+			return valueEnd(field) - valueStart(field);
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @param index the position of the character within the field's value
+		 * @return the character
+		 */
+		public char charAt(int field, int index) {
+			return data[valueStart(field) + index];
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return true if the field is enclosed in quotes
+		 */
+		public boolean isQuoted(int field) {
+			return quoted[field];
+		}
+
+		/**
+		 * Compares a field's value (without any enclosing quotes) with a string, without creating any objects.
+		 * @param field the index of the field
+		 * @param str the string to compare with
+		 * @return true if the value is the same as the string
+		 */
+		public boolean valueEquals(int field, String str) {
+			int start = valueStart(field);
+			int length = valueEnd(field) - start;
+			if (length != str.length()){
+				return false;
+			}
+			for (int i = 0; i < length; i++){
+				if (data[start + i] != str.charAt(i)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return true if the field contains "N/A", which is how Yahoo! Quotes indicates missing data
+		 */
+		public boolean isNA(int field) {
+			return valueEquals(field, "N/A");
+		}
+
+		/**
+		 * Gives access to a field's value without copying it.
+		 * @param field the index of the field
+		 * @return a read-only view of the value, which is only valid until the tokenizer moves on
+		 */
+		public CharBuffer value(int field) {
+			int start = valueStart(field);
+			return CharBuffer.wrap(data, start, valueEnd(field) - start).asReadOnlyBuffer();
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return a copy of the field's value, without any enclosing quotes
+		 */
+		public String valueString(int field) {
+			int start = valueStart(field);
+			return new String(data, start, valueEnd(field) - start);
+		}
+
+		/**
+		 * @param field the index of the field
+		 * @return a copy of the field exactly as it appears in the data, including any enclosing quotes
+		 */
+		public String rawString(int field) {
+			return new String(data, starts[field], ends[field] - starts[field]);
+		}
+
+		/**
+		 * Returns a copy of the data from the start of one field to the end of another, including the commas in between.
+		 * @param firstField the index of the first field
+		 * @param lastField the index of the last field
+		 * @return the data, exactly as it appears in the row
+		 */
+		public String rawString(int firstField, int lastField) {
+			return new String(data, starts[firstField], ends[lastField] - starts[firstField]);
+		}
+
+		/**
+		 * Reads a field as a number directly from the buffer, without creating a String.
+		 * Plain decimal numbers (such as "-12.345") are converted exactly as Double.parseDouble would;
+		 * anything else that is numeric (for example, numbers with an exponent) is passed on to Double.parseDouble.
+		 * @param field the index of the field
+		 * @return the number, or NaN if the field is not a number (for example "N/A")
+		 */
+		public double parseDouble(int field) {
+			int i = valueStart(field);
+			int end = valueEnd(field);
+			if (i >= end){
+				return Double.NaN;
+			}
+			boolean negative = false;
+			if (data[i] == '-' || data[i] == '+'){
+				negative = data[i] == '-';
+				i++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int fractionDigits = -1; // -1 until the decimal point is found
+			for (; i < end; i++){
+				char c = data[i];
+				if (c >= '0' && c <= '9'){
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+					if (fractionDigits >= 0){
+						fractionDigits++;
+					}
+					if (digits > 15){
+						return slowParseDouble(field);
+					}
+				}
+				else if (c == '.' && fractionDigits < 0){
+					fractionDigits = 0;
+				}
+				else {
+					return slowParseDouble(field);
+				}
+			}
+			if (digits == 0){
+				return Double.NaN;
+			}
+			// Both numbers are exact, so a single division gives the correctly rounded result.
+			double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+			return negative ? -value : value;
+		}
+
+		/**
+		 * Looks up the stock exchange named in a field directly in the buffer, without creating a String.
+		 * @param field the index of the field
+		 * @return the exchange (see ExchangeRegistry), or null if it is not known
+		 */
+		public Exchange exchange(int field) {
+			return ExchangeRegistry.getDefault().lookup(data, valueStart(field), valueEnd(field));
+		}
+
+		/**
+		 * Reads a field as a price directly from the buffer, without creating a String (see Price.parse).
+		 * @param field the index of the field
+		 * @return the price in ticks, or Price.NONE if the field is not a number (for example "N/A")
+		 */
+		public long parsePrice(int field) {
+			return Price.parse(data, valueStart(field), valueEnd(field));
+		}
+
+		/**
+		 * Reads a field as a number using Double.parseDouble, for the formats parseDouble does not handle itself.
+		 * @param field the index of the field
+		 * @return the number, or NaN if the field is not a number
+		 */
+		private double slowParseDouble(int field) {
+			try {
+				return Double.parseDouble(valueString(field));
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		}
+
+	} // End of QuoteRow definition
+
+} // End of QuoteTokenizer definition
@@ -0,0 +1,276 @@
+package stockmarketapp.staticlogic;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads data from the quote feed over HTTP. Replaces the Scanner-based URLReader for all requests
+ * made by the program:
+ * (1) A single HttpClient is shared, so connections are kept alive and reused between requests.
+ * (2) Both connecting and waiting for a response are limited by timeouts.
+ * (3) Responses may be gzip-compressed.
+ * (4) Requests that fail for a temporary reason are retried a limited number of times, waiting longer after each attempt.
+ * (5) Failures are reported as a FeedException rather than by returning null.
+ * The body of a response is never collected into a String: it is handed to a BodyParser as it arrives.
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteTransport {
+
+	/**
+	 * Consumes the body of a response as it is read from the connection.
+	 * @param <T> the type of the parsed result
+	 */
+	public interface BodyParser<T> {
+		/**
+		 * Parses a response body.
+		 * @param body the body of the response. Closed by the transport once this method returns.
+		 * @return the parsed result
+		 * @throws IOException if the body cannot be read or parsed
+		 */
+		T parse(Reader body) throws IOException;
+	}
+
+	/** the transport used by the program unless another one is specified */
+	private static final QuoteTransport DEFAULT = new QuoteTransport(
+			Duration.ofSeconds(5), Duration.ofSeconds(10), 3, 200);
+
+	/** the client through which all requests are sent; it maintains the pool of open connections */
+	private final HttpClient client;
+	/** the maximum time to wait for the response headers of a single attempt */
+	private final Duration readTimeout;
+	/** the maximum number of times a request is attempted */
+	private final int maxAttempts;
+	/** the time waited after the first failed attempt; doubled after every further failure */
+	private final long backoffMillis;
+
+	/**
+	 * Constructor method for the transport.
+	 * @param connectTimeout the maximum time to wait for a connection to be established
+	 * @param readTimeout the maximum time to wait for a response once a request has been sent
+	 * @param maxAttempts the maximum number of times a request is attempted (at least 1)
+	 * @param backoffMillis the time waited before the first retry, in milliseconds
+	 */
+	public QuoteTransport(Duration connectTimeout, Duration readTimeout, int maxAttempts, long backoffMillis) {
+		if (maxAttempts < 1){
+			throw new IllegalArgumentException("maxAttempts must be at least 1");
+		}
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1) // the quote feed is a plain HTTP/1.1 server
+				.connectTimeout(connectTimeout)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.executor(BackgroundExecutor.create("quote-transport"))
+				.build();
+		this.readTimeout = readTimeout;
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoffMillis;
+	}
+
+	/**
+	 * @return the transport shared by the program
+	 */
+	public static QuoteTransport getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Requests a URL and parses the body of the response, retrying if the request fails for a temporary reason.
+	 * @param url the URL to request. Must be an absolute URL including a protocol identifier.
+	 * @param parser consumes the body of the response
+	 * @return the result returned by the parser
+	 * @throws FeedException if the feed cannot be reached or responds with an error
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 * @throws IOException if the parser fails
+	 */
+	public <T> T get(String url, BodyParser<T> parser) throws IOException {
+		HttpRequest request = buildRequest(url);
+		long backoff = backoffMillis;
+		for (int attempt = 1; ; attempt++){
+			try {
+				return send(request, parser);
+			} catch (FeedException e) {
+				if (!e.isRetryable() || attempt >= maxAttempts){
+					throw e;
+				}
+			}
+			sleep(backoff);
+			backoff = backoff * 2;
+		}
+	}
+
+	/**
+	 * Builds the request for a URL, asking for a compressed response.
+	 * @param url the URL to request
+	 * @return the request
+	 * @throws FeedException if the URL is not valid
+	 */
+	private HttpRequest buildRequest(String url) throws FeedException {
+		try {
+			return HttpRequest.newBuilder(new URI(url))
+					.timeout(readTimeout)
+					.header("Accept-Encoding", "gzip")
+					.GET()
+					.build();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new FeedException(FeedException.Kind.MALFORMED_URL, "invalid URL: " + url, e);
+		}
+	}
+
+	/**
+	 * Makes a single attempt at a request.
+	 * @param request the request to send
+	 * @param parser consumes the body of the response
+	 * @return the result returned by the parser
+	 * @throws IOException if the attempt fails
+	 */
+	private <T> T send(HttpRequest request, BodyParser<T> parser) throws IOException {
+		HttpResponse<InputStream> response;
+		try {
+			response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("request interrupted");
+		} catch (HttpConnectTimeoutException e) {
+			throw new FeedException(FeedException.Kind.CONNECT, "timed out connecting to " + request.uri().getHost(), e);
+		} catch (HttpTimeoutException e) {
+			throw new FeedException(FeedException.Kind.TIMEOUT, "no response from " + request.uri().getHost(), e);
+		} catch (ConnectException e) {
+			throw new FeedException(FeedException.Kind.CONNECT, "could not connect to " + request.uri().getHost(), e);
+		} catch (IOException e) {
+			throw new FeedException(FeedException.Kind.READ, "connection to " + request.uri().getHost() + " failed", e);
+		}
+
+		InputStream in = new CountingInputStream(response.body(), request.uri().getHost());
+		try {
+			if (response.statusCode() != 200){
+				throw new FeedException(FeedException.Kind.HTTP_STATUS, response.statusCode(),
+						request.uri().getHost() + " responded with status " + response.statusCode(), null);
+			}
+			if ("gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(""))){
+				in = new GZIPInputStream(in);
+			}
+			try (Reader body = new InputStreamReader(in, charsetOf(response))) {
+				return parser.parse(body);
+			}
+		} catch (EOFException e) { // a compressed response cut short
+			throw new FeedException(FeedException.Kind.READ, "the response from " + request.uri().getHost() + " ended early", e);
+		} finally {
+			in.close(); // returns the connection to the pool
+		}
+	}
+
+	/**
+	 * Counts the bytes read from a response as they were sent (see Metrics.Counter.BYTES_READ),
+	 * adding them to the count once the response has been read.
+	 * A connection that fails while the response is being read is reported as a FeedException, so that the request
+	 * is tried again like one that fails before the response arrives; errors in the data itself are left to the parser.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		private final String host;
+		private long bytes;
+		private boolean closed;
+
+		CountingInputStream(InputStream in, String host) {
+			super(in);
+			this.host = host;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b;
+			try {
+				b = super.read();
+			} catch (IOException e) {
+				throw readFailed(e);
+			}
+			if (b >= 0){
+				bytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int n;
+			try {
+				n = super.read(buffer, offset, length);
+			} catch (IOException e) {
+				throw readFailed(e);
+			}
+			if (n > 0){
+				bytes += n;
+			}
+			return n;
+		}
+
+		/**
+		 * @param e the error reading the response
+		 * @return the error to throw: a cancelled request stays cancelled, anything else becomes a failed read
+		 */
+		private IOException readFailed(IOException e) {
+			if (e instanceof FeedException || e instanceof InterruptedIOException){
+				return e;
+			}
+			return new FeedException(FeedException.Kind.READ, "connection to " + host + " failed while reading the response", e);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed){
+				closed = true;
+				Metrics.count(Metrics.Counter.BYTES_READ, bytes);
+			}
+			super.close();
+		}
+	}
+
+	/**
+	 * Determines the character set of a response from its Content-Type header.
+	 * @param response the response
+	 * @return the character set named in the header, or UTF-8 if none is named
+	 */
+	private static Charset charsetOf(HttpResponse<?> response) {
+		String contentType = response.headers().firstValue("Content-Type").orElse("");
+		int index = contentType.toLowerCase().indexOf("charset=");
+		if (index >= 0){
+			try {
+				return Charset.forName(contentType.substring(index + 8).trim());
+			} catch (IllegalArgumentException e) {
+				// unknown character set: fall through to the default
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Waits before the next attempt at a request.
+	 * @param millis the time to wait
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("request interrupted");
+		}
+	}
+
+} // End of QuoteTransport definition
@@ -0,0 +1,61 @@
+package stockmarketapp.staticlogic;
+
+import java.util.List;
+
+/**
+ * A display that queries are typed into and quotes are shown on, such as one of the program's windows (see MainWindow).
+ * Any number of views can be open at once; each has its own query and watch mode, and all of them share the quotes
+ * fetched (see QuoteEngine). Unless stated otherwise, the methods must be called on the Swing event thread.
+ * @author Sadruddin Junejo
+ *
+ */
+public interface QuoteView {
+
+	/**
+	 * @return the current input
+	 */
+	String getInputString();
+
+	/**
+	 * Sets the input whenever the user presses an input button.
+	 * @param str the new input
+	 */
+	void setInputString(String str);
+
+	/**
+	 * Sets the output when there is a message to display (e.g. an error), replacing any quotes on display.
+	 * @param str the message
+	 */
+	void setOutputString(String str);
+
+	/**
+	 * Displays a new set of quotes, replacing whatever was output before.
+	 * @param quotes the quotes, in the order they are to be displayed
+	 */
+	void setQuotes(List<Quote> quotes);
+
+	/**
+	 * Updates quotes that are on display; quotes for other symbols are ignored. May be called on any thread.
+	 * @param changed the quotes that have changed
+	 */
+	void updateQuotes(List<Quote> changed);
+
+	/**
+	 * Shows whether the view is in watch mode.
+	 * @param watching true if the view is in watch mode
+	 */
+	void setWatching(boolean watching);
+
+	/**
+	 * Shows or hides the indication that data is being retrieved.
+	 * @param busy true while a request is in progress, false once its result has been output
+	 */
+	void setBusy(boolean busy);
+
+	/**
+	 * Shows a price alert that has fired, replacing the one shown before. May be called on any thread.
+	 * @param str the description of the alert
+	 */
+	void showAlert(String str);
+
+} // End of QuoteView definition
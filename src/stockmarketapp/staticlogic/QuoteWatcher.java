@@ -0,0 +1,332 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repeatedly fetches the quotes for a set of symbols at a fixed interval ("watch mode"),
+ * and tells its listener about the quotes that have changed since the previous fetch.
+ * If a fetch is still in progress when the next one is due, the next one is skipped,
+ * so a slow feed never causes fetches to pile up.
+ * Symbols listed on a stock exchange that is closed are not fetched again once a fetch has been made since the close,
+ * as their prices cannot have changed (see Exchange and Settings.isSkipClosedMarkets).
+ * @author Sadruddin Junejo
+ *
+ */
+public class QuoteWatcher {
+
+	/**
+	 * Fetches the latest quotes for the symbols being watched.
+	 */
+	public interface Fetcher {
+		/**
+		 * @param symbols the symbols being watched
+		 * @return a quote for each symbol
+		 * @throws IOException if the quotes cannot be fetched
+		 */
+		List<Quote> fetch(List<String> symbols) throws IOException;
+	}
+
+	/**
+	 * Receives the results of the watcher's fetches. Called on a background thread.
+	 */
+	public interface Listener {
+		/**
+		 * Called after a fetch that found changes. Not called if nothing has changed.
+		 * @param changed the quotes that differ from the previous fetch (or are new), in the order the symbols are watched
+		 */
+		void quotesChanged(List<Quote> changed);
+
+		/**
+		 * Called when a fetch fails. The watcher carries on and tries again at the next interval.
+		 * @param e the reason the fetch failed
+		 */
+		void fetchFailed(IOException e);
+	}
+
+	/** fetches the latest quotes */
+	private final Fetcher fetcher;
+	/** receives the changed quotes */
+	private final Listener listener;
+	/** decides when fetches are due */
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(BackgroundExecutor.daemonThreadFactory("quote-watch"));
+	/** carries out the fetches, so that the scheduler is never held up */
+	private final ExecutorService worker = BackgroundExecutor.create("quote-watch-fetch");
+	/** true while a fetch is in progress */
+	private final AtomicBoolean fetching = new AtomicBoolean();
+	/** true if a fetch has been asked for (see fetchNow) that has not started yet */
+	private final AtomicBoolean requested = new AtomicBoolean();
+	/** the number of fetches skipped because the previous one was still in progress */
+	private final AtomicLong skipped = new AtomicLong();
+	/** the number of times a symbol was not fetched because its stock exchange was closed */
+	private final AtomicLong closedSkipped = new AtomicLong();
+	/** true if symbols whose stock exchange is closed are not fetched */
+	private volatile boolean skipClosedMarkets = Settings.isSkipClosedMarkets();
+	/** the time the previous successful fetch started, in milliseconds since 1970; only used by the fetch in progress */
+	private long lastFetchMillis;
+	/** the time the quotes passed on were last known to be current, in milliseconds since 1970; 0 if never */
+	private volatile long currentMillis;
+
+	/** the symbols being watched */
+	private volatile List<String> symbols = Collections.emptyList();
+	/** the most recent quote for each symbol, by symbol in capitals */
+	private final Map<String, Quote> previous = new ConcurrentHashMap<String, Quote>();
+	/** the repeating task, or null if the watcher is stopped. Guarded by this. */
+	private ScheduledFuture<?> schedule;
+
+	/**
+	 * Constructor method for the watcher. The watcher does nothing until it is started.
+	 * @param fetcher fetches the latest quotes
+	 * @param listener receives the changed quotes
+	 */
+	public QuoteWatcher(Fetcher fetcher, Listener listener) {
+		this.fetcher = fetcher;
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts watching a set of symbols, replacing any that were being watched before.
+	 * The first fetch is made straight away, and passes on every quote.
+	 * @param watchedSymbols the symbols to watch
+	 * @param intervalMillis the time between the starts of successive fetches, in milliseconds
+	 */
+	public synchronized void start(List<String> watchedSymbols, long intervalMillis) {
+		stop();
+		previous.clear();
+		setSymbols(watchedSymbols);
+		schedule = scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				tick();
+			}
+		}, 0, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Changes the symbols being watched without restarting the watcher.
+	 * The quotes kept for symbols no longer watched are dropped, so that a symbol watched again is passed on afresh.
+	 * @param watchedSymbols the symbols to watch
+	 */
+	public void setSymbols(List<String> watchedSymbols) {
+		this.symbols = Collections.unmodifiableList(new ArrayList<String>(watchedSymbols));
+		Set<String> keys = new HashSet<String>();
+		for (String symbol : watchedSymbols){
+			keys.add(key(symbol));
+		}
+		previous.keySet().retainAll(keys); // a fetch in progress may put some back; the next change drops them again
+	}
+
+	/**
+	 * Passes on the next quote fetched for a symbol even if it has not changed, e.g. because a stale copy of it has
+	 * been handed out in the meantime.
+	 * @param symbol a symbol being watched
+	 */
+	public void forget(String symbol) {
+		previous.remove(key(symbol));
+	}
+
+	/**
+	 * @return the time the quotes passed on were last known to be current, i.e. the start of the last fetch that did
+	 *         not fail (or that every market was closed for), in milliseconds since 1970; 0 if there has been none
+	 */
+	public long getCurrentMillis() {
+		return currentMillis;
+	}
+
+	/**
+	 * Stops watching. A fetch in progress is allowed to finish, but its results are not passed on.
+	 */
+	public synchronized void stop() {
+		if (schedule != null){
+			schedule.cancel(false);
+			schedule = null;
+		}
+	}
+
+	/**
+	 * @return true if the watcher has been started and not stopped
+	 */
+	public synchronized boolean isRunning() {
+		return schedule != null;
+	}
+
+	/**
+	 * @return the number of fetches skipped because the previous fetch was still in progress
+	 */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return the number of times a symbol was not fetched because its stock exchange was closed
+	 */
+	public long getClosedSkippedCount() {
+		return closedSkipped.get();
+	}
+
+	/**
+	 * @param skip true if symbols whose stock exchange is closed should not be fetched
+	 */
+	public void setSkipClosedMarkets(boolean skip) {
+		this.skipClosedMarkets = skip;
+	}
+
+	/**
+	 * Fetches the quotes straight away rather than at the next interval, e.g. because symbols have been added.
+	 * If a fetch is in progress, another is made as soon as it finishes. Does nothing if the watcher is stopped.
+	 */
+	public void fetchNow() {
+		if (!isRunning()){
+			return;
+		}
+		requested.set(true);
+		startFetch();
+	}
+
+	/**
+	 * Runs when a fetch is due: starts a fetch unless one is already in progress.
+	 */
+	private void tick() {
+		if (!startFetch()){
+			skipped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Starts a fetch on the worker, unless one is already in progress.
+	 * @return true if a fetch was started
+	 */
+	private boolean startFetch() {
+		if (!fetching.compareAndSet(false, true)){
+			return false;
+		}
+		requested.set(false);
+		final ScheduledFuture<?> current;
+		synchronized (this) {
+			current = schedule;
+		}
+		worker.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					poll(current);
+				} finally {
+					fetching.set(false);
+					if (requested.get()){
+						startFetch(); // asked for while this fetch was in progress, which may have missed new symbols
+					}
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Fetches the quotes and passes on those that have changed.
+	 * @param startedBy the repeating task that started this fetch; results are dropped if the watcher has since been stopped or restarted
+	 */
+	private void poll(ScheduledFuture<?> startedBy) {
+		List<String> watched = symbols;
+		if (watched.isEmpty()){
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (skipClosedMarkets){
+			watched = whereOpen(watched, now);
+			if (watched.isEmpty()){
+				currentMillis = now; // the closing prices passed on are still the latest
+				return; // every market is closed, so there is nothing to fetch
+			}
+		}
+		List<Quote> quotes;
+		try {
+			quotes = fetcher.fetch(watched);
+		} catch (InterruptedIOException e) {
+			return;
+		} catch (IOException e) {
+			if (isCurrent(startedBy)){
+				listener.fetchFailed(e);
+			}
+			return;
+		}
+		lastFetchMillis = now;
+		currentMillis = now;
+		List<Quote> changed = new ArrayList<Quote>();
+		for (Quote quote : quotes){
+			Quote old = previous.put(key(quote.getSymbol()), quote);
+			if (!quote.equals(old)){
+				changed.add(quote);
+			}
+		}
+		if (!changed.isEmpty() && isCurrent(startedBy)){
+			listener.quotesChanged(changed);
+		}
+	}
+
+	/**
+	 * Leaves out the symbols whose stock exchange is closed and has not traded since the previous fetch.
+	 * Symbols that have not been fetched yet, or whose exchange is not known, are always kept.
+	 * @param watched the symbols being watched
+	 * @param now the current time, in milliseconds since 1970
+	 * @return the symbols that need fetching
+	 */
+	private List<String> whereOpen(List<String> watched, long now) {
+		ExchangeRegistry registry = ExchangeRegistry.getDefault();
+		// whether each exchange needs fetching (1) or not (2), worked out once per exchange
+		byte[] due = new byte[registry.getExchanges().size()];
+		List<String> open = new ArrayList<String>(watched.size());
+		for (String symbol : watched){
+			Quote quote = previous.get(key(symbol));
+			Exchange exchange = quote == null ? null : registry.lookup(quote.getExchange());
+			if (exchange == null){
+				open.add(symbol);
+				continue;
+			}
+			int index = exchange.getIndex();
+			if (due[index] == 0){
+				// also fetched once after the close, to obtain the closing prices
+				due[index] = exchange.isOpen(now) || lastFetchMillis < exchange.lastClose(now) ? (byte) 1 : (byte) 2;
+			}
+			if (due[index] == 1){
+				open.add(symbol);
+			}
+			else {
+				closedSkipped.incrementAndGet();
+			}
+		}
+		return open;
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the symbol in the form used to match quotes with the symbols watched
+	 */
+	private static String key(String symbol) {
+		return symbol.toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param startedBy the repeating task that started a fetch
+	 * @return true if that task is still the one running
+	 */
+	private synchronized boolean isCurrent(ScheduledFuture<?> startedBy) {
+		return startedBy != null && startedBy == schedule;
+	}
+
+} // End of QuoteWatcher definition
@@ -0,0 +1,170 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plays back quotes recorded in a file, so that the program can run repeatably without a network.
+ * Each line of the file holds the time a quote was recorded, in milliseconds, followed by a row of data exactly as
+ * supplied by Yahoo! Quotes (see HttpQuoteSource), for example:
+ * <code>1418660700000,"Apple Inc.",112.34,111.78,1.88,653.2B,"NasdaqNM","N/A","AAPL"</code>
+ * Lines must be in order of time. Playback starts with the first fetch: each fetch returns, for every symbol,
+ * the latest quote recorded up to the current point of the recording, which advances with the real time that
+ * has passed multiplied by the speed. With a speed of 60, for example, an hour's recording plays in a minute.
+ * When the end of the recording is reached it either starts again or stays at the last quotes.
+ * The file is read on the first fetch and kept in memory.
+ * @author Sadruddin Junejo
+ *
+ */
+public class ReplayQuoteSource implements QuoteSource {
+
+	/** the recording */
+	private final Path file;
+	/** the number of milliseconds of recording played per millisecond of real time */
+	private final double speed;
+	/** true if playback starts again from the beginning when the end of the recording is reached */
+	private final boolean loop;
+
+	// All of the following are guarded by this.
+	/** the time each quote was recorded, in order; null until the file has been read */
+	private long[] times;
+	/** the recorded quotes, in the same order as times */
+	private Quote[] quotes;
+	/** the latest quote played for each symbol; before its first quote is reached, a symbol has that quote */
+	private final Map<String, Quote> current = new HashMap<String, Quote>();
+	/** the index of the next quote to be played */
+	private int cursor;
+	/** the time playback started, in System.nanoTime() terms */
+	private long startNanos;
+	/** the time played at the previous fetch, in milliseconds of recording since playback started */
+	private long played;
+
+	/**
+	 * Constructor method for the source. The file is not read until the first fetch.
+	 * @param file the recording
+	 * @param speed the number of milliseconds of recording played per millisecond of real time
+	 * @param loop true to start again from the beginning when the end of the recording is reached
+	 */
+	public ReplayQuoteSource(Path file, double speed, boolean loop) {
+		if (!(speed > 0)){
+			throw new IllegalArgumentException("speed must be positive: " + speed);
+		}
+		this.file = file;
+		this.speed = speed;
+		this.loop = loop;
+	}
+
+	/**
+	 * Advances the recording to the current point and returns the latest quote of each symbol.
+	 * Symbols that do not appear in the recording are returned as not found.
+	 * @throws IOException if the recording cannot be read
+	 */
+	@Override
+	public synchronized List<Quote> fetch(List<String> symbols) throws IOException {
+		if (times == null){
+			load();
+			startNanos = System.nanoTime();
+		}
+		advance();
+		List<Quote> result = new ArrayList<Quote>(symbols.size());
+		for (String symbol : symbols){
+			Quote quote = current.get(symbol.toUpperCase(Locale.ROOT));
+			result.add(quote != null ? quote : Quote.notFound(symbol, symbol));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of quotes in the recording, or -1 if it has not been read yet
+	 */
+	public synchronized int size() {
+		return times == null ? -1 : times.length;
+	}
+
+	/**
+	 * Plays the quotes recorded between the previous fetch and the current point of the recording.
+	 */
+	private void advance() {
+		if (times.length == 0){
+			return;
+		}
+		long duration = times[times.length - 1] - times[0] + 1;
+		long elapsed = (long) ((System.nanoTime() - startNanos) / 1e6 * speed);
+		long now;
+		if (loop){
+			if (elapsed / duration != played / duration){ // reached the end since the previous fetch
+				playUntil(Long.MAX_VALUE);
+				cursor = 0; // and start again
+			}
+			now = elapsed % duration;
+		}
+		else {
+			now = Math.min(elapsed, duration);
+		}
+		played = elapsed;
+		playUntil(times[0] + now);
+	}
+
+	/**
+	 * Plays the quotes from the cursor onwards that were recorded no later than a given time.
+	 * @param until the time, as recorded
+	 */
+	private void playUntil(long until) {
+		while (cursor < times.length && times[cursor] <= until){
+			Quote quote = quotes[cursor++];
+			current.put(quote.getSymbol().toUpperCase(Locale.ROOT), quote);
+		}
+	}
+
+	/**
+	 * Reads the whole recording, in a single pass.
+	 * @throws IOException if the recording cannot be read or is not in the expected format
+	 */
+	private void load() throws IOException {
+		long[] readTimes = new long[1024];
+		List<Quote> readQuotes = new ArrayList<Quote>();
+		try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			QuoteTokenizer tokenizer = new QuoteTokenizer(in);
+			while (tokenizer.next()){
+				QuoteTokenizer.QuoteRow row = tokenizer.row();
+				int line = readQuotes.size() + 1;
+				double time = row.parseDouble(0);
+				if (row.getFieldCount() < 9 || Double.isNaN(time)){
+					throw new IOException(file + ", quote " + line + ": expected a time followed by 8 columns of data");
+				}
+				if (line > 1 && (long) time < readTimes[line - 2]){
+					throw new IOException(file + ", quote " + line + ": recorded earlier than the quote before it");
+				}
+				if (line > readTimes.length){
+					long[] grown = new long[readTimes.length * 2];
+					System.arraycopy(readTimes, 0, grown, 0, readTimes.length);
+					readTimes = grown;
+				}
+				readTimes[line - 1] = (long) time;
+				Quote quote = Quote.fromRow(row, 1);
+				readQuotes.add(quote);
+				String key = quote.getSymbol().toUpperCase(Locale.ROOT);
+				if (!current.containsKey(key)){
+					current.put(key, quote); // shown until playback reaches the symbol's first quote
+				}
+			}
+		}
+		times = new long[readQuotes.size()];
+		System.arraycopy(readTimes, 0, times, 0, times.length);
+		quotes = readQuotes.toArray(new Quote[0]);
+	}
+
+	@Override
+	public String toString() {
+		return "replay of " + file + " at " + speed + "x" + (loop ? ", looping" : "");
+	}
+
+} // End of ReplayQuoteSource definition
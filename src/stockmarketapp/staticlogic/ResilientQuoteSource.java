@@ -0,0 +1,198 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protects the program from a feed that is failing or slow, and the feed from the program, by passing requests
+ * to another quote source (normally HttpQuoteSource) through three safeguards:
+ * (1) A circuit breaker (see CircuitBreaker): once the feed has failed several times in a row, requests fail at once
+ *     for a while instead of each waiting for a timeout.
+ * (2) A bulkhead: no more than a set number of requests are sent at the same time, however many lookups are in
+ *     progress (e.g. a query and watch mode); a request that cannot be sent within a set time fails (OVERLOADED).
+ * (3) Hedged requests: if a request has not been answered within the time 95% of recent requests took (or a set
+ *     minimum), the same request is sent again, and whichever answer arrives first is used. The second request is
+ *     only sent if the bulkhead has room, so a feed that is slow for everyone is not sent twice the requests.
+ * Together with stale quotes (see QuoteCache), this keeps the time a lookup takes bounded while the feed is degraded.
+ * @author Sadruddin Junejo
+ *
+ */
+public class ResilientQuoteSource implements QuoteSource {
+
+	/** the number of answers the hedging delay is worked out from before it starts afresh, so it follows the feed */
+	private static final int LATENCY_SAMPLES = 10000;
+	/** the number of answers needed before the hedging delay is worked out from them, rather than the minimum */
+	private static final int MIN_SAMPLES = 20;
+
+	/** where the requests are sent */
+	private final QuoteSource delegate;
+	private final CircuitBreaker breaker;
+	/** limits the number of requests in progress */
+	private final Semaphore bulkhead;
+	/** the longest time a request waits for room in the bulkhead, in milliseconds */
+	private final long bulkheadWaitMillis;
+	/** runs the requests when hedging, so that a second can be sent while the first is in progress; null if not hedging */
+	private final ExecutorService executor;
+	/** the shortest time to wait for an answer before hedging, in nanoseconds */
+	private final long minHedgeNanos;
+	/** the time recent requests took to be answered */
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * Constructor method for the source.
+	 * @param delegate where the requests are sent
+	 * @param breaker stops requests to a failing feed
+	 * @param maxConcurrent the largest number of requests in progress at the same time
+	 * @param bulkheadWaitMillis the longest time a request waits for room, in milliseconds
+	 * @param executor runs the requests, so that a slow one can be hedged; null not to hedge
+	 * @param minHedgeMillis the shortest time to wait for an answer before sending the same request again
+	 */
+	public ResilientQuoteSource(QuoteSource delegate, CircuitBreaker breaker, int maxConcurrent, long bulkheadWaitMillis,
+			ExecutorService executor, long minHedgeMillis) {
+		this.delegate = delegate;
+		this.breaker = breaker;
+		this.bulkhead = new Semaphore(maxConcurrent, true);
+		this.bulkheadWaitMillis = bulkheadWaitMillis;
+		this.executor = executor;
+		this.minHedgeNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeMillis);
+	}
+
+	@Override
+	public List<Quote> fetch(List<String> symbols) throws IOException {
+		breaker.acquire();
+		boolean permitted;
+		try {
+			permitted = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			breaker.onAbandoned();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("request cancelled");
+		}
+		if (!permitted){
+			breaker.onAbandoned(); // says nothing about the feed itself
+			Metrics.count(Metrics.Counter.OVERLOADED, 1);
+			throw new FeedException(FeedException.Kind.OVERLOADED, "too many requests to the feed are in progress", null);
+		}
+		try {
+			List<Quote> quotes = executor == null ? delegate.fetch(symbols) : fetchHedged(symbols);
+			breaker.onSuccess();
+			return quotes;
+		} catch (InterruptedIOException e) {
+			breaker.onAbandoned();
+			throw e;
+		} catch (IOException | RuntimeException e) {
+			breaker.onFailure();
+			throw e;
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	/**
+	 * Sends a request, and sends it again if no answer arrives in time (see above).
+	 * @param symbols the symbols to look up
+	 * @return the first answer
+	 * @throws IOException if every request sent failed (the last failure is thrown)
+	 */
+	private List<Quote> fetchHedged(final List<String> symbols) throws IOException {
+		long start = System.nanoTime();
+		CompletionService<List<Quote>> requests = new ExecutorCompletionService<List<Quote>>(executor);
+		Callable<List<Quote>> request = new Callable<List<Quote>>() {
+			@Override
+			public List<Quote> call() throws IOException {
+				return delegate.fetch(symbols);
+			}
+		};
+		List<Future<List<Quote>>> sent = new ArrayList<Future<List<Quote>>>(2);
+		boolean hedgeHoldsPermit = false;
+		try {
+			sent.add(requests.submit(request));
+			Future<List<Quote>> answered = requests.poll(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+			if (answered == null && bulkhead.tryAcquire()){
+				hedgeHoldsPermit = true;
+				sent.add(requests.submit(request));
+				Metrics.count(Metrics.Counter.HEDGED, 1);
+			}
+			for (int failed = 0; ; answered = null){
+				if (answered == null){
+					answered = requests.take();
+				}
+				try {
+					List<Quote> quotes = answered.get();
+					if (answered != sent.get(0)){
+						Metrics.count(Metrics.Counter.HEDGE_WINS, 1);
+					}
+					recordLatency(System.nanoTime() - start);
+					return quotes;
+				} catch (ExecutionException e) {
+					if (++failed == sent.size()){
+						throw rethrow(e.getCause());
+					}
+					// otherwise waits for the other request
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("request cancelled");
+		} finally {
+			for (Future<List<Quote>> future : sent){
+				future.cancel(true); // the slower request is no longer wanted
+			}
+			if (hedgeHoldsPermit){
+				bulkhead.release();
+			}
+		}
+	} // End of fetchHedged
+
+	/**
+	 * @return the time to wait for an answer before sending the same request again, in nanoseconds
+	 */
+	private long hedgeDelayNanos() {
+		if (latencies.getCount() < MIN_SAMPLES){
+			return minHedgeNanos;
+		}
+		return Math.max(minHedgeNanos, latencies.getValueAtPercentile(95));
+	}
+
+	private void recordLatency(long nanos) {
+		if (latencies.getCount() >= LATENCY_SAMPLES){
+			latencies.reset();
+		}
+		latencies.record(nanos);
+	}
+
+	/**
+	 * @param cause why a request failed
+	 * @return the failure as an IOException, to be thrown
+	 */
+	private static IOException rethrow(Throwable cause) {
+		if (cause instanceof IOException){
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException){
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error){
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+
+	/**
+	 * @return the circuit breaker, e.g. to show its state
+	 */
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+
+} // End of ResilientQuoteSource definition
@@ -1,86 +1,619 @@
 package stockmarketapp.staticlogic;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import stockmarketapp.MainApp;
+import javax.swing.SwingUtilities;
 
 /**
  * Handles what occurs when the return button is pressed.
  * Note that most of the methods in this class are *only* executed if the input is successful, i.e. does not contain any errors.
  * The first method deals with what happens when the return button is pressed, including checking for any input.
+ * The data itself is fetched and processed on a background thread so that the window stays responsive while
+ * Yahoo! Quotes is slow to respond; the result is then handed back to the Swing event thread for display.
+ * Every window (see QuoteView) has its own query, while the quotes fetched are shared by all of them (see QuoteEngine).
  * @author Sadruddin Junejo
  *
  */
 public class ReturnButtonLogic {
 	
-	/** added to the front of the user input */
-	private final static String URLPREFIX = "http://finance.yahoo.com/d/quotes.csv?s="; 
-	/** added to the end of the user input */
-	private final static String URLPOSTFIX = "&f=nl1pdj1xe1s"; 
+	/** the number of chunks of prices that may wait to be written to the store (see STORE_WRITER) */
+	private final static int STORE_BACKLOG = 64;
+	/** where the quotes come from; Yahoo! Quotes unless another source is chosen (see Settings.getSource) */
+	private final static QuoteSource SOURCE = createSource();
+	/** the symbols that can be looked up (see SymbolIndex); null if there is no listing, when all can be */
+	private final static SymbolIndex SYMBOLS = createSymbolIndex();
+	/** keeps every price obtained (see TickStore); null if switched off or unavailable */
+	private final static TickStore STORE = createStore();
+	/**
+	 * writes the prices obtained to the store on a thread of its own, so that fetching never waits for the disk or for
+	 * the store's lock. If the writer falls behind by more than STORE_BACKLOG chunks, the chunk is written by the
+	 * thread that fetched it, which slows the fetching down rather than letting the backlog grow
+	 */
+	private final static ExecutorService STORE_WRITER = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(STORE_BACKLOG), BackgroundExecutor.daemonThreadFactory("tick-store"),
+			new ThreadPoolExecutor.CallerRunsPolicy());
+	/** works out moving statistics of the prices obtained (see AnalyticsEngine) */
+	private final static AnalyticsEngine ANALYTICS = new AnalyticsEngine(Settings.getAnalyticsWindows(),
+			Settings.getAnalyticsSymbols(), STORE);
+	/** checks the quotes obtained against the price alerts set (see AlertEngine) */
+	private final static AlertEngine ALERTS = createAlerts();
+	/** runs the fetching and processing of data away from the Swing event thread */
+	private final static ExecutorService EXECUTOR = BackgroundExecutor.create("quote-fetch");
+	/** splits large requests into chunks and sends them in parallel (see QueryPlanner) */
+	private final static QueryPlanner PLANNER = new QueryPlanner(new QueryPlanner.ChunkFetcher() {
+		@Override
+		public List<Quote> fetch(List<String> symbols) throws IOException {
+			return fetchChunk(symbols);
+		}
+	}, Settings.getChunkSize(), Settings.getParallelism(), BackgroundExecutor.create("quote-chunk"));
+	/** keeps recently fetched quotes, so that only the symbols not looked up recently are requested (see QuoteCache) */
+	private final static QuoteCache CACHE = new QuoteCache(new QuoteCache.Loader() {
+		@Override
+		public List<Quote> load(List<String> symbols) throws IOException {
+			return loadQuotes(symbols);
+		}
+	}, Settings.getCacheSize(), Settings.getCacheTtlMillis(), Settings.getCacheMaxStaleMillis(),
+			BackgroundExecutor.create("quote-revalidate"));
+	/** shares the quotes fetched between every window and the clients of the HTTP endpoint (see QuoteEngine) */
+	private final static QuoteEngine ENGINE = new QuoteEngine(new QuoteWatcher.Fetcher() {
+		@Override
+		public List<Quote> fetch(List<String> symbols) throws IOException {
+			return fetchQuotes(symbols);
+		}
+	}, new QuoteWatcher.Fetcher() {
+		@Override
+		public List<Quote> fetch(List<String> symbols) throws IOException {
+			return refreshQuotes(symbols);
+		}
+	}, Settings.getRefreshMillis());
+	/** numbers the requests, so that results from any older request than a view's newest are discarded */
+	private final static AtomicLong requestCounter = new AtomicLong();
+	/** the number of the most recent request of each view */
+	private final static Map<QuoteView, Long> latestRequests = new ConcurrentHashMap<QuoteView, Long>();
+	/** the request of each view currently being processed, if any. Guarded by the class. */
+	private final static Map<QuoteView, Future<?>> currentRequests = new ConcurrentHashMap<QuoteView, Future<?>>();
 	
 	/**
 	 * This method carries out input validation and executes the rest of the methods in this class if the input tests positive.
+	 * Must be called on the Swing event thread. The processing itself is carried out in the background (see submitQuery).
+	 * @param view the window whose return button was pressed
 	 */
-	public static void buttonPressed() {
-		String inputString = MainApp.getInputString(); // input taken as a string
-		MainApp.setInputString(""); // clears input
+	public static void buttonPressed(QuoteView view) {
+		String inputString = view.getInputString(); // input taken as a string
+		view.setInputString(""); // clears input
 		// The code below checks for valid input.
 		if (inputString.length() > 0 && !inputString.equals(" ")){
-			try {
-				// See "mainProcessing"  for more info on the below piece of code.
-				// Also, note the replacing of spaces with '+' signs. This is necessary for the URL setup done later.
-				MainApp.setOutputString(ReturnButtonLogic.mainProcessing(inputString.replaceAll(" ", "+")));
-			} catch (IOException e) {
-				e.printStackTrace();
-			} 
+			// See "fetchQuotes"  for more info on what is done in the background.
+			submitQuery(view, parseSymbols(inputString));
 		}
 		else { // print error message resulting from lack of input
-			MainApp.setOutputString("No input detected. Please enter at least one symbol.");
+			view.setOutputString("No input detected. Please enter at least one symbol.");
 		}
 	}	
 	
+	/**
+	 * Starts fetching the quotes for a list of symbols on a background thread. Any request of the same view that is
+	 * still in progress is cancelled, as only the result of the newest query is of interest to the user.
+	 * Progress is shown in the view until the result is ready.
+	 * @param view the window the query was made in
+	 * @param symbols the symbols to look up
+	 */
+	static synchronized void submitQuery(final QuoteView view, final List<String> symbols) {
+		Future<?> currentRequest = currentRequests.get(view);
+		if (currentRequest != null){
+			currentRequest.cancel(true); // interrupts the older request if it is still running
+		}
+		final long requestId = requestCounter.incrementAndGet();
+		latestRequests.put(view, requestId);
+		view.setBusy(true);
+		currentRequests.put(view, EXECUTOR.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					List<Quote> quotes = ENGINE.lookup(symbols);
+					checkCancelled();
+					publish(view, requestId, symbols, quotes, null);
+				} catch (InterruptedIOException e) {
+					return; // cancelled by a newer query, which is responsible for the output
+				} catch (IOException e) {
+					publish(view, requestId, symbols, null, "Unable to retrieve data: " + e.getMessage());
+				} catch (RuntimeException e) { // a fault in the program; reported rather than lost in the Future
+					System.err.println("Unable to process the query for " + symbols.size() + " symbols: " + e);
+					publish(view, requestId, symbols, null, "Unable to process the data: " + e);
+				}
+			}
+		}));
+	}
+	
+	/**
+	 * Hands the result of a request back to the Swing event thread, where it is displayed
+	 * unless a newer request has been made in the same view in the meantime.
+	 * The symbols become the ones watched in the view's watch mode (see WatchButtonLogic).
+	 * @param view the window the query was made in
+	 * @param requestId the identifier of the request that produced the result
+	 * @param symbols the symbols that were requested
+	 * @param quotes the quotes obtained, or null if the request failed
+	 * @param errorMessage the message to display if the request failed
+	 */
+	private static void publish(final QuoteView view, final long requestId, final List<String> symbols,
+			final List<Quote> quotes, final String errorMessage) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				Long latest = latestRequests.get(view);
+				if (latest != null && requestId == latest){
+					if (quotes != null){
+						view.setQuotes(quotes);
+					}
+					else {
+						view.setOutputString(errorMessage);
+					}
+					view.setBusy(false);
+					WatchButtonLogic.querySubmitted(view, symbols);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Carries on with a query restored from a snapshot (see Snapshot): the quotes on display are fetched again in the
+	 * background and replace the saved ones, and watch mode is resumed if it was on.
+	 * Must be called on the Swing event thread.
+	 * @param view the window the saved board is shown in
+	 * @param symbols the symbols of the saved query
+	 * @param watching true if the window was in watch mode
+	 */
+	public static void resumeQuery(QuoteView view, List<String> symbols, boolean watching) {
+		WatchButtonLogic.querySubmitted(view, symbols);
+		if (watching){
+			WatchButtonLogic.buttonPressed(view);
+		}
+		submitQuery(view, symbols);
+	}
+	
+	/**
+	 * Forgets a window that has been closed: cancels its request, if any, and leaves its watch mode.
+	 * Must be called on the Swing event thread.
+	 * @param view the window
+	 */
+	public static synchronized void viewClosed(QuoteView view) {
+		latestRequests.remove(view);
+		Future<?> currentRequest = currentRequests.remove(view);
+		if (currentRequest != null){
+			currentRequest.cancel(true);
+		}
+		WatchButtonLogic.viewClosed(view);
+	}
+	
 	/**
 	 * Runs each of the other methods in this class in turn. In order, the steps are as follows:
-	 * (1) Converts user input to a URL (using this class's setupURL method) and obtains data from Yahoo Quotes using this URL.
-	 * 	   Accomplished via the URLReader.readURL() method.
-	 * (2) Splits the output into an array with each row corresponding to data for a specific company
-	 * (3) Splits each individual row into columns. The data then forms a 2-dimensional array, 
-	 * 	   with rows corresponding to company data and columns corresponding to the type of data.
-	 * 	   This is accomplished using the splitter() method.
-	 * (4) For each company's set of data, performs necessary calculations for price change and determines 
-	 *     the currency of the stock.
-	 * 	   Then combines the data into a string and concatenates it to a large string (processedDataString) that contains the whole
-	 *     output.
-	 * 	   This is accomplished using the processData() method found in this class.
+	 * (1) Splits the input into individual symbols (see parseSymbols).
+	 * (2) Obtains the data for the requested symbols as a list of quotes (see fetchQuotes).
+	 * (3) Formats the quotes as HTML, one after another, in a single pass (see QuoteFormatter).
 	 * @param inputString the string that is input using the keyboard
 	 * @return a large string containing the processed data. Uses HTML for presentation purposes.
-	 * @throws IOException in case URLReader fails
+	 * @throws FeedException in case the data cannot be obtained from Yahoo! Quotes
+	 * @throws InterruptedIOException if the request is cancelled while it is being processed
 	 */
 	static String mainProcessing(String inputString) throws IOException {
-			String[] rawDataArray;
-			String[][] processedDataArray = null;
-			String processedDataString = ""; // the string that contains all the stock data
-			String URL = setupURL(inputString);
-			String outputString = URLReader.readURL(URL); // see URLReader class for more info
-			rawDataArray = outputString.split("\n"); // splits data according to each specific company
-			processedDataArray = new String[rawDataArray.length][8];
-			for (int i = 0; i < rawDataArray.length; i++){
-				processedDataArray[i] = splitter(rawDataArray[i]);
+			List<Quote> quotes = fetchQuotes(parseSymbols(inputString));
+			checkCancelled();
+			return QuoteFormatter.toHtml(quotes);
+	} // End of Main Processing
+	
+	/**
+	 * Splits the user's input into individual symbols.
+	 * @param inputString the symbols, separated by spaces or '+' signs
+	 * @return the symbols, in the order they were input
+	 */
+	static List<String> parseSymbols(String inputString) {
+		List<String> symbols = new ArrayList<String>();
+		for (String symbol : inputString.split("[ +]")){
+			if (symbol.length() > 0){
+				symbols.add(symbol);
+			}
+		}
+		return symbols;
+	}
+	
+	/**
+	 * Obtains the data for a list of symbols.
+	 * Quotes obtained recently are taken from the cache (see QuoteCache); the rest are fetched from Yahoo! Quotes.
+	 * Large lists are split into several smaller requests that are sent at the same time (see QueryPlanner).
+	 * @param symbols the symbols to look up
+	 * @return one quote for each distinct symbol, in the order the symbols were given
+	 * @throws FeedException in case the data cannot be obtained from Yahoo! Quotes
+	 * @throws InterruptedIOException if the request is cancelled while it is being processed
+	 */
+	public static List<Quote> fetchQuotes(List<String> symbols) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return countFailed(CACHE.get(symbols));
+		} finally {
+			Metrics.record(Metrics.Stage.REQUEST, start);
+		}
+	}
+	
+	/**
+	 * Fetches up-to-date data for a list of symbols from Yahoo! Quotes, ignoring the cache, and puts it into the cache.
+	 * Used by watch mode, where prices must be current (see WatchButtonLogic).
+	 * @param symbols the symbols to look up
+	 * @return one quote for each distinct symbol, in the order the symbols were given
+	 * @throws FeedException in case the data cannot be obtained from Yahoo! Quotes
+	 * @throws InterruptedIOException if the request is cancelled while it is being processed
+	 */
+	public static List<Quote> refreshQuotes(List<String> symbols) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return countFailed(CACHE.refresh(symbols));
+		} finally {
+			Metrics.record(Metrics.Stage.REQUEST, start);
+		}
+	}
+	
+	/**
+	 * Counts the quotes that could not be obtained (see Metrics).
+	 * @param quotes the quotes of a lookup
+	 * @return quotes
+	 */
+	private static List<Quote> countFailed(List<Quote> quotes) {
+		int failed = 0;
+		for (int i = 0, n = quotes.size(); i < n; i++){
+			if (quotes.get(i).getStatus() == Quote.Status.FAILED){
+				failed++;
 			}
-			for (int j = 0; j < rawDataArray.length; j++){
-				 processedDataString = processedDataString + processData(processedDataArray[j]);
+		}
+		Metrics.count(Metrics.Counter.FAILED, failed);
+		return quotes;
+	}
+	
+	/**
+	 * @return the engine that shares quotes between the windows and the clients of the HTTP endpoint
+	 */
+	public static QuoteEngine getEngine() {
+		return ENGINE;
+	}
+	
+	/**
+	 * @return the cache in front of Yahoo! Quotes, e.g. for its hit and miss counts
+	 */
+	public static QuoteCache getCache() {
+		return CACHE;
+	}
+	
+	/**
+	 * Obtains the data for one chunk of symbols from the quote source in a single request.
+	 * For Yahoo! Quotes (see HttpQuoteSource), the steps are as follows:
+	 * (1) Converts the symbols to a URL and obtains data from Yahoo Quotes using this URL.
+	 * 	   Accomplished via QuoteTransport, which hands the response to step (2) as it is read.
+	 * (2) Reads the response row by row, with each row corresponding to data for a specific company,
+	 * 	   and splits each row into columns in a single pass using QuoteTokenizer.
+	 * (3) Creates a quote from each row, reading the prices directly from the row (see Quote.fromRow).
+	 * The prices obtained are then kept (see TickStore; written in the background, see STORE_WRITER), added to the
+	 * moving statistics (see AnalyticsEngine) and checked against the price alerts (see AlertEngine).
+	 * @param symbols the symbols to look up
+	 * @return the quotes, in the order the source returned them
+	 * @throws FeedException in case the data cannot be obtained from Yahoo! Quotes
+	 * @throws InterruptedIOException if the request is cancelled while it is being processed
+	 */
+	public static List<Quote> fetchChunk(List<String> symbols) throws IOException {
+		long start = System.nanoTime();
+		List<Quote> quotes;
+		try {
+			quotes = SOURCE.fetch(symbols);
+		} finally {
+			Metrics.record(Metrics.Stage.FETCH, start);
+		}
+		int notFound = 0;
+		for (int i = 0, n = quotes.size(); i < n; i++){
+			if (quotes.get(i).getStatus() == Quote.Status.NOT_FOUND){
+				notFound++;
 			}
-			return "<html>" + processedDataString + "</html>";
-	} // End of Main Processing
+		}
+		Metrics.count(Metrics.Counter.NOT_FOUND, notFound);
+
+		final long now = System.currentTimeMillis();
+		if (STORE != null){
+			final List<Quote> obtained = quotes;
+			STORE_WRITER.execute(new Runnable() {
+				@Override
+				public void run() {
+					long start = System.nanoTime();
+					try {
+						STORE.appendAll(obtained, now);
+					} catch (IOException e) {
+						System.err.println("Unable to store prices: " + e.getMessage()); // the quotes are still displayed
+					}
+					Metrics.record(Metrics.Stage.STORE, start);
+				}
+			});
+		}
+		start = System.nanoTime();
+		ANALYTICS.update(quotes, now);
+		Metrics.record(Metrics.Stage.ANALYTICS, start);
+		start = System.nanoTime();
+		Metrics.count(Metrics.Counter.ALERTS_FIRED, ALERTS.evaluate(quotes, now));
+		Metrics.record(Metrics.Stage.ALERTS, start);
+		return quotes;
+	} // End of fetchChunk
 	
 	/**
-	 * Creates the URL that is used to obtain data from Yahoo! quotes.
-	 * @param str The input from the user
-	 * @return A complete URL
+	 * Obtains the quotes the cache does not have. Symbols that are not in the listing (if there is one, see SymbolIndex)
+	 * are reported as not found without being requested. Quotes kept on disk that are known to be current (their stock exchange
+	 * has closed since they were obtained, see TickStore.current) are taken from there, e.g. after a restart;
+	 * the rest are fetched (see QueryPlanner).
+	 * @param symbols the symbols, without duplicates
+	 * @return a quote for each symbol, in the same order
+	 * @throws IOException if none of the quotes that had to be fetched could be obtained
 	 */
-	static String setupURL(String str){
-		String URL = URLPREFIX + str + URLPOSTFIX;
-		return URL;
+	private static List<Quote> loadQuotes(List<String> symbols) throws IOException {
+		if (STORE == null && SYMBOLS == null){
+			return PLANNER.fetch(symbols);
+		}
+		Quote[] quotes = new Quote[symbols.size()];
+		List<String> listed = new ArrayList<String>(symbols.size());
+		int unlisted = 0;
+		for (int i = 0; i < quotes.length; i++){
+			String symbol = symbols.get(i);
+			if (SYMBOLS != null && !SYMBOLS.contains(symbol)){
+				quotes[i] = Quote.notFound(symbol, symbol); // as the source would answer, without asking it
+				unlisted++;
+			}
+			else {
+				listed.add(symbol);
+			}
+		}
+		List<Quote> stored = null;
+		if (STORE != null && !listed.isEmpty()){
+			try {
+				stored = STORE.currentAll(listed, System.currentTimeMillis()); // in one go, rather than symbol by symbol
+			} catch (IOException e) {
+				stored = null; // fetched instead
+			}
+		}
+		List<String> missing = new ArrayList<String>();
+		for (int i = 0, j = 0; i < quotes.length; i++){
+			if (quotes[i] == null){
+				quotes[i] = stored == null ? null : stored.get(j++);
+				if (quotes[i] == null){
+					missing.add(symbols.get(i));
+				}
+			}
+		}
+		Metrics.count(Metrics.Counter.UNLISTED, unlisted);
+		if (!missing.isEmpty()){
+			List<Quote> fetched = PLANNER.fetch(missing);
+			for (int i = 0, j = 0; i < quotes.length; i++){
+				if (quotes[i] == null){
+					quotes[i] = fetched.get(j++);
+				}
+			}
+		}
+		return Arrays.asList(quotes);
+	}
+	
+	/**
+	 * @return the moving statistics of the prices obtained
+	 */
+	public static AnalyticsEngine getAnalytics() {
+		return ANALYTICS;
+	}
+	
+	/**
+	 * @return the price alerts, e.g. to be told when they fire
+	 */
+	public static AlertEngine getAlerts() {
+		return ALERTS;
+	}
+	
+	/**
+	 * Loads the price alerts from the file chosen with the "stockmarketapp.alertRules" system property, and logs them
+	 * to the file chosen with "stockmarketapp.alertLog" (see Settings).
+	 * @return the alerts; without any rules if the file does not exist or cannot be read
+	 */
+	private static AlertEngine createAlerts() {
+		AlertEngine alerts = new AlertEngine();
+		Path rules = Paths.get(Settings.getAlertRules());
+		if (Files.isRegularFile(rules)){
+			try (Reader in = Files.newBufferedReader(rules, StandardCharsets.UTF_8)) {
+				alerts.load(in);
+			} catch (IOException e) {
+				System.err.println("No price alerts: unable to read " + rules + ": " + e.getMessage());
+			}
+		}
+		String log = Settings.getAlertLog();
+		if (log != null && alerts.getRuleCount() > 0){
+			try {
+				alerts.addListener(new AlertLog(Paths.get(log)));
+			} catch (IOException e) {
+				System.err.println("Alerts will not be logged: unable to open " + log + ": " + e.getMessage());
+			}
+		}
+		return alerts;
+	}
+	
+	/**
+	 * @return the symbols that can be looked up, or null if there is no listing
+	 */
+	public static SymbolIndex getSymbolIndex() {
+		return SYMBOLS;
+	}
+	
+	/**
+	 * Suggests symbols for the one being typed, i.e. the last in the input.
+	 * @param inputString the input so far
+	 * @return the symbols and company names suggested, separated by commas; an explanation if there are none;
+	 *         or an empty string if there is no listing or nothing is being typed
+	 */
+	public static String suggest(String inputString) {
+		int start = Math.max(inputString.lastIndexOf(' '), inputString.lastIndexOf('+')) + 1;
+		if (SYMBOLS == null || start == inputString.length()){
+			return "";
+		}
+		String typed = inputString.substring(start);
+		List<String> found = SYMBOLS.suggest(typed, 5);
+		if (found.isEmpty()){
+			return "No listed symbol or company starts with " + typed;
+		}
+		StringBuilder out = new StringBuilder();
+		for (String symbol : found){
+			if (out.length() > 0){
+				out.append(", ");
+			}
+			out.append(symbol).append(' ').append(SYMBOLS.nameOf(symbol));
+		}
+		return out.toString();
+	}
+	
+	/**
+	 * Reads the listing chosen with the "stockmarketapp.symbolListing" system property (see Settings.getSymbolListing).
+	 * @return the symbols listed, or null if there is no listing or it cannot be read
+	 */
+	private static SymbolIndex createSymbolIndex() {
+		Path listing = Paths.get(Settings.getSymbolListing());
+		if (!Files.isRegularFile(listing)){
+			return null;
+		}
+		try (Reader in = Files.newBufferedReader(listing, StandardCharsets.UTF_8)) {
+			return new SymbolIndex(in);
+		} catch (IOException e) {
+			System.err.println("Every symbol will be looked up: unable to read " + listing + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the store every price obtained is kept in, or null if there is none
+	 */
+	public static TickStore getStore() {
+		return STORE;
+	}
+	
+	/**
+	 * Opens the store chosen with the "stockmarketapp.tickStore" system property (see Settings.getTickStore).
+	 * @return the store, or null if it is switched off or cannot be opened
+	 */
+	private static TickStore createStore() {
+		String dir = Settings.getTickStore();
+		if (dir == null){
+			return null;
+		}
+		try {
+			TickStore store = new TickStore(Paths.get(dir), Settings.getTickStoreMaxMapped());
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					closeStore();
+				}
+			}, "tick-store-exit"));
+			return store;
+		} catch (IOException e) {
+			System.err.println("Prices will not be kept: unable to open " + dir + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the prices still waiting to the store and closes it. Run when the program exits.
+	 */
+	private static void closeStore() {
+		STORE_WRITER.shutdown();
+		try {
+			STORE_WRITER.awaitTermination(1, TimeUnit.SECONDS);
+			STORE.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			System.err.println("Unable to store prices: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @return the source the quotes come from
+	 */
+	public static QuoteSource getSource() {
+		return SOURCE;
+	}
+	
+	/**
+	 * Creates the quote source chosen with the "stockmarketapp.source" system property (see Settings.getSource).
+	 * @return the source
+	 */
+	private static QuoteSource createSource() {
+		String source = Settings.getSource();
+		if (source.equals("replay")){
+			return new ReplayQuoteSource(Paths.get(Settings.getString("replayFile", "quotes.replay")),
+					Settings.getDouble("replaySpeed", 1), !Settings.getString("replayLoop", "true").equals("false"));
+		}
+		if (source.equals("synthetic")){
+			return new SyntheticQuoteSource(Settings.getLong("syntheticSeed", 1),
+					Math.min(0.5, Settings.getDouble("syntheticVolatility", 0.001)));
+		}
+		if (!source.equals("http")){
+			System.err.println("Ignoring unknown quote source " + source + ", using http");
+		}
+		// The address of the feed can be changed with the "stockmarketapp.feedUrl" system property, e.g. to use a local stub feed.
+		QuoteSource feed = new HttpQuoteSource(Settings.getString("feedUrl", HttpQuoteSource.YAHOO_URL), QuoteTransport.getDefault());
+		// Only the feed is protected, as recorded and made-up prices do not fail or slow down (see ResilientQuoteSource).
+		return new ResilientQuoteSource(feed,
+				new CircuitBreaker(Settings.getInt("breakerFailures", 5), Settings.getLong("breakerOpenMillis", 10000)),
+				Settings.getInt("bulkhead", Settings.getParallelism()), Settings.getLong("bulkheadWaitMillis", 2000),
+				Settings.getString("hedging", "true").equals("true") ? BackgroundExecutor.create("quote-hedge") : null,
+				Settings.getLong("hedgeDelay", 200));
+	}
+	
+	/**
+	 * Carries out steps (2) and (3) of fetchChunk on a response from Yahoo! Quotes.
+	 * @param body the response, as it is read
+	 * @return the quotes, in the order they appear in the response
+	 * @throws IOException if the response cannot be read or is not in the expected format
+	 * @throws InterruptedIOException if the request is cancelled while it is being processed
+	 */
+	static List<Quote> parseQuotes(Reader body) throws IOException {
+		long start = System.nanoTime();
+		List<Quote> quotes = new ArrayList<Quote>();
+		try {
+			QuoteTokenizer tokenizer = new QuoteTokenizer(body);
+			while (tokenizer.next()){ // each row contains the data for a specific company
+				checkCancelled(); // no point in reading data that is no longer wanted
+				if (tokenizer.row().getFieldCount() < 8){
+					Metrics.count(Metrics.Counter.PARSE_ERRORS, 1);
+					throw new IOException("unexpected data received from Yahoo! Quotes.");
+				}
+				quotes.add(Quote.fromRow(tokenizer.row()));
+			}
+			return quotes;
+		} finally {
+			Metrics.count(Metrics.Counter.ROWS_PARSED, quotes.size());
+			Metrics.record(Metrics.Stage.PARSE, start);
+		}
+	}
+	
+	/**
+	 * Checks whether the current request has been cancelled (see submitQuery).
+	 * @throws InterruptedIOException if the thread processing the request has been interrupted
+	 */
+	private static void checkCancelled() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()){
+			throw new InterruptedIOException("request cancelled");
+		}
 	}
 	
 	/**
@@ -91,125 +624,87 @@ public class ReturnButtonLogic {
 	 * (3) Dividends (5) Market Capitalisation (6) Stock Exchange company is listed in 
 	 * If the data is erroneous (for example, the stock symbol requested was not found in Yahoo! Quotes),
 	 * the method returns a string explaining that the symbol was not found.
+	 * The data is turned into a Quote, which is then formatted by QuoteFormatter.
 	 * @param strArray Contains the set of data for one stock symbol.
 	 * @return a string containing the relevant information. If a stock symbol is not valid, returns "Queried symbol not found".
-	 * @throws IOException
 	 */
 	static String processData(String[] strArray) { 
-		// headers for data values
-		String strPrice = "Price: ";
-		String strDividend = "Dividends: ";
-		String strMarketCap = "Market Cap: ";
-		String strStockExchange = "Stock Exchange: ";
-		String strChange = "Change: ";
-		
-		String mainString = ""; // the string that is returned at the end of the method execution
-		
-		
-		 // first, checks for error indication from Yahoo Quotes.
-		if (strArray[6].equals("\"N/A\"")){ // Executed if there are no errors
-			try {
-				String currency = detCurrency(strArray[5]);
-				
-				// Calculation of Change in Price
-				double currentPrice = Double.parseDouble(strArray[1]);
-				double previousPrice = Double.parseDouble(strArray[2]);
-				double absolutePriceChange = currentPrice - previousPrice;
-				double absolutePriceChangePercent = (absolutePriceChange/previousPrice) * 100;
-				// End of Price Change Calculation
-			
-				// rounds both the below numbers to a suitable degree of accuracy. See 'round' method for more info.
-				absolutePriceChange = round(absolutePriceChange);
-				absolutePriceChangePercent = round(absolutePriceChangePercent);
-		
-				// display name of stock (without quotes)
-				mainString = "<u>" + strArray[0].substring(1,strArray[0].length()-1) + "</u><br />";
-		
-				// display current price per share and currency (determined by detCurrency method)
-				mainString = mainString + strPrice + strArray[1] + currency + "<br />";
-					
-				mainString = mainString + strChange;
-				if (absolutePriceChange < 0){
-					// price change is negative, therefore displayed in red
-					mainString = mainString + "<font color = '#FF0000'>" + 
-					absolutePriceChange + " (" + absolutePriceChangePercent + "%)</font><br />";	
-				}
-				else if (absolutePriceChange > 0){
-					// price change is positive, therefore displayed in green
-					mainString = mainString + "<font color = '#4AA02C'>" + absolutePriceChange +
-						" (+" + absolutePriceChangePercent + "%)</font><br />";	
-				}
-				else {
-					// price has not changed recently, therefore displayed in black
-					mainString = mainString + absolutePriceChange + " (" + absolutePriceChangePercent + "%)<br />";
-				}
-				
-				mainString = mainString + strDividend + strArray[3]  + "<br />"; // display dividend
-				mainString = mainString + strMarketCap + strArray[4] + "<br />"; // display market capitalisation
-			
-				// display name of stock (without quotes)
-				mainString = mainString + strStockExchange + strArray[5].substring(1, strArray[5].length()-1) + "<br /><br />";
-				
-			}
-			catch (NumberFormatException e){ // executed if price calculations fail because of lack of data from Yahoo! Quotes
-				mainString = mainString + "Data unavailable for " + strArray[0].substring(1,strArray[0].length()-1) + ". <br /><br />";
-			}
-		}
-		else { // Executed if there is an error (according to Yahoo Quotes)
-			mainString = mainString + strArray[0].substring(1,strArray[0].length()-1) + " not found. <br /><br />";
-		}
-		return mainString;
+		StringBuilder out = new StringBuilder(256);
+		QuoteFormatter.appendHtml(out, Quote.fromFields(strArray));
+		return out.toString();
 	} // End of ProcessData() definition
 
 	/**
 	 * Splitting algorithm that takes into account commas in between quotes, for example retaining 
 	 * the comma in "Canon, Inc America"
-	 * Works as follows: the data for each company is initially a string consisting of individual pieces of data 
-	 * separated by commas.
-	 * This method works through the data string starting from the end of the string
-	 * and counts the number of commas.
-	 * Every time it finds a comma, it adds the data right after that comma but before the comma in front.
-	 * By the time seven commas are counted, the method simply adds the rest of the data, which would be the company name.
-	 * This keeps any commas in the company name intact.
+	 * Works as follows: the data for each company is a string consisting of individual pieces of data 
+	 * separated by commas. QuoteTokenizer finds every field in a single pass, treating commas within
+	 * quotes as part of the field, and the fields are then copied into an array (see toFields).
 	 * @param str The string that contains the data retrieved from Yahoo! Quotes
 	 * @return Each piece of data related to a single company contained in an array
 	 */
 	static String[] splitter(String str){
+		char[] data = str.toCharArray();
+		QuoteTokenizer tokenizer = new QuoteTokenizer(data, 0, data.length);
+		try {
+			tokenizer.next();
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // cannot happen, as there is nothing to read
+		}
+		return toFields(tokenizer.row());
+	} // End of spitter definition
+	
+	/**
+	 * Copies the fields of a row into an array of 8 strings, retaining any quotes around them.
+	 * Should a row have more than 8 fields (a company name containing commas but no quotes), the extra fields
+	 * at the start are kept together as the company name; the last seven fields are always the same columns.
+	 * @param row a row found by QuoteTokenizer
+	 * @return Each piece of data related to a single company contained in an array
+	 */
+	private static String[] toFields(QuoteTokenizer.QuoteRow row){
 		String[] strArray = new String[8];
-		int numberOfCommas = 0;
-		int i = str.length()-1;
-		while (numberOfCommas < 7){
-			if (str.charAt(i) == ','){
-				strArray[7-numberOfCommas] = str.substring(i+1,str.length());
-				str = str.substring(0,i);
-				numberOfCommas++;
-			}
-			i--;
+		int extraFields = row.getFieldCount() - 8;
+		if (extraFields < 0){
+			throw new IllegalArgumentException("expected 8 columns of data, found " + row.getFieldCount());
+		}
+		strArray[0] = row.rawString(0, extraFields);
+		for (int i = 1; i < 8; i++){
+			strArray[i] = row.rawString(extraFields + i);
 		}
-		strArray[0] = str;
 		return strArray;
-	} // End of spitter definition
+	}
 	
 	/**
 	 * This method determines which currency symbol to use according to the stock exchange the specified company
-	 * is listed in.
-	 * @param stockExchange the stock symbol, surrounded by quotes. The quotes are removed within the method.
+	 * is listed in. The exchange is looked up within the quotes, without copying it (see ExchangeRegistry).
+	 * @param stockExchange the stock symbol, surrounded by quotes. The quotes are not part of the name looked up.
 	 * @return the appropriate currency symbol 
 	 */
 	static String detCurrency(String stockExchange){
-		stockExchange = stockExchange.substring(1,stockExchange.length()-1); // removal of quotes
-		if (stockExchange.equals("NasdaqNM") || stockExchange.equals("NYSE")) 	return "$";
-		if (stockExchange.equals("Brussels") || stockExchange.equals("Paris")) 	return "EUR";
-		if (stockExchange.equals("SES")) 										return "S$";
-		if (stockExchange.equals("London")) 									return "p";
-		if (stockExchange.equals("HKSE")) 										return "HK$";
-		if (stockExchange.equals("NCM"))										return "AU$";
-		
-		return ""; // if the stock exchange the company is listed is not one of the above
+		return currencyOf(ExchangeRegistry.getDefault().lookup(stockExchange, 1, stockExchange.length() - 1));
+	}
+	
+	/**
+	 * Determines the currency symbol for a stock exchange, as detCurrency does.
+	 * @param stockExchange the name of the stock exchange, without quotes
+	 * @return the appropriate currency symbol 
+	 */
+	static String currencyOf(String stockExchange){
+		return currencyOf(ExchangeRegistry.getDefault().lookup(stockExchange));
+	}
+	
+	/**
+	 * @param exchange a stock exchange, or null if it is not known
+	 * @return its currency symbol, or an empty string if the stock exchange is not known
+	 */
+	private static String currencyOf(Exchange exchange){
+		return exchange != null ? exchange.getCurrencySymbol() : ""; // if the stock exchange the company is listed is not known
 	}
 
 	/**
 	 * Simple rounding method for absolute price change and price change percent numbers.
+	 * Quotes are no longer rounded with this method: their prices are held in ticks, and changes are rounded to the same
+	 * three decimal places exactly (see Price and QuoteFormatter.displayedChange).
 	 * @param dbl the number to be rounded
 	 * @return the rounded number
 	 */
@@ -0,0 +1,187 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * Statistics over the most recent prices of one symbol, updated in constant time as each price is added and
+ * without creating any objects: the prices are kept in a ring buffer of primitive longs, the sums are kept running,
+ * and the lowest and highest prices are tracked with two monotonic queues, also held in primitive ring buffers.
+ * Prices are in ticks (see Price). Not thread-safe; see AnalyticsEngine.
+ * @author Sadruddin Junejo
+ *
+ */
+final class RollingWindow {
+
+	/** the number of prices the statistics cover */
+	private final int size;
+	/** the most recent prices; the oldest is overwritten by each new price once the buffer is full */
+	private final long[] prices;
+	/** where the next price goes */
+	private int head;
+	/** the number of prices held, at most size */
+	private int count;
+	/** the number of prices ever added; price number n is at prices[n % size] while it is held */
+	private long added;
+	/** the sum of the prices held, exactly */
+	private long sum;
+	/** subtracted from each price before it is squared, keeping the sum of squares small and accurate */
+	private long shift;
+	/** the sum of the squares of (price - shift) for the prices held */
+	private double sumSquares;
+	/** the exponential moving average, with the smoothing of a size-price average */
+	private double ema;
+	/** the weight of each new price in the exponential moving average */
+	private final double alpha;
+
+	// The monotonic queues hold the numbers of prices (see added) in the window that may yet be the lowest
+	// (or highest), with their prices in increasing (or decreasing) order. Each is a ring buffer of size entries.
+	private final long[] lowQueue;
+	private int lowFirst;
+	private int lowCount;
+	private final long[] highQueue;
+	private int highFirst;
+	private int highCount;
+
+	/**
+	 * Constructor method for a window.
+	 * @param size the number of prices the statistics cover, at least 2
+	 */
+	RollingWindow(int size) {
+		this.size = size;
+		this.prices = new long[size];
+		this.lowQueue = new long[size];
+		this.highQueue = new long[size];
+		this.alpha = 2.0 / (size + 1);
+	}
+
+	/**
+	 * Adds the latest price, removing the oldest if the window is full.
+	 * @param price the price, in ticks
+	 */
+	void add(long price) {
+		if (count == 0){
+			shift = price;
+			ema = price;
+		}
+		else {
+			ema += alpha * (price - ema);
+		}
+		if (count == size){
+			long oldest = prices[head];
+			sum -= oldest;
+			sumSquares -= square(oldest - shift);
+		}
+		else {
+			count++;
+		}
+		prices[head] = price;
+		sum += price;
+		sumSquares += square(price - shift);
+		long number = added++;
+		head = head + 1 == size ? 0 : head + 1;
+		if (head == 0){
+			recomputeSquares(); // once per size prices, so rounding errors cannot build up
+		}
+
+		// the price that has just left the window (whose place the new price took) leaves the queues first
+		long firstInWindow = number - size + 1;
+		if (lowCount > 0 && lowQueue[lowFirst] < firstInWindow){
+			lowFirst = lowFirst + 1 == size ? 0 : lowFirst + 1;
+			lowCount--;
+		}
+		while (lowCount > 0 && priceOf(lowQueue[(lowFirst + lowCount - 1) % size]) >= price){
+			lowCount--;
+		}
+		lowQueue[(lowFirst + lowCount++) % size] = number;
+		if (highCount > 0 && highQueue[highFirst] < firstInWindow){
+			highFirst = highFirst + 1 == size ? 0 : highFirst + 1;
+			highCount--;
+		}
+		while (highCount > 0 && priceOf(highQueue[(highFirst + highCount - 1) % size]) <= price){
+			highCount--;
+		}
+		highQueue[(highFirst + highCount++) % size] = number;
+	}
+
+	/**
+	 * Works out the sum of squares afresh, centred on the current mean.
+	 */
+	private void recomputeSquares() {
+		shift = sum / count;
+		sumSquares = 0;
+		for (int i = 0; i < count; i++){
+			sumSquares += square(prices[i] - shift);
+		}
+	}
+
+	private static double square(long value) {
+		return (double) value * value;
+	}
+
+	private long priceOf(long number) {
+		return prices[(int) (number % size)];
+	}
+
+	/**
+	 * @return the number of prices held, at most the size of the window
+	 */
+	int getCount() {
+		return count;
+	}
+
+	int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the simple moving average, in ticks (rounded), or Price.NONE if there are no prices
+	 */
+	long getAverage() {
+		return count == 0 ? Price.NONE : Math.round((double) sum / count);
+	}
+
+	/**
+	 * @return the exponential moving average, in ticks (rounded), or Price.NONE if there are no prices
+	 */
+	long getExponentialAverage() {
+		return count == 0 ? Price.NONE : Math.round(ema);
+	}
+
+	/**
+	 * @return the lowest price in the window, or Price.NONE if there are no prices
+	 */
+	long getLow() {
+		return lowCount == 0 ? Price.NONE : priceOf(lowQueue[lowFirst]);
+	}
+
+	/**
+	 * @return the highest price in the window, or Price.NONE if there are no prices
+	 */
+	long getHigh() {
+		return highCount == 0 ? Price.NONE : priceOf(highQueue[highFirst]);
+	}
+
+	/**
+	 * @return the standard deviation of the prices in the window, in ticks (rounded), or Price.NONE if there are fewer than 2
+	 */
+	long getStandardDeviation() {
+		if (count < 2){
+			return Price.NONE;
+		}
+		double mean = (double) (sum - shift * count) / count; // relative to the shift
+		double variance = sumSquares / count - mean * mean;
+		return Math.round(Math.sqrt(Math.max(0, variance)));
+	}
+
+	/**
+	 * @return the change from the oldest to the latest price in the window, in thousandths of a percent,
+	 *         or Price.NONE if there are fewer than 2 prices
+	 */
+	long getChangePercent() {
+		if (count < 2){
+			return Price.NONE;
+		}
+		long latest = prices[head == 0 ? size - 1 : head - 1];
+		long oldest = prices[count == size ? head : 0];
+		return Price.percent(latest - oldest, oldest);
+	}
+
+} // End of RollingWindow definition
@@ -0,0 +1,294 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * Provides the settings that tune how the program fetches data.
+ * Every setting has a sensible default and can be changed with a system property, for example:
+ * <code>java -Dstockmarketapp.chunkSize=50 stockmarketapp.MainApp</code>
+ * @author Sadruddin Junejo
+ *
+ */
+public class Settings {
+
+	/** the prefix of the names of all the program's system properties */
+	private static final String PREFIX = "stockmarketapp.";
+
+	/**
+	 * @return the maximum number of symbols requested from Yahoo! Quotes at once (property "stockmarketapp.chunkSize")
+	 */
+	public static int getChunkSize() {
+		return getInt("chunkSize", 200);
+	}
+
+	/**
+	 * @return the maximum number of requests sent to Yahoo! Quotes at the same time (property "stockmarketapp.parallelism")
+	 */
+	public static int getParallelism() {
+		return getInt("parallelism", 32);
+	}
+
+	/**
+	 * @return the maximum number of quotes kept in the cache (property "stockmarketapp.cacheSize")
+	 */
+	public static int getCacheSize() {
+		return getInt("cacheSize", 10000);
+	}
+
+	/**
+	 * @return the time in milliseconds a quote is kept in the cache, unless set for its stock exchange
+	 *         (property "stockmarketapp.cacheTtl"; see QuoteCache.getTtlMillis)
+	 */
+	public static long getCacheTtlMillis() {
+		return getLong("cacheTtl", 30000);
+	}
+
+	/**
+	 * While this is on, a lookup of a quote older than "stockmarketapp.cacheTtl" still returns it at once (marked as
+	 * stale) and fetches a current one in the background, so the time to live no longer decides when a lookup goes to
+	 * the feed, only when it starts a fetch.
+	 * @return the time in milliseconds an expired quote is kept for as the last good quote, returned (marked as stale)
+	 *         while a current one is fetched or if one cannot be fetched (property "stockmarketapp.cacheMaxStale";
+	 *         see QuoteCache), or 0 if set to "off" (or 0), when expired quotes are never returned
+	 */
+	public static long getCacheMaxStaleMillis() {
+		String value = getString("cacheMaxStale", "").trim();
+		if (value.equals("off") || value.equals("0")){
+			return 0;
+		}
+		return getLong("cacheMaxStale", 600000);
+	}
+
+	/**
+	 * @return the time in milliseconds between refreshes in watch mode (property "stockmarketapp.refreshMillis")
+	 */
+	public static long getRefreshMillis() {
+		return getLong("refreshMillis", 5000);
+	}
+
+	/**
+	 * @return true if watch mode does not fetch symbols while their stock exchange is closed
+	 *         (property "stockmarketapp.skipClosedMarkets"; see QuoteWatcher). By default only live prices are
+	 *         skipped, as recorded and made-up prices do not follow trading hours (see getSource).
+	 */
+	public static boolean isSkipClosedMarkets() {
+		return getString("skipClosedMarkets", Boolean.toString(getSource().equals("http"))).equals("true");
+	}
+
+	/**
+	 * @return where quotes are obtained from (property "stockmarketapp.source"): "http" for Yahoo! Quotes or the feed
+	 *         at "stockmarketapp.feedUrl", "replay" for the recording in "stockmarketapp.replayFile" played at
+	 *         "stockmarketapp.replaySpeed" times real time, or "synthetic" for made-up prices moving by up to
+	 *         "stockmarketapp.syntheticVolatility" per tick from "stockmarketapp.syntheticSeed" (see QuoteSource).
+	 *         The feed is protected as set by "stockmarketapp.breakerFailures", "breakerOpenMillis", "bulkhead",
+	 *         "bulkheadWaitMillis", "hedging" and "hedgeDelay" (see ResilientQuoteSource).
+	 */
+	public static String getSource() {
+		return getString("source", "http");
+	}
+
+	/**
+	 * @return the directory every price obtained is kept in (property "stockmarketapp.tickStore"; see TickStore),
+	 *         by default .stockmarketapp/ticks in the user's home directory (but off in batch mode, see BatchApp), or null
+	 *         if set to "off"
+	 */
+	public static String getTickStore() {
+		String dir = getString("tickStore", System.getProperty("user.home") + "/.stockmarketapp/ticks");
+		return dir.equals("off") ? null : dir;
+	}
+
+	/**
+	 * @return the largest number of files of the tick store kept mapped at once (property
+	 *         "stockmarketapp.tickStoreMapped"; see TickStore). There is one file per symbol per day, so a watchlist of
+	 *         more symbols than this has its files mapped again on every refresh.
+	 */
+	public static int getTickStoreMaxMapped() {
+		return getInt("tickStoreMapped", 8192);
+	}
+
+	/**
+	 * @return the number of prices covered by each window of moving statistics (property "stockmarketapp.analyticsWindows",
+	 *         a comma-separated list such as "20,100"; see AnalyticsEngine). The quote board shows the first.
+	 */
+	public static int[] getAnalyticsWindows() {
+		String value = getString("analyticsWindows", "20,100");
+		String[] parts = value.split(",");
+		int[] windows = new int[parts.length];
+		try {
+			for (int i = 0; i < parts.length; i++){
+				windows[i] = Integer.parseInt(parts[i].trim());
+				if (windows[i] < 2 || windows[i] > 100000){
+					throw new NumberFormatException(parts[i]);
+				}
+			}
+			return windows;
+		} catch (NumberFormatException e) {
+			System.err.println("Ignoring invalid value for " + PREFIX + "analyticsWindows: " + value);
+			return new int[] { 20, 100 };
+		}
+	}
+
+	/**
+	 * @return the largest number of symbols moving statistics are kept for at once (property
+	 *         "stockmarketapp.analyticsSymbols"; see AnalyticsEngine), or 0 if set to "off" (or 0), when none are
+	 *         worked out, as in batch mode (see BatchApp)
+	 */
+	public static int getAnalyticsSymbols() {
+		String value = getString("analyticsSymbols", "").trim();
+		if (value.equals("off") || value.equals("0")){
+			return 0;
+		}
+		return getInt("analyticsSymbols", 10000);
+	}
+
+	/**
+	 * @return the file of price alert rules, one per line (property "stockmarketapp.alertRules"; see AlertRule),
+	 *         by default .stockmarketapp/alerts.txt in the user's home directory. There are no alerts if it does not exist.
+	 */
+	public static String getAlertRules() {
+		return getString("alertRules", System.getProperty("user.home") + "/.stockmarketapp/alerts.txt");
+	}
+
+	/**
+	 * @return the file every alert that fires is added to (property "stockmarketapp.alertLog"; see AlertLog),
+	 *         by default .stockmarketapp/alerts.log in the user's home directory, or null if set to "off"
+	 */
+	public static String getAlertLog() {
+		String file = getString("alertLog", System.getProperty("user.home") + "/.stockmarketapp/alerts.log");
+		return file.equals("off") ? null : file;
+	}
+
+	/**
+	 * @return the hysteresis of an alert rule that does not set its own, as a fraction of the rule's value
+	 *         (property "stockmarketapp.alertHysteresis"; see AlertRule)
+	 */
+	public static double getAlertHysteresis() {
+		return getDouble("alertHysteresis", 0.001);
+	}
+
+	/**
+	 * @return the file the measurements of each stage are added to at intervals (property "stockmarketapp.metricsFile";
+	 *         see MetricsDump), or null if not set or set to "off"
+	 */
+	public static String getMetricsFile() {
+		String file = getString("metricsFile", "off");
+		return file.equals("off") ? null : file;
+	}
+
+	/**
+	 * @return the time in milliseconds between additions to the metrics file (property "stockmarketapp.metricsInterval")
+	 */
+	public static long getMetricsIntervalMillis() {
+		return getLong("metricsInterval", 60000);
+	}
+
+	/**
+	 * @return the listing of the symbols that can be looked up (property "stockmarketapp.symbolListing"; see SymbolIndex),
+	 *         by default .stockmarketapp/symbols.csv in the user's home directory. If it does not exist, every symbol
+	 *         is looked up and none are suggested.
+	 */
+	public static String getSymbolListing() {
+		return getString("symbolListing", System.getProperty("user.home") + "/.stockmarketapp/symbols.csv");
+	}
+
+	/**
+	 * @return the port quotes are served on over HTTP (property "stockmarketapp.serverPort"; see QuoteServer),
+	 *         or 0 if they are not served, which is the default
+	 */
+	public static int getServerPort() {
+		return getInt("serverPort", 0);
+	}
+
+	/**
+	 * @return the address quotes are served on (property "stockmarketapp.serverAddress"), by default 127.0.0.1 so that
+	 *         only programs on the same computer can connect; 0.0.0.0 serves every network the computer is on
+	 */
+	public static String getServerAddress() {
+		return getString("serverAddress", "127.0.0.1");
+	}
+
+	/**
+	 * @return the file the boards on display are saved to, and shown from when the program starts
+	 *         (property "stockmarketapp.snapshotFile"; see Snapshot), by default .stockmarketapp/snapshot.bin in the
+	 *         user's home directory, or null if set to "off"
+	 */
+	public static String getSnapshotFile() {
+		String file = getString("snapshotFile", System.getProperty("user.home") + "/.stockmarketapp/snapshot.bin");
+		return file.equals("off") ? null : file;
+	}
+
+	/**
+	 * @return true if the snapshot is compressed (property "stockmarketapp.snapshotCompression": "deflate", the default,
+	 *         or "none")
+	 */
+	public static boolean isSnapshotCompressed() {
+		return !getString("snapshotCompression", "deflate").equals("none");
+	}
+
+	/**
+	 * @return the time in milliseconds between saves of the snapshot while the program runs; it is also saved on exit
+	 *         (property "stockmarketapp.snapshotInterval")
+	 */
+	public static long getSnapshotIntervalMillis() {
+		return getLong("snapshotInterval", 60000);
+	}
+
+	/**
+	 * Reads a whole-number setting.
+	 * @param name the name of the setting, without the "stockmarketapp." prefix
+	 * @param defaultValue the value used if the property is not set or is not a positive number
+	 * @return the value of the setting
+	 */
+	public static int getInt(String name, int defaultValue) {
+		return (int) getLong(name, defaultValue);
+	}
+
+	/**
+	 * Reads a whole-number setting.
+	 * @param name the name of the setting, without the "stockmarketapp." prefix
+	 * @param defaultValue the value used if the property is not set or is not a positive number
+	 * @return the value of the setting
+	 */
+	public static long getLong(String name, long defaultValue) {
+		String value = System.getProperty(PREFIX + name);
+		if (value == null){
+			return defaultValue;
+		}
+		try {
+			long parsed = Long.parseLong(value.trim());
+			return parsed > 0 ? parsed : defaultValue;
+		} catch (NumberFormatException e) {
+			System.err.println("Ignoring invalid value for " + PREFIX + name + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Reads a decimal setting.
+	 * @param name the name of the setting, without the "stockmarketapp." prefix
+	 * @param defaultValue the value used if the property is not set or is not a positive number
+	 * @return the value of the setting
+	 */
+	public static double getDouble(String name, double defaultValue) {
+		String value = System.getProperty(PREFIX + name);
+		if (value == null){
+			return defaultValue;
+		}
+		try {
+			double parsed = Double.parseDouble(value.trim());
+			return parsed > 0 && !Double.isInfinite(parsed) ? parsed : defaultValue;
+		} catch (NumberFormatException e) {
+			System.err.println("Ignoring invalid value for " + PREFIX + name + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Reads a text setting.
+	 * @param name the name of the setting, without the "stockmarketapp." prefix
+	 * @param defaultValue the value used if the property is not set
+	 * @return the value of the setting
+	 */
+	public static String getString(String name, String defaultValue) {
+		return System.getProperty(PREFIX + name, defaultValue);
+	}
+
+} // End of Settings definition
@@ -0,0 +1,318 @@
+package stockmarketapp.staticlogic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The boards on display (each window's query, whether it is in watch mode, and its quotes), saved to a file so that
+ * they can be shown again as soon as the program starts, before anything has been fetched. The quotes read back are
+ * marked as stale (see Quote.isStale) until they are fetched again.
+ * The file starts with "SNAP", a version and a compression byte (0 for none, 1 for deflate), followed by the body:
+ * the time it was saved, a table of the distinct quotes, then each board's symbols, watch mode and rows (as positions
+ * in the table). Numbers are stored as 4 or 8 bytes and text as modified UTF-8 (see DataOutputStream).
+ * A file is written in full under another name and then moved into place, so a crash never leaves half a snapshot.
+ * @author Sadruddin Junejo
+ *
+ */
+public final class Snapshot {
+
+	/** the first four bytes of every file: "SNAP" */
+	private static final int MAGIC = 0x534E4150;
+	private static final int VERSION = 1;
+	private static final int UNCOMPRESSED = 0;
+	private static final int DEFLATED = 1;
+	/** the largest number of quotes, boards or symbols believed, so that a damaged file cannot exhaust memory */
+	private static final int MAX_COUNT = 10000000;
+
+	/**
+	 * One window's board.
+	 */
+	public static final class Board {
+
+		private final List<String> symbols;
+		private final boolean watching;
+		private final List<Quote> quotes;
+
+		/**
+		 * Constructor method for a board.
+		 * @param symbols the symbols of the board's query
+		 * @param watching true if the board is in watch mode
+		 * @param quotes the quotes on the board, in the order they are displayed
+		 */
+		public Board(List<String> symbols, boolean watching, List<Quote> quotes) {
+			this.symbols = Collections.unmodifiableList(new ArrayList<String>(symbols));
+			this.watching = watching;
+			this.quotes = Collections.unmodifiableList(new ArrayList<Quote>(quotes));
+		}
+
+		/**
+		 * @return the symbols of the board's query
+		 */
+		public List<String> getSymbols() {
+			return symbols;
+		}
+
+		/**
+		 * @return true if the board is in watch mode
+		 */
+		public boolean isWatching() {
+			return watching;
+		}
+
+		/**
+		 * @return the quotes on the board, in the order they are displayed
+		 */
+		public List<Quote> getQuotes() {
+			return quotes;
+		}
+
+	} // End of Board definition
+
+	private final List<Board> boards;
+	/** the time the boards were saved, in milliseconds since 1970 */
+	private final long savedAtMillis;
+
+	/**
+	 * Constructor method for a snapshot.
+	 * @param boards the boards, one per window
+	 * @param savedAtMillis the time the boards were taken, in milliseconds since 1970
+	 */
+	public Snapshot(List<Board> boards, long savedAtMillis) {
+		this.boards = Collections.unmodifiableList(new ArrayList<Board>(boards));
+		this.savedAtMillis = savedAtMillis;
+	}
+
+	/**
+	 * Reads the snapshot chosen with the "stockmarketapp.snapshotFile" system property (see Settings),
+	 * reporting on the error stream if it cannot be read.
+	 * @return the snapshot, or null if snapshots are switched off, none has been saved yet or it cannot be read
+	 */
+	public static Snapshot readIfConfigured() {
+		String file = Settings.getSnapshotFile();
+		if (file == null || !Files.isRegularFile(Paths.get(file))){
+			return null;
+		}
+		try {
+			return read(Paths.get(file));
+		} catch (IOException e) {
+			System.err.println("Starting with an empty board: unable to read " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a file.
+	 * @param file the file
+	 * @return the snapshot
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static Snapshot read(Path file) throws IOException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			DataInputStream header = new DataInputStream(in);
+			if (header.readInt() != MAGIC || header.readByte() != VERSION){
+				throw new IOException("not a snapshot, or written by another version of the program");
+			}
+			int compression = header.readByte();
+			if (compression != UNCOMPRESSED && compression != DEFLATED){
+				throw new IOException("unknown compression " + compression);
+			}
+			DataInputStream body = compression == DEFLATED
+					? new DataInputStream(new BufferedInputStream(new InflaterInputStream(in))) : header;
+			return readBody(body);
+		} catch (EOFException e) {
+			throw new IOException("the snapshot is incomplete", e);
+		}
+	}
+
+	/**
+	 * Reads the body of a snapshot (see above).
+	 * @param in the body
+	 * @return the snapshot
+	 * @throws IOException if the body cannot be read
+	 */
+	private static Snapshot readBody(DataInputStream in) throws IOException {
+		long savedAtMillis = in.readLong();
+		Quote[] table = new Quote[readCount(in)];
+		for (int i = 0; i < table.length; i++){
+			table[i] = readQuote(in).asStale(); // they will have changed since
+		}
+		int boardCount = readCount(in);
+		List<Board> boards = new ArrayList<Board>(boardCount);
+		for (int b = 0; b < boardCount; b++){
+			int symbolCount = readCount(in);
+			List<String> symbols = new ArrayList<String>(symbolCount);
+			for (int i = 0; i < symbolCount; i++){
+				symbols.add(in.readUTF());
+			}
+			boolean watching = in.readBoolean();
+			int rowCount = readCount(in);
+			List<Quote> quotes = new ArrayList<Quote>(rowCount);
+			for (int i = 0; i < rowCount; i++){
+				int index = in.readInt();
+				if (index < 0 || index >= table.length){
+					throw new IOException("the snapshot is damaged");
+				}
+				quotes.add(table[index]);
+			}
+			boards.add(new Board(symbols, watching, quotes));
+		}
+		return new Snapshot(boards, savedAtMillis);
+	}
+
+	/**
+	 * Writes the snapshot to a file, replacing any snapshot there once it has been written in full.
+	 * @param file the file
+	 * @param compress true to compress the body with deflate (at its fastest setting)
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(Path file, boolean compress) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null){
+			Files.createDirectories(dir);
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+			DataOutputStream header = new DataOutputStream(out);
+			header.writeInt(MAGIC);
+			header.writeByte(VERSION);
+			header.writeByte(compress ? DEFLATED : UNCOMPRESSED);
+			if (compress){
+				DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 8192);
+				DataOutputStream body = new DataOutputStream(new BufferedOutputStream(deflated));
+				writeBody(body);
+				body.flush();
+				deflated.finish();
+			}
+			else {
+				writeBody(header);
+			}
+		} finally {
+			if (deflater != null){
+				deflater.end();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes the body of the snapshot (see above).
+	 * @param out where the body is written
+	 * @throws IOException if the body cannot be written
+	 */
+	private void writeBody(DataOutputStream out) throws IOException {
+		out.writeLong(savedAtMillis);
+		// each quote is written once, however many boards show it
+		Map<Quote, Integer> table = new HashMap<Quote, Integer>();
+		List<Quote> distinct = new ArrayList<Quote>();
+		for (Board board : boards){
+			for (Quote quote : board.quotes){
+				if (!table.containsKey(quote)){
+					table.put(quote, distinct.size());
+					distinct.add(quote);
+				}
+			}
+		}
+		out.writeInt(distinct.size());
+		for (Quote quote : distinct){
+			writeQuote(out, quote);
+		}
+		out.writeInt(boards.size());
+		for (Board board : boards){
+			out.writeInt(board.symbols.size());
+			for (String symbol : board.symbols){
+				out.writeUTF(symbol);
+			}
+			out.writeBoolean(board.watching);
+			out.writeInt(board.quotes.size());
+			for (Quote quote : board.quotes){
+				out.writeInt(table.get(quote));
+			}
+		}
+	}
+
+	/**
+	 * @param out where the quote is written
+	 * @param quote a quote
+	 * @throws IOException if the quote cannot be written
+	 */
+	private static void writeQuote(DataOutputStream out, Quote quote) throws IOException {
+		out.writeByte(quote.getStatus().ordinal());
+		out.writeUTF(quote.getSymbol());
+		if (quote.getStatus() == Quote.Status.FAILED){
+			out.writeUTF(String.valueOf(quote.getError()));
+			return;
+		}
+		out.writeUTF(quote.getName());
+		out.writeLong(quote.getLastTicks());
+		out.writeLong(quote.getPreviousCloseTicks());
+		out.writeUTF(quote.getDividend());
+		out.writeUTF(quote.getMarketCap());
+		out.writeUTF(quote.getExchange());
+		out.writeUTF(quote.getCurrency());
+	}
+
+	/**
+	 * @param in where the quote is read from
+	 * @return the quote
+	 * @throws IOException if the quote cannot be read
+	 */
+	private static Quote readQuote(DataInputStream in) throws IOException {
+		int status = in.readByte();
+		if (status < 0 || status >= Quote.Status.values().length){
+			throw new IOException("the snapshot is damaged");
+		}
+		String symbol = in.readUTF();
+		if (status == Quote.Status.FAILED.ordinal()){
+			return Quote.failed(symbol, in.readUTF());
+		}
+		return new Quote(symbol, in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readUTF(),
+				in.readUTF(), Quote.Status.values()[status]);
+	}
+
+	/**
+	 * @param in where the count is read from
+	 * @return a number of items
+	 * @throws IOException if the count cannot be read or is not believable
+	 */
+	private static int readCount(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > MAX_COUNT){
+			throw new IOException("the snapshot is damaged");
+		}
+		return count;
+	}
+
+	/**
+	 * @return the boards, one per window
+	 */
+	public List<Board> getBoards() {
+		return boards;
+	}
+
+	/**
+	 * @return the time the boards were saved, in milliseconds since 1970
+	 */
+	public long getSavedAtMillis() {
+		return savedAtMillis;
+	}
+
+} // End of Snapshot definition
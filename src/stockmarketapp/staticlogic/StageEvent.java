@@ -0,0 +1,31 @@
+package stockmarketapp.staticlogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for one stage of obtaining and showing quotes (see Metrics), so that a recording shows
+ * where the time went alongside the JVM's own events. Only created while a recording that enables it is running, e.g.
+ * <code>java -XX:StartFlightRecording=filename=app.jfr stockmarketapp.MainApp</code>
+ * @author Sadruddin Junejo
+ *
+ */
+@Name("stockmarketapp.Stage")
+@Label("Pipeline Stage")
+@Category("Stock Market App")
+@Description("One stage of obtaining or showing quotes")
+@StackTrace(false)
+class StageEvent extends jdk.jfr.Event {
+
+	@Label("Stage")
+	String stage;
+
+	@Label("Elapsed")
+	@Timespan(Timespan.NANOSECONDS)
+	long elapsed;
+
+} // End of StageEvent definition
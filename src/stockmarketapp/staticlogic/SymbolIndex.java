@@ -0,0 +1,225 @@
+package stockmarketapp.staticlogic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The symbols that can be looked up, with their company names, read from a listing (see Settings.getSymbolListing),
+ * so that symbols can be suggested as they are typed and unknown symbols turned away before any request is sent.
+ * The listing has one symbol per line, followed by a comma and the company name, e.g. <code>AAPL,Apple Inc.</code>;
+ * blank lines and lines starting with "#" are ignored.
+ * The symbols are kept sorted in a single array of characters, with the start of each in an array of whole numbers,
+ * and the company names likewise; a second array holds the order of the names. A prefix is found by binary search,
+ * comparing characters in place, so a suggestion takes a few microseconds even for hundreds of thousands of symbols,
+ * and the index takes little more memory than the characters themselves.
+ * Cannot be changed once created, so it may be used from any thread.
+ * @author Sadruddin Junejo
+ *
+ */
+public class SymbolIndex {
+
+	/** the symbols, in upper case and in order, one after another */
+	private final char[] symbols;
+	/** where each symbol starts in symbols; one more entry than there are symbols, marking the end of the last */
+	private final int[] symbolStarts;
+	/** the company names, one after another, in the order of the symbols */
+	private final char[] names;
+	/** where each name starts in names, as symbolStarts */
+	private final int[] nameStarts;
+	/** the symbols (as positions in the order of the symbols) in the order of their names, ignoring case */
+	private final int[] byName;
+
+	/**
+	 * Reads a listing. A symbol listed more than once is kept once, with the first of its names in alphabetical order.
+	 * @param in the listing
+	 * @throws IOException if the listing cannot be read
+	 */
+	public SymbolIndex(Reader in) throws IOException {
+		List<String> entries = new ArrayList<String>();
+		BufferedReader lines = new BufferedReader(in);
+		for (String line = lines.readLine(); line != null; line = lines.readLine()){
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")){
+				continue;
+			}
+			int comma = line.indexOf(',');
+			String symbol = unquote((comma < 0 ? line : line.substring(0, comma)).trim()).toUpperCase(Locale.ROOT);
+			String name = comma < 0 ? "" : unquote(line.substring(comma + 1).trim());
+			if (!symbol.isEmpty()){
+				entries.add(symbol + '\u0000' + name); // NUL sorts before every character of a symbol
+			}
+		}
+		String[] sorted = entries.toArray(new String[0]);
+		entries = null;
+		Arrays.sort(sorted);
+
+		int count = 0;
+		int symbolLength = 0;
+		int nameLength = 0;
+		String previous = null;
+		for (int i = 0; i < sorted.length; i++){
+			String symbol = sorted[i].substring(0, sorted[i].indexOf('\u0000'));
+			if (!symbol.equals(previous)){
+				sorted[count++] = sorted[i];
+				symbolLength += symbol.length();
+				nameLength += sorted[i].length() - symbol.length() - 1;
+				previous = symbol;
+			}
+		}
+
+		symbols = new char[symbolLength];
+		symbolStarts = new int[count + 1];
+		names = new char[nameLength];
+		nameStarts = new int[count + 1];
+		String[] nameKeys = new String[count];
+		for (int i = 0, s = 0, n = 0; i < count; i++){
+			String entry = sorted[i];
+			int separator = entry.indexOf('\u0000');
+			symbolStarts[i] = s;
+			entry.getChars(0, separator, symbols, s);
+			s += separator;
+			nameStarts[i] = n;
+			entry.getChars(separator + 1, entry.length(), names, n);
+			n += entry.length() - separator - 1;
+			symbolStarts[i + 1] = s;
+			nameStarts[i + 1] = n;
+			// the position is appended in a fixed width, so that equal names keep the order of their symbols
+			nameKeys[i] = entry.substring(separator + 1).toUpperCase(Locale.ROOT) + '\u0000' + (char) (i >>> 16) + (char) i;
+		}
+		Arrays.sort(nameKeys);
+		byName = new int[count];
+		for (int i = 0; i < count; i++){
+			String key = nameKeys[i];
+			byName[i] = key.charAt(key.length() - 2) << 16 | key.charAt(key.length() - 1);
+		}
+	}
+
+	private static String unquote(String str) {
+		if (str.length() >= 2 && str.charAt(0) == '"' && str.charAt(str.length() - 1) == '"'){
+			return str.substring(1, str.length() - 1);
+		}
+		return str;
+	}
+
+	/**
+	 * @return the number of symbols listed
+	 */
+	public int size() {
+		return symbolStarts.length - 1;
+	}
+
+	/**
+	 * @param symbol a stock symbol, in any case
+	 * @return true if the symbol is listed
+	 */
+	public boolean contains(CharSequence symbol) {
+		int position = firstAtLeast(symbols, symbolStarts, null, symbol);
+		return position < size() && compare(symbols, symbolStarts, position, symbol, false) == 0;
+	}
+
+	/**
+	 * @param symbol a stock symbol, in any case
+	 * @return the company name listed for the symbol, or null if the symbol is not listed
+	 */
+	public String nameOf(CharSequence symbol) {
+		int position = firstAtLeast(symbols, symbolStarts, null, symbol);
+		if (position < size() && compare(symbols, symbolStarts, position, symbol, false) == 0){
+			return new String(names, nameStarts[position], nameStarts[position + 1] - nameStarts[position]);
+		}
+		return null;
+	}
+
+	/**
+	 * Suggests symbols for what has been typed so far: first the symbols that start with it, in order,
+	 * then the symbols whose company names start with it, in the order of the names.
+	 * @param prefix the start of a symbol or company name, in any case
+	 * @param max the largest number of symbols wanted
+	 * @return up to max symbols, without duplicates; none if the prefix is empty
+	 */
+	public List<String> suggest(CharSequence prefix, int max) {
+		List<String> found = new ArrayList<String>(Math.min(max, 16));
+		if (prefix.length() == 0){
+			return found;
+		}
+		int count = size();
+		for (int i = firstAtLeast(symbols, symbolStarts, null, prefix);
+				i < count && found.size() < max && compare(symbols, symbolStarts, i, prefix, true) == 0; i++){
+			found.add(symbolAt(i));
+		}
+		for (int i = firstAtLeast(names, nameStarts, byName, prefix);
+				i < count && found.size() < max && compare(names, nameStarts, byName[i], prefix, true) == 0; i++){
+			String symbol = symbolAt(byName[i]);
+			if (!startsWith(symbol, prefix)){ // otherwise already found by its symbol
+				found.add(symbol);
+			}
+		}
+		return found;
+	}
+
+	private String symbolAt(int position) {
+		return new String(symbols, symbolStarts[position], symbolStarts[position + 1] - symbolStarts[position]);
+	}
+
+	private static boolean startsWith(String symbol, CharSequence prefix) {
+		if (symbol.length() < prefix.length()){
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++){
+			if (symbol.charAt(i) != Character.toUpperCase(prefix.charAt(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds, by binary search, the first entry that is not before a key (ignoring case).
+	 * @param chars the entries, one after another
+	 * @param starts where each entry starts in chars
+	 * @param order the order of the entries (positions in starts), or null if they are in order already
+	 * @param key the key
+	 * @return the position (in order, if given) of the first entry that is not before the key, or the number of entries
+	 */
+	private static int firstAtLeast(char[] chars, int[] starts, int[] order, CharSequence key) {
+		int low = 0;
+		int high = starts.length - 1;
+		while (low < high){
+			int middle = (low + high) >>> 1;
+			int entry = order == null ? middle : order[middle];
+			if (compare(chars, starts, entry, key, false) < 0){
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Compares an entry with a key, ignoring case, without creating any objects.
+	 * @param prefixOnly if true, an entry that starts with the key counts as equal to it
+	 * @return a negative number, zero or a positive number as the entry is before, equal to or after the key
+	 */
+	private static int compare(char[] chars, int[] starts, int entry, CharSequence key, boolean prefixOnly) {
+		int start = starts[entry];
+		int length = starts[entry + 1] - start;
+		int common = Math.min(length, key.length());
+		for (int i = 0; i < common; i++){
+			int difference = Character.toUpperCase(chars[start + i]) - Character.toUpperCase(key.charAt(i));
+			if (difference != 0){
+				return difference;
+			}
+		}
+		if (prefixOnly && length >= key.length()){
+			return 0;
+		}
+		return length - key.length();
+	}
+
+} // End of SymbolIndex definition
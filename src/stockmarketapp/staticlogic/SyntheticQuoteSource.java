@@ -0,0 +1,125 @@
+package stockmarketapp.staticlogic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes up quotes for any symbol, with prices that follow a random walk: every time a symbol is fetched (a "tick"),
+ * its price moves up or down by a random fraction of itself, at most the volatility.
+ * Each symbol has its own sequence of random numbers, derived from the seed and the symbol, so the same seed always
+ * gives every symbol the same prices in the same order, however the symbols are grouped into requests.
+ * As with StubQuoteServer, symbols starting with "ZZ" are reported as not found.
+ * Nothing is read or written, so a tick costs little more than creating the quote, allowing millions per second.
+ * @author Sadruddin Junejo
+ *
+ */
+public class SyntheticQuoteSource implements QuoteSource {
+
+	/** the stock exchanges the made-up companies are listed in, one of each currency known to ReturnButtonLogic */
+	private static final String[] EXCHANGES = {"NasdaqNM", "NYSE", "Paris", "SES", "London", "HKSE", "NCM"};
+
+	/** the number of ticks in a cent (see Price) */
+	private static final long TICKS_PER_CENT = Price.SCALE / 100;
+
+	/**
+	 * The made-up company of one symbol, and its current price.
+	 */
+	private static final class Walk {
+		final String symbol;
+		final String name;
+		final long previousCloseCents;
+		final String dividend;
+		final String marketCap;
+		final String exchange;
+		final String currency;
+		/** the random numbers of this symbol. Guarded by this. */
+		final SplittableRandom random;
+		/** the current price in cents. Guarded by this. */
+		long lastCents;
+
+		Walk(String symbol, long seed) {
+			this.random = new SplittableRandom(seed);
+			this.symbol = symbol;
+			this.name = symbol + " Holdings, Inc";
+			this.previousCloseCents = 500 + random.nextInt(50000);
+			this.lastCents = previousCloseCents;
+			int dividendCents = random.nextInt(400) - 100;
+			this.dividend = dividendCents <= 0 ? "N/A" : Double.toString(dividendCents / 100.0);
+			this.marketCap = (1 + random.nextInt(999)) / 10.0 + "B";
+			this.exchange = EXCHANGES[random.nextInt(EXCHANGES.length)];
+			this.currency = ReturnButtonLogic.currencyOf(exchange);
+		}
+
+		/**
+		 * Moves the price one step and returns it as a quote.
+		 */
+		synchronized Quote tick(double volatility) {
+			long move = Math.round(lastCents * volatility * (2 * random.nextDouble() - 1));
+			lastCents = Math.max(1, lastCents + move);
+			return new Quote(symbol, name, lastCents * TICKS_PER_CENT, previousCloseCents * TICKS_PER_CENT, dividend, marketCap,
+					exchange, currency, Quote.Status.OK);
+		}
+	}
+
+	/** mixed with each symbol to give its sequence of random numbers */
+	private final long seed;
+	/** the largest move of a price in one tick, as a fraction of the price */
+	private final double volatility;
+	/** the made-up company of each symbol seen so far */
+	private final ConcurrentHashMap<String, Walk> walks = new ConcurrentHashMap<String, Walk>();
+
+	/**
+	 * Constructor method for the source.
+	 * @param seed decides the prices; the same seed always gives the same prices
+	 * @param volatility the largest move of a price in one tick, as a fraction of the price (e.g. 0.001 for 0.1%)
+	 */
+	public SyntheticQuoteSource(long seed, double volatility) {
+		if (!(volatility >= 0 && volatility < 1)){
+			throw new IllegalArgumentException("volatility must be at least 0 and less than 1: " + volatility);
+		}
+		this.seed = seed;
+		this.volatility = volatility;
+	}
+
+	/**
+	 * Moves the price of each symbol one step.
+	 */
+	@Override
+	public List<Quote> fetch(List<String> symbols) {
+		List<Quote> quotes = new ArrayList<Quote>(symbols.size());
+		for (String symbol : symbols){
+			quotes.add(tick(symbol));
+		}
+		return quotes;
+	}
+
+	/**
+	 * Moves the price of a symbol one step.
+	 * @param symbol the stock symbol
+	 * @return the quote with the new price
+	 */
+	public Quote tick(String symbol) {
+		String key = symbol.toUpperCase(Locale.ROOT); // symbols are reported in capitals, as by Yahoo! Quotes
+		if (key.startsWith("ZZ")){
+			return Quote.notFound(key, key);
+		}
+		Walk walk = walks.get(key);
+		if (walk == null){
+			Walk created = new Walk(key, seed ^ (key.hashCode() * 0x9E3779B97F4A7C15L));
+			walk = walks.putIfAbsent(key, created);
+			if (walk == null){
+				walk = created;
+			}
+		}
+		return walk.tick(volatility);
+	}
+
+	@Override
+	public String toString() {
+		return "synthetic market (seed " + seed + ", volatility " + volatility + ")";
+	}
+
+} // End of SyntheticQuoteSource definition
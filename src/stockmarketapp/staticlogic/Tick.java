@@ -0,0 +1,46 @@
+package stockmarketapp.staticlogic;
+
+/**
+ * One price of one symbol at one point in time, as kept by TickStore.
+ * @author Sadruddin Junejo
+ *
+ */
+public final class Tick {
+
+	/** when the price was obtained, in milliseconds since 1970 */
+	private final long time;
+	/** the price per share, in ticks (see Price); Price.NONE if missing */
+	private final long last;
+	/** the price per share at the previous close, in ticks; Price.NONE if missing */
+	private final long previousClose;
+
+	/**
+	 * Constructor method for a tick.
+	 * @param time when the price was obtained, in milliseconds since 1970
+	 * @param last the price per share, in ticks (see Price)
+	 * @param previousClose the price per share at the previous close, in ticks
+	 */
+	public Tick(long time, long last, long previousClose) {
+		this.time = time;
+		this.last = last;
+		this.previousClose = previousClose;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public long getLast() {
+		return last;
+	}
+
+	public long getPreviousClose() {
+		return previousClose;
+	}
+
+	@Override
+	public String toString() {
+		return Price.append(new StringBuilder(32).append(time).append(' '), last, Price.DECIMALS).toString();
+	}
+
+} // End of Tick definition
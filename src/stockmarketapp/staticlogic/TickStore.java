@@ -0,0 +1,636 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps every price obtained on disk, so that recent prices can be read back quickly and need not be fetched again
+ * after the program is restarted.
+ * The prices are kept in one file per symbol per day (UTC), in a directory per day: root/2014-12-15/AAPL.ticks
+ * Each file is memory-mapped and only ever appended to. It starts with a header of 512 bytes holding the number of
+ * prices, the time the symbol was last fetched and the symbol's other details (name, dividend, market cap, exchange),
+ * followed by blocks of prices: the first holds 16, and each one after it twice as many as the one before, up to 512.
+ * Within a block the values are stored by column (all the times, then all the last prices, then all the previous
+ * closes), each as an 8-byte number; prices are in ticks (see Price). A file is only extended as it fills up, so one
+ * holding a single price takes under 1 KB.
+ * The time of the first price in each block forms a sparse index, held in memory, through which a point in time
+ * is found with a binary search over the blocks followed by a scan of a single block.
+ * A price that is the same as the one before it is not stored again; only the time last fetched is updated.
+ * Only a limited number of files are kept mapped at once; the least recently used are unmapped. A file is only open
+ * while it is being mapped, so the mappings do not use up file descriptors and there can be one for every symbol
+ * of a large watchlist.
+ * The latest price of each of the symbols most recently used is also kept in memory, so that finding out whether a
+ * symbol's stored quote is current (see current) does not touch its files; the files are only read for symbols not
+ * stored or read recently.
+ * @author Sadruddin Junejo
+ *
+ */
+public class TickStore {
+
+	/** the first four bytes of every file: "TICK" */
+	private static final int MAGIC = 0x5449434B;
+	/** the layout of the files written: a small header and blocks that grow; see Partition */
+	private static final int VERSION = 2;
+	/** the layout of the files written before: a header of 4096 bytes and blocks of 512 prices throughout */
+	private static final int VERSION_FIXED_BLOCKS = 1;
+	/** the size of the header at the start of each file */
+	private static final int HEADER_BYTES = 512;
+	private static final int FIXED_HEADER_BYTES = 4096;
+	// positions of the values in the header
+	private static final int COUNT = 8;
+	private static final int LAST_SEEN = 16;
+	private static final int META_LENGTH = 24;
+	private static final int META = 28;
+	/** the number of prices in the first block; each block after it holds twice as many, up to BLOCK_TICKS */
+	private static final int FIRST_BLOCK_TICKS = 16;
+	/** the largest number of prices in a block */
+	private static final int BLOCK_TICKS = 512;
+	/** the size of a price: three columns of 8-byte values */
+	private static final int TICK_BYTES = 3 * 8;
+	/** the largest number of symbols whose latest price is kept in memory; the least recently used are read again */
+	private static final int MAX_LATEST = 16384;
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+	/** the number of days looked back through for a symbol's latest price */
+	private static final int MAX_LOOKBACK_DAYS = 7;
+	private static final String SUFFIX = ".ticks";
+
+	/**
+	 * The file of one symbol for one day.
+	 * The blocks grow from FIRST_BLOCK_TICKS prices to BLOCK_TICKS, doubling each time, so that the file of a symbol
+	 * fetched only a few times a day stays small (under 1 KB), while that of a busy symbol is still searched through
+	 * an index of few blocks. Files written before (VERSION_FIXED_BLOCKS) have blocks of BLOCK_TICKS throughout.
+	 */
+	private static final class Partition {
+		final Path file;
+		MappedByteBuffer buffer;
+		/** the size of the file's header */
+		int headerBytes;
+		/** the number of prices in the file's first block */
+		int firstBlockTicks;
+		/** the number of blocks before they reach BLOCK_TICKS prices */
+		int growingBlocks;
+		/** the number of blocks the mapping has room for */
+		int capacityBlocks;
+		/** the number of prices stored */
+		int count;
+		/** the time of the first price in each block that has been started */
+		long[] index;
+		/** the symbol's details: symbol, name, dividend, market cap, exchange */
+		String[] meta;
+
+		Partition(Path file) throws IOException {
+			this.file = file;
+			boolean exists = Files.exists(file);
+			try (FileChannel channel = open()) {
+				if (!exists || channel.size() < 8){
+					setLayout(VERSION);
+					map(channel, 1);
+					buffer.putInt(0, MAGIC);
+					buffer.putInt(4, VERSION);
+					meta = new String[5];
+					index = new long[4];
+					return;
+				}
+				ByteBuffer start = ByteBuffer.allocate(8);
+				channel.read(start, 0);
+				if (start.getInt(0) != MAGIC || !setLayout(start.getInt(4))){
+					throw new IOException(file + " is not a tick file");
+				}
+				int blocks = 1;
+				while (end(blocks + 1) <= channel.size()){
+					blocks++;
+				}
+				map(channel, blocks);
+			}
+			count = (int) buffer.getLong(COUNT);
+			int blocks = count == 0 ? 0 : blockOf(count - 1) + 1;
+			if (blocks > capacityBlocks){
+				throw new IOException(file + " is shorter than the number of prices it claims to hold");
+			}
+			index = new long[Math.max(4, blocks)];
+			for (int block = 0; block < blocks; block++){
+				index[block] = buffer.getLong(position(startOf(block), 0));
+			}
+			meta = readMeta();
+		}
+
+		/**
+		 * @param version the version of the file
+		 * @return false if the version is not known
+		 */
+		boolean setLayout(int version) {
+			if (version == VERSION){
+				headerBytes = HEADER_BYTES;
+				firstBlockTicks = FIRST_BLOCK_TICKS;
+			}
+			else if (version == VERSION_FIXED_BLOCKS){
+				headerBytes = FIXED_HEADER_BYTES;
+				firstBlockTicks = BLOCK_TICKS;
+			}
+			else {
+				return false;
+			}
+			growingBlocks = Integer.numberOfTrailingZeros(BLOCK_TICKS / firstBlockTicks);
+			return true;
+		}
+
+		FileChannel open() throws IOException {
+			return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+
+		/**
+		 * Maps the file with room for a number of blocks, extending the file if needed.
+		 * The mapping stays valid once the channel is closed.
+		 */
+		void map(FileChannel channel, int blocks) throws IOException {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, end(blocks));
+			capacityBlocks = blocks;
+		}
+
+		/**
+		 * @param blocks a number of blocks
+		 * @return the size of the file with room for that many blocks
+		 */
+		long end(int blocks) {
+			return headerBytes + (long) startOf(blocks) * TICK_BYTES;
+		}
+
+		/**
+		 * @param block the number of a block
+		 * @return the number of the first price in the block
+		 */
+		int startOf(int block) {
+			if (block < growingBlocks){
+				return firstBlockTicks * ((1 << block) - 1);
+			}
+			return firstBlockTicks * ((1 << growingBlocks) - 1) + (block - growingBlocks) * BLOCK_TICKS;
+		}
+
+		/**
+		 * @param tick the number of a price in the file
+		 * @return the number of the block it is in
+		 */
+		int blockOf(int tick) {
+			int grown = firstBlockTicks * ((1 << growingBlocks) - 1); // the prices in the blocks that grow
+			if (tick < grown){
+				return 31 - Integer.numberOfLeadingZeros(tick / firstBlockTicks + 1);
+			}
+			return growingBlocks + (tick - grown) / BLOCK_TICKS;
+		}
+
+		/**
+		 * @param tick the number of the price in the file
+		 * @param column 0 for the time, 1 for the last price, 2 for the previous close
+		 * @return the position of the value in the file
+		 */
+		int position(int tick, int column) {
+			int block = blockOf(tick);
+			int start = startOf(block);
+			int size = block < growingBlocks ? firstBlockTicks << block : BLOCK_TICKS;
+			return headerBytes + start * TICK_BYTES + (column * size + tick - start) * 8;
+		}
+
+		long time(int tick) {
+			return buffer.getLong(position(tick, 0));
+		}
+
+		Tick read(int tick) {
+			return new Tick(buffer.getLong(position(tick, 0)), buffer.getLong(position(tick, 1)), buffer.getLong(position(tick, 2)));
+		}
+
+		void append(long time, long last, long previousClose) throws IOException {
+			if (count > 0){
+				time = Math.max(time, time(count - 1)); // the clock may have been put back; times must not go backwards
+				if (buffer.getLong(position(count - 1, 1)) == last && buffer.getLong(position(count - 1, 2)) == previousClose){
+					buffer.putLong(LAST_SEEN, time); // unchanged, so only the time last fetched is recorded
+					return;
+				}
+			}
+			int block = blockOf(count);
+			if (block == capacityBlocks){
+				try (FileChannel channel = open()) {
+					map(channel, capacityBlocks * 2);
+				}
+			}
+			if (count == startOf(block)){
+				if (block == index.length){
+					long[] grown = new long[index.length * 2];
+					System.arraycopy(index, 0, grown, 0, index.length);
+					index = grown;
+				}
+				index[block] = time;
+			}
+			buffer.putLong(position(count, 0), time);
+			buffer.putLong(position(count, 1), last);
+			buffer.putLong(position(count, 2), previousClose);
+			count++;
+			buffer.putLong(COUNT, count); // written last, so that a price is only counted once it is complete
+			buffer.putLong(LAST_SEEN, time);
+		}
+
+		/**
+		 * @param time a point in time
+		 * @return the number of the first price obtained at or after that time, or count if there is none
+		 */
+		int find(long time) {
+			int blocks = count == 0 ? 0 : blockOf(count - 1) + 1;
+			int low = 0;
+			int high = blocks - 1;
+			int block = 0;
+			while (low <= high){ // the last block that starts at or before the time
+				int middle = (low + high) >>> 1;
+				if (index[middle] <= time){
+					block = middle;
+					low = middle + 1;
+				}
+				else {
+					high = middle - 1;
+				}
+			}
+			int tick = startOf(block);
+			while (tick < count && time(tick) < time){
+				tick++;
+			}
+			return tick;
+		}
+
+		long lastSeen() {
+			return buffer.getLong(LAST_SEEN);
+		}
+
+		/**
+		 * Records the symbol's details if they have changed.
+		 */
+		void updateMeta(Quote quote) {
+			String[] latest = {quote.getSymbol(), quote.getName(), quote.getDividend(), quote.getMarketCap(), quote.getExchange()};
+			boolean changed = false;
+			for (int i = 0; i < latest.length && !changed; i++){
+				changed = !latest[i].equals(meta[i]);
+			}
+			if (!changed){
+				return;
+			}
+			ByteBuffer out = buffer.duplicate();
+			out.position(META);
+			for (String field : latest){
+				byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+				int length = Math.min(bytes.length, (headerBytes - META) / latest.length - 2); // long names are cut short
+				out.putShort((short) length);
+				out.put(bytes, 0, length);
+			}
+			buffer.putInt(META_LENGTH, out.position() - META);
+			meta = readMeta();
+		}
+
+		String[] readMeta() {
+			String[] fields = new String[5];
+			ByteBuffer in = buffer.duplicate();
+			in.position(META);
+			if (buffer.getInt(META_LENGTH) == 0){
+				return fields;
+			}
+			for (int i = 0; i < fields.length; i++){
+				byte[] bytes = new byte[in.getShort()];
+				in.get(bytes);
+				fields[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			return fields;
+		}
+	}
+
+	/**
+	 * The most recent price stored for a symbol, and its details, as in its latest file.
+	 */
+	private static final class Latest {
+		/** the day of the file, in days since 1970 */
+		long day;
+		/** the symbol's details: symbol, name, dividend, market cap, exchange */
+		String[] meta;
+		long last;
+		long previousClose;
+		/** the time the symbol was last fetched */
+		long lastSeen;
+
+		/**
+		 * Takes the latest price of a file.
+		 */
+		void set(long day, Partition partition) {
+			this.day = day;
+			meta = partition.meta;
+			last = partition.buffer.getLong(partition.position(partition.count - 1, 1));
+			previousClose = partition.buffer.getLong(partition.position(partition.count - 1, 2));
+			lastSeen = partition.lastSeen();
+		}
+	}
+
+	/** the directory holding a directory for each day */
+	private final Path root;
+	/** the files currently mapped, by day and file name, least recently used first. Guarded by this. */
+	private final LinkedHashMap<String, Partition> open;
+	/** the latest price of each symbol read or stored recently, by file name, least recently used first. Guarded by this. */
+	private final LinkedHashMap<String, Latest> latest = new LinkedHashMap<String, Latest>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Latest> eldest) {
+			return size() > MAX_LATEST; // read from its file again when next needed (see latest)
+		}
+	};
+	/** the days that have a directory, as days since 1970. Guarded by this. */
+	private final NavigableSet<Long> days = new TreeSet<Long>();
+	/** the files in each day's directory, read when first needed. Guarded by this. */
+	private final Map<Long, Set<String>> filesByDay = new HashMap<Long, Set<String>>();
+
+	/**
+	 * Constructor method for the store. The directory is created if it does not exist.
+	 * @param root the directory the prices are kept in
+	 * @param maxOpen the maximum number of files kept mapped at once
+	 * @throws IOException if the directory cannot be created or read
+	 */
+	public TickStore(Path root, final int maxOpen) throws IOException {
+		this.root = root;
+		Files.createDirectories(root);
+		this.open = new LinkedHashMap<String, Partition>(16, 0.75f, true) { // ordered by access, to unmap the least recently used
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Partition> eldest) {
+				// nothing is lost, as everything has been written to the mapping, which is released once unreferenced
+				return size() > maxOpen;
+			}
+		};
+		try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+			for (Path dir : dirs){
+				try {
+					days.add(LocalDate.parse(dir.getFileName().toString()).toEpochDay());
+				} catch (RuntimeException e) {
+					// not a day's directory
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores the prices of a list of quotes. Quotes without data (not found, or failed) are left out.
+	 * @param quotes the quotes
+	 * @param time when the quotes were obtained, in milliseconds since 1970
+	 * @throws IOException if the prices cannot be stored
+	 */
+	public synchronized void appendAll(List<Quote> quotes, long time) throws IOException {
+		for (Quote quote : quotes){
+			append(quote, time);
+		}
+	}
+
+	/**
+	 * Stores the price of a quote, unless the quote has no data (not found, or failed).
+	 * @param quote the quote
+	 * @param time when the quote was obtained, in milliseconds since 1970
+	 * @throws IOException if the price cannot be stored
+	 */
+	public synchronized void append(Quote quote, long time) throws IOException {
+		if (quote.getStatus() != Quote.Status.OK && quote.getStatus() != Quote.Status.UNAVAILABLE){
+			return;
+		}
+		String name = fileName(quote.getSymbol());
+		long day = Math.floorDiv(time, DAY_MILLIS);
+		Partition partition = partition(name, day, true);
+		partition.updateMeta(quote);
+		partition.append(time, quote.getLastTicks(), quote.getPreviousCloseTicks());
+		Latest found = latest.get(name);
+		if (found == null){
+			found = new Latest();
+			latest.put(name, found);
+		}
+		else if (found.day > day){
+			return; // the clock has been put back: a later day is already stored
+		}
+		found.set(day, partition);
+	}
+
+	/**
+	 * Reads the most recent prices of a symbol, looking back over as many days as needed.
+	 * @param symbol the stock symbol
+	 * @param n the maximum number of prices wanted
+	 * @param now the current time, in milliseconds since 1970; prices after this are ignored
+	 * @return up to n prices, oldest first
+	 * @throws IOException if the prices cannot be read
+	 */
+	public synchronized List<Tick> lastTicks(String symbol, int n, long now) throws IOException {
+		List<Tick> newestFirst = new ArrayList<Tick>(Math.min(n, 1024));
+		long today = Math.floorDiv(now, DAY_MILLIS);
+		String name = fileName(symbol);
+		for (Iterator<Long> it = days.headSet(today, true).descendingIterator(); it.hasNext() && newestFirst.size() < n;){
+			Partition partition = partition(name, it.next(), false);
+			if (partition != null){
+				for (int tick = partition.find(now + 1) - 1; tick >= 0 && newestFirst.size() < n; tick--){
+					newestFirst.add(partition.read(tick));
+				}
+			}
+		}
+		Collections.reverse(newestFirst);
+		return newestFirst;
+	}
+
+	/**
+	 * Reads the prices of a symbol obtained within a period of time.
+	 * @param symbol the stock symbol
+	 * @param from the start of the period, in milliseconds since 1970
+	 * @param to the end of the period (inclusive), in milliseconds since 1970
+	 * @return the prices, oldest first
+	 * @throws IOException if the prices cannot be read
+	 */
+	public synchronized List<Tick> range(String symbol, long from, long to) throws IOException {
+		List<Tick> ticks = new ArrayList<Tick>();
+		String name = fileName(symbol);
+		for (long day : days.subSet(Math.floorDiv(from, DAY_MILLIS), true, Math.floorDiv(to, DAY_MILLIS), true)){
+			Partition partition = partition(name, day, false);
+			if (partition != null){
+				for (int tick = partition.find(from); tick < partition.count && partition.time(tick) <= to; tick++){
+					ticks.add(partition.read(tick));
+				}
+			}
+		}
+		return ticks;
+	}
+
+	/**
+	 * Returns the stored quote of a symbol if it is known to be current, i.e. its stock exchange is closed and the
+	 * symbol has been fetched since the close, so that the program need not fetch it again (e.g. after a restart).
+	 * @param symbol the stock symbol
+	 * @param now the current time, in milliseconds since 1970
+	 * @return the quote, or null if there is no stored quote that is known to be current
+	 * @throws IOException if the stored quote cannot be read
+	 */
+	public synchronized Quote current(String symbol, long now) throws IOException {
+		return currentAll(Collections.singletonList(symbol), now).get(0);
+	}
+
+	/**
+	 * Returns the stored quotes of several symbols that are known to be current (see current), in one go.
+	 * Whether each exchange is open, and when it last closed, is only worked out once.
+	 * @param symbols the stock symbols
+	 * @param now the current time, in milliseconds since 1970
+	 * @return the quote of each symbol, in the same order, or null for a symbol with no stored quote that is known to
+	 *         be current
+	 * @throws IOException if a stored quote cannot be read
+	 */
+	public synchronized List<Quote> currentAll(List<String> symbols, long now) throws IOException {
+		long today = Math.floorDiv(now, DAY_MILLIS);
+		ExchangeRegistry registry = ExchangeRegistry.getDefault();
+		long[] lastCloses = new long[registry.getExchanges().size()]; // by index; 0 if not yet worked out
+		List<Quote> quotes = new ArrayList<Quote>(symbols.size());
+		for (int i = 0, n = symbols.size(); i < n; i++){
+			Latest found = latest(fileName(symbols.get(i)), today);
+			if (found == null || found.day > today || found.day < today - MAX_LOOKBACK_DAYS){
+				quotes.add(null);
+				continue;
+			}
+			Exchange exchange = registry.lookup(found.meta[4]);
+			if (exchange != null && lastCloses[exchange.getIndex()] == 0){
+				lastCloses[exchange.getIndex()] = exchange.isOpen(now) ? Long.MAX_VALUE : exchange.lastClose(now);
+			}
+			if (exchange == null || found.lastSeen < lastCloses[exchange.getIndex()]){
+				quotes.add(null); // the price may have changed since it was stored (always, while the exchange is open)
+				continue;
+			}
+			Quote.Status status = found.last == Price.NONE || found.previousClose == Price.NONE
+					? Quote.Status.UNAVAILABLE : Quote.Status.OK;
+			quotes.add(new Quote(found.meta[0], found.meta[1], found.last, found.previousClose, found.meta[2],
+					found.meta[3], exchange.getCode(), exchange.getCurrencySymbol(), status));
+		}
+		return quotes;
+	}
+
+	/**
+	 * @param name the name of a symbol's files
+	 * @param today the current day, in days since 1970
+	 * @return the latest price of the symbol, read from its files (looking back over as many days as allowed) if it has
+	 *         not been read or stored recently, or null if it has none
+	 */
+	private Latest latest(String name, long today) throws IOException {
+		Latest found = latest.get(name);
+		if (found != null){
+			return found;
+		}
+		for (long day : days.subSet(today - MAX_LOOKBACK_DAYS, true, today, true).descendingSet()){
+			Partition partition = partition(name, day, false);
+			if (partition != null && partition.count > 0){
+				found = new Latest();
+				found.set(day, partition);
+				latest.put(name, found);
+				return found;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes everything stored so far to the disk.
+	 */
+	public synchronized void flush() {
+		for (Partition partition : open.values()){
+			partition.buffer.force();
+		}
+	}
+
+	/**
+	 * Writes everything to the disk and closes all the files.
+	 * @throws IOException if a file cannot be closed
+	 */
+	public synchronized void close() throws IOException {
+		flush();
+		open.clear(); // the mappings are released once they are no longer referenced
+	}
+
+	/**
+	 * @param name the name of a symbol's files (see fileName)
+	 * @param day the day, in days since 1970
+	 * @param create true to create the file if it does not exist
+	 * @return the file of the symbol for the day, or null if it does not exist and create is false
+	 */
+	private Partition partition(String name, long day, boolean create) throws IOException {
+		String key = day + "/" + name;
+		Partition partition = open.get(key);
+		if (partition != null){
+			return partition;
+		}
+		Set<String> files = files(day);
+		if (!files.contains(name)){
+			if (!create){
+				return null;
+			}
+			Files.createDirectories(dayDirectory(day));
+			days.add(day);
+			files.add(name);
+		}
+		partition = new Partition(dayDirectory(day).resolve(name));
+		open.put(key, partition);
+		return partition;
+	}
+
+	/**
+	 * @param day the day, in days since 1970
+	 * @return the names of the files in the day's directory
+	 */
+	private Set<String> files(long day) throws IOException {
+		Set<String> files = filesByDay.get(day);
+		if (files == null){
+			files = new HashSet<String>();
+			if (days.contains(day)){
+				try (DirectoryStream<Path> list = Files.newDirectoryStream(dayDirectory(day), "*" + SUFFIX)) {
+					for (Path file : list){
+						files.add(file.getFileName().toString());
+					}
+				}
+			}
+			filesByDay.put(day, files);
+		}
+		return files;
+	}
+
+	private Path dayDirectory(long day) {
+		return root.resolve(LocalDate.ofEpochDay(day).toString());
+	}
+
+	/**
+	 * @param symbol a stock symbol
+	 * @return the name of the symbol's files: the symbol in capitals, with any character that may not be allowed
+	 *         in a file name replaced by '_' and its code in hexadecimal
+	 */
+	static String fileName(String symbol) {
+		String upper = symbol.toUpperCase(Locale.ROOT);
+		StringBuilder name = new StringBuilder(upper.length() + SUFFIX.length());
+		for (int i = 0; i < upper.length(); i++){
+			char c = upper.charAt(i);
+			if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || (c == '.' && i > 0)){
+				name.append(c);
+			}
+			else {
+				name.append('_').append(String.format("%04x", (int) c));
+			}
+		}
+		return name.append(SUFFIX).toString();
+	}
+
+} // End of TickStore definition
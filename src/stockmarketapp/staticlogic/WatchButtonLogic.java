@@ -0,0 +1,103 @@
+package stockmarketapp.staticlogic;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handles what occurs when the watch button is pressed.
+ * In watch mode, the symbols of the most recent query are fetched again at a regular interval
+ * (see Settings.getRefreshMillis) and only the quotes that have changed are updated on screen.
+ * Pressing the button again leaves watch mode.
+ * Each window has its own watch mode, but symbols watched in several windows are only fetched once (see QuoteEngine).
+ * @author Sadruddin Junejo
+ *
+ */
+public class WatchButtonLogic {
+
+	/** the subscription of each view in watch mode; only used on the Swing event thread */
+	private static final Map<QuoteView, QuoteEngine.Subscription> subscriptions =
+			new ConcurrentHashMap<QuoteView, QuoteEngine.Subscription>();
+	/** the symbols of the most recent query of each view; only used on the Swing event thread */
+	private static final Map<QuoteView, List<String>> lastSymbols = new ConcurrentHashMap<QuoteView, List<String>>();
+
+	/**
+	 * Enters watch mode for the symbols of the most recent query, or leaves watch mode if already in it.
+	 * Must be called on the Swing event thread.
+	 * @param view the window whose watch button was pressed
+	 */
+	public static void buttonPressed(final QuoteView view) {
+		QuoteEngine.Subscription subscription = subscriptions.remove(view);
+		List<String> symbols = lastSymbols.get(view);
+		if (subscription != null){
+			subscription.cancel();
+			view.setWatching(false);
+		}
+		else if (symbols == null || symbols.isEmpty()){
+			view.setOutputString("Nothing to watch. Please look up at least one symbol first.");
+		}
+		else {
+			subscription = ReturnButtonLogic.getEngine().subscribe(new QuoteWatcher.Listener() {
+				@Override
+				public void quotesChanged(List<Quote> changed) {
+					view.updateQuotes(changed); // applied on the event thread, at most once per frame
+				}
+
+				@Override
+				public void fetchFailed(IOException e) {
+					System.err.println("Watch mode: unable to refresh data: " + e.getMessage()); // the quotes on display are kept
+				}
+			});
+			subscriptions.put(view, subscription);
+			subscription.setSymbols(symbols);
+			view.setWatching(true);
+		}
+	}
+
+	/**
+	 * Called when the result of a query is displayed, so that watch mode follows the symbols on display.
+	 * Must be called on the Swing event thread.
+	 * @param view the window the query was made in
+	 * @param symbols the symbols of the query
+	 */
+	static void querySubmitted(QuoteView view, List<String> symbols) {
+		lastSymbols.put(view, symbols);
+		QuoteEngine.Subscription subscription = subscriptions.get(view);
+		if (subscription != null){
+			subscription.setSymbols(symbols);
+		}
+	}
+
+	/**
+	 * Leaves watch mode in a window that has been closed, and forgets its symbols.
+	 * Must be called on the Swing event thread.
+	 * @param view the window
+	 */
+	static void viewClosed(QuoteView view) {
+		lastSymbols.remove(view);
+		QuoteEngine.Subscription subscription = subscriptions.remove(view);
+		if (subscription != null){
+			subscription.cancel();
+		}
+	}
+
+	/**
+	 * @param view a window
+	 * @return the symbols of the window's most recent query, which watch mode follows; none if there has been none
+	 */
+	public static List<String> getSymbols(QuoteView view) {
+		List<String> symbols = lastSymbols.get(view);
+		return symbols == null ? Collections.<String>emptyList() : symbols;
+	}
+
+	/**
+	 * @param view a window
+	 * @return true if the window is in watch mode
+	 */
+	public static boolean isWatching(QuoteView view) {
+		return subscriptions.containsKey(view);
+	}
+
+} // End of WatchButtonLogic definition
@@ -0,0 +1,362 @@
+package stockmarketapp.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.swing.SwingUtilities;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import stockmarketapp.staticlogic.BackgroundExecutor;
+import stockmarketapp.staticlogic.LatencyHistogram;
+import stockmarketapp.staticlogic.Metrics;
+import stockmarketapp.staticlogic.Quote;
+import stockmarketapp.staticlogic.QuoteView;
+import stockmarketapp.staticlogic.ReturnButtonLogic;
+import stockmarketapp.staticlogic.WatchButtonLogic;
+
+/**
+ * Drives the whole program without a window against a local stub feed (see StubQuoteServer), to find how many symbols
+ * and how fast a refresh it can sustain before users find out. Each run types a query of made-up symbols into a
+ * window that is never shown (the same path as the Return button: the cache, QueryPlanner, the feed, parsing, the
+ * tick store, the moving statistics and the alerts), then enters watch mode and measures it:
+ * <code>java stockmarketapp.tools.LoadTest [--symbols 100,1000,5000] [--refresh 1000,250] [--seconds 10]
+ *       [--latency 20] [--errors 0] [--padding 0]</code>
+ * Every combination of symbol count and refresh interval (in milliseconds) is run in a JVM of its own, started with
+ * the same class path and options as this one, so that the garbage collection and heap figures of one run do not carry
+ * over to the next. Each JVM keeps its prices in a new, empty tick store, and is given a list of exchanges without the
+ * stub's (see StubQuoteServer.writeUnknownExchanges), so that the store never answers a refresh itself, as while the
+ * markets are open. The stub answers after --latency milliseconds, fails the share of requests given by --errors
+ * (e.g. 0.05) and pads every company name with --padding characters to make the responses larger.
+ * For each run it reports: the time the first query took; the refreshes made per second against those asked for
+ * (fewer means the refreshes cannot keep up); the quotes parsed and the changes shown per second; the refresh latency
+ * (p50, p99, max); the quotes that failed; the collections and their total and longest pauses; and the most heap used.
+ * @author Sadruddin Junejo
+ *
+ */
+public class LoadTest {
+
+	/** the time watch mode runs before it is measured, so that the code is compiled and the connections are open */
+	private static final long WARM_UP_MILLIS = 2000;
+	/** the time between measurements of the heap, in milliseconds */
+	private static final long HEAP_SAMPLE_MILLIS = 50;
+	/** marks the line of results a run prints, which the sweep collects */
+	private static final String RESULT = "RESULT ";
+
+	/**
+	 * Stands in for a window: takes the input, and counts the quotes it is given.
+	 */
+	private static final class HeadlessView implements QuoteView {
+
+		/** counted down once the query has been answered, with quotes or an error */
+		final CountDownLatch answered = new CountDownLatch(1);
+		/** the number of changed quotes passed on in watch mode */
+		final AtomicLong changes = new AtomicLong();
+		/** the error the query was answered with, if any */
+		volatile String error;
+		private String input = "";
+
+		@Override
+		public String getInputString() {
+			return input;
+		}
+
+		@Override
+		public void setInputString(String str) {
+			input = str;
+		}
+
+		@Override
+		public void setOutputString(String str) {
+			error = str;
+			answered.countDown();
+		}
+
+		@Override
+		public void setQuotes(List<Quote> quotes) {
+			answered.countDown();
+		}
+
+		@Override
+		public void updateQuotes(List<Quote> changed) {
+			changes.addAndGet(changed.size());
+		}
+
+		@Override
+		public void setWatching(boolean watching) {
+		}
+
+		@Override
+		public void setBusy(boolean busy) {
+		}
+
+		@Override
+		public void showAlert(String str) {
+		}
+
+	} // End of HeadlessView definition
+
+	/**
+	 * Runs the sweep, or a single run if started by the sweep.
+	 * @param args the options, as above
+	 * @throws Exception if the stub cannot be started or a run cannot be started
+	 */
+	public static void main(String[] args) throws Exception {
+		String symbolCounts = "100,1000,5000";
+		String refreshIntervals = "1000,250";
+		long seconds = 10;
+		long latency = 20;
+		double errorRate = 0;
+		int padding = 0;
+		for (int i = 0; i + 1 < args.length; i += 2){
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--run": // started by the sweep: --run <symbols> --refresh <interval> --seconds <seconds>
+				symbolCounts = value;
+				break;
+			case "--symbols":
+				symbolCounts = value;
+				break;
+			case "--refresh":
+				refreshIntervals = value;
+				break;
+			case "--seconds":
+				seconds = Long.parseLong(value);
+				break;
+			case "--latency":
+				latency = Long.parseLong(value);
+				break;
+			case "--errors":
+				errorRate = Double.parseDouble(value);
+				break;
+			case "--padding":
+				padding = Integer.parseInt(value);
+				break;
+			default:
+				System.err.println("Usage: LoadTest [--symbols 100,1000] [--refresh 1000,250] [--seconds 10]"
+						+ " [--latency 20] [--errors 0] [--padding 0]");
+				System.exit(2);
+			}
+		}
+		if (args.length > 0 && args[0].equals("--run")){
+			System.out.println(RESULT + run(Integer.parseInt(symbolCounts), Long.parseLong(refreshIntervals), seconds));
+			System.exit(0);
+		}
+
+		StubQuoteServer stub = new StubQuoteServer(0, latency);
+		stub.setErrorRate(errorRate);
+		stub.setPaddingChars(padding);
+		stub.start();
+		Path scratch = Files.createTempDirectory("loadtest");
+		StubQuoteServer.writeUnknownExchanges(scratch);
+		try {
+			System.out.printf("stub: latency %d ms, error rate %.3f, padding %d chars; %d s per run%n",
+					latency, errorRate, padding, seconds);
+			System.out.printf("%8s %8s %9s %13s %9s %9s %8s %8s %8s %7s %5s %8s %8s %8s%n", "symbols", "refresh",
+					"query ms", "refreshes/s", "quotes/s", "changes/s", "p50 ms", "p99 ms", "max ms", "failed",
+					"gcs", "gc ms", "pause ms", "heap MB");
+			for (String symbols : symbolCounts.split(",")){
+				for (String refresh : refreshIntervals.split(",")){
+					String result = fork(stub, scratch, symbols.trim(), refresh.trim(), seconds);
+					System.out.println(result != null ? result : String.format("%8s %8s   run failed", symbols, refresh));
+				}
+			}
+			System.out.printf("stub answered %d requests, %d with an error%n", stub.getRequestCount(), stub.getErrorCount());
+		} finally {
+			stub.stop();
+			delete(scratch);
+		}
+	}
+
+	/**
+	 * Runs one combination in a JVM of its own, and waits for its results.
+	 * @param stub the feed
+	 * @param scratch a directory for the run's files, holding the list of exchanges
+	 * @param symbols the number of symbols
+	 * @param refresh the refresh interval, in milliseconds
+	 * @param seconds the time watch mode is measured for
+	 * @return the line of results, or null if the run failed
+	 * @throws IOException if the JVM cannot be started
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private static String fork(StubQuoteServer stub, Path scratch, String symbols, String refresh, long seconds)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()){
+			if (!option.startsWith("-Dstockmarketapp.") && !option.startsWith("-agentlib")){
+				command.add(option); // e.g. the heap size and collector being tried
+			}
+		}
+		command.add("-Djava.awt.headless=true");
+		command.add("-Dstockmarketapp.feedUrl=" + stub.getUrl());
+		command.add("-Dstockmarketapp.refreshMillis=" + refresh);
+		command.add("-Dstockmarketapp.cacheTtl=1"); // the query must go to the feed
+		command.add("-Dstockmarketapp.skipClosedMarkets=false"); // the made-up exchanges' hours must not matter
+		command.add("-Dstockmarketapp.tickStore=" + scratch.resolve("ticks-" + symbols + "-" + refresh));
+		command.add("-Dstockmarketapp.exchangeFile=" + scratch.resolve("exchanges.csv")); // see above
+		String none = scratch.resolve("none").toString(); // so that the user's own files are not read or written
+		command.add("-Dstockmarketapp.symbolListing=" + none);
+		command.add("-Dstockmarketapp.alertRules=" + none);
+		command.add("-Dstockmarketapp.alertLog=off");
+		command.add("-Dstockmarketapp.snapshotFile=off");
+		command.add("-Dstockmarketapp.metricsFile=off");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LoadTest.class.getName());
+		command.add("--run");
+		command.add(symbols);
+		command.add("--refresh");
+		command.add(refresh);
+		command.add("--seconds");
+		command.add(Long.toString(seconds));
+
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		String result = null;
+		try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = out.readLine()) != null){
+				if (line.startsWith(RESULT)){
+					result = line.substring(RESULT.length());
+				}
+			}
+		}
+		return process.waitFor() == 0 ? result : null;
+	}
+
+	/**
+	 * Carries out one run in this JVM: a query, then watch mode, measured as described above.
+	 * @param symbolCount the number of symbols
+	 * @param refreshMillis the refresh interval the engine was started with (see Settings.getRefreshMillis)
+	 * @param seconds the time watch mode is measured for
+	 * @return the line of results
+	 * @throws IOException if the query fails
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private static String run(int symbolCount, long refreshMillis, long seconds) throws IOException, InterruptedException {
+		final HeadlessView view = new HeadlessView();
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < symbolCount; i++){
+			input.append(i == 0 ? "" : " ").append('S').append(i);
+		}
+		view.setInputString(input.toString());
+
+		long start = System.nanoTime();
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				ReturnButtonLogic.buttonPressed(view);
+			}
+		});
+		if (!view.answered.await(60, TimeUnit.SECONDS) || view.error != null){
+			throw new IOException("the query failed: " + view.error);
+		}
+		double queryMillis = (System.nanoTime() - start) / 1e6;
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				WatchButtonLogic.buttonPressed(view);
+			}
+		});
+		Thread.sleep(WARM_UP_MILLIS);
+
+		// measured from here on
+		final AtomicLong gcCount = new AtomicLong();
+		final AtomicLong gcNanos = new AtomicLong();
+		final AtomicLong longestPause = new AtomicLong();
+		NotificationListener gcListener = new NotificationListener() {
+			@Override
+			public void handleNotification(Notification notification, Object handback) {
+				if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)){
+					return;
+				}
+				GarbageCollectionNotificationInfo info =
+						GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+				if (info.getGcName().endsWith("Cycles")){
+					return; // ZGC's concurrent cycles are not pauses; its pauses are reported separately
+				}
+				long nanos = TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration());
+				gcCount.incrementAndGet();
+				gcNanos.addAndGet(nanos);
+				raise(longestPause, nanos);
+			}
+		};
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+			((NotificationEmitter) collector).addNotificationListener(gcListener, null, null);
+		}
+		final AtomicLong heapPeak = new AtomicLong();
+		ScheduledExecutorService sampler =
+				Executors.newSingleThreadScheduledExecutor(BackgroundExecutor.daemonThreadFactory("heap-sample"));
+		sampler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				raise(heapPeak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+			}
+		}, 0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+		Metrics.reset();
+		long changesBefore = view.changes.get();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		sampler.shutdownNow();
+
+		LatencyHistogram refreshes = Metrics.getHistogram(Metrics.Stage.REQUEST);
+		return String.format("%8d %8d %9.1f %6.1f/%-6.1f %9.0f %9.0f %8.1f %8.1f %8.1f %7d %5d %8.1f %8.1f %8.1f",
+				symbolCount, refreshMillis, queryMillis, refreshes.getCount() / (double) seconds, 1000.0 / refreshMillis,
+				Metrics.getCount(Metrics.Counter.ROWS_PARSED) / (double) seconds,
+				(view.changes.get() - changesBefore) / (double) seconds,
+				refreshes.getValueAtPercentile(50) / 1e6, refreshes.getValueAtPercentile(99) / 1e6, refreshes.getMax() / 1e6,
+				Metrics.getCount(Metrics.Counter.FAILED), gcCount.get(), gcNanos.get() / 1e6, longestPause.get() / 1e6,
+				heapPeak.get() / (1024.0 * 1024.0));
+	}
+
+	/**
+	 * Raises a maximum kept by several threads.
+	 * @param maximum the maximum so far
+	 * @param value a new value
+	 */
+	private static void raise(AtomicLong maximum, long value) {
+		long current;
+		while (value > (current = maximum.get()) && !maximum.compareAndSet(current, value)){
+			// another thread raised it first; compared again
+		}
+	}
+
+	/**
+	 * Deletes a directory and everything in it.
+	 * @param dir the directory
+	 */
+	static void delete(Path dir) {
+		try (Stream<Path> files = Files.walk(dir)) {
+			List<Path> all = new ArrayList<Path>();
+			for (Iterator<Path> i = files.iterator(); i.hasNext(); ){
+				all.add(i.next());
+			}
+			for (int i = all.size() - 1; i >= 0; i--){ // the contents of each directory before the directory
+				Files.deleteIfExists(all.get(i));
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to delete " + dir + ": " + e.getMessage());
+		}
+	}
+
+} // End of LoadTest definition
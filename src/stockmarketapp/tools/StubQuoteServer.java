@@ -0,0 +1,342 @@
+package stockmarketapp.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import stockmarketapp.staticlogic.BackgroundExecutor;
+import stockmarketapp.staticlogic.QuoteTransport;
+
+/**
+ * A local stand-in for Yahoo! Quotes' quotes.csv service, so that the program can be run and measured without network access.
+ * Every symbol requested gets a made-up line of data in the same format as the real feed.
+ * The data for a symbol is repeatable, except that its price moves by a few cents from one second to the next
+ * (like a real market), so that refreshes have changes to show.
+ * Symbols beginning with "ZZ" are reported as not found.
+ * To imitate a struggling feed, a share of the requests can be answered with an error (see setErrorRate), and the
+ * company names padded to make the responses larger (see setPaddingChars).
+ * Point the program at the stub with -Dstockmarketapp.feedUrl=http://127.0.0.1:&lt;port&gt;/quotes.csv
+ *
+ * Running this class on its own measures the latency and throughput of QuoteTransport against the stub:
+ * <code>java stockmarketapp.tools.StubQuoteServer [requests] [symbols per request] [latency in ms]</code>
+ * @author Sadruddin Junejo
+ *
+ */
+public class StubQuoteServer {
+
+	/** the stock exchanges handed out to the made-up companies */
+	private static final String[] EXCHANGES = {"NasdaqNM", "NYSE", "London", "Paris", "HKSE", "SES", "NCM", "Brussels"};
+
+	/** the underlying server */
+	private final HttpServer server;
+	/** the threads that answer requests */
+	private final ExecutorService workers;
+	/** the time every response is delayed by, to imitate a slow feed */
+	private final long latencyMillis;
+	/** the additional time a response is delayed by for every symbol requested, to imitate the work done by a real feed */
+	private volatile long perSymbolMicros;
+	/** the share of requests answered with an error */
+	private volatile double errorRate;
+	/** the number of characters added to every company name */
+	private volatile int paddingChars;
+	/** the number of requests answered so far */
+	private final AtomicLong requestCount = new AtomicLong();
+	/** the number of requests answered with an error so far */
+	private final AtomicLong errorCount = new AtomicLong();
+
+	/**
+	 * Constructor method for the stub. The stub does not answer requests until it is started.
+	 * @param port the port to listen on, or 0 to use any free port
+	 * @param latencyMillis the time every response is delayed by, in milliseconds
+	 * @throws IOException if the port cannot be opened
+	 */
+	public StubQuoteServer(int port, long latencyMillis) throws IOException {
+		this.latencyMillis = latencyMillis;
+		// Without TCP_NODELAY the headers and body go out in separate packets and every response waits ~40 ms for a delayed ACK.
+		// Only takes effect if set before the first server is created.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null){
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		this.workers = Executors.newFixedThreadPool(64, BackgroundExecutor.daemonThreadFactory("stub-feed"));
+		server.setExecutor(workers);
+		server.createContext("/quotes.csv", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Sets the additional time a response is delayed by for every symbol it contains,
+	 * so that large requests take longer than small ones, as they do with a real feed.
+	 * @param perSymbolMicros the delay per symbol, in microseconds
+	 */
+	public void setPerSymbolMicros(long perSymbolMicros) {
+		this.perSymbolMicros = perSymbolMicros;
+	}
+
+	/**
+	 * Sets the share of requests that are answered with "503 Service Unavailable" instead of data.
+	 * The failures are spread evenly rather than at random, so that a run can be repeated exactly:
+	 * with a rate of 0.1, every tenth request fails.
+	 * @param errorRate the share of requests that fail, from 0 (the default) to 1
+	 */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Sets the number of characters added to every company name, to make the responses larger
+	 * (each line is about 90 characters without padding).
+	 * @param paddingChars the number of characters to add, 0 by default
+	 */
+	public void setPaddingChars(int paddingChars) {
+		this.paddingChars = paddingChars;
+	}
+
+	/**
+	 * @return the number of requests answered so far, including those answered with an error
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of requests answered with an error so far
+	 */
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * Starts answering requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops answering requests and releases the port.
+	 */
+	public void stop() {
+		server.stop(0);
+		workers.shutdownNow();
+	}
+
+	/**
+	 * @return the address of the stub's quotes.csv service, without a query
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/quotes.csv";
+	}
+
+	/**
+	 * Answers a single request with one line of data for every symbol in its "s" parameter.
+	 * @param exchange the request to answer
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void respond(HttpExchange exchange) throws IOException {
+		String[] symbols = symbolsOf(exchange.getRequestURI().getRawQuery());
+		try {
+			long delayMicros = latencyMillis * 1000 + perSymbolMicros * symbols.length;
+			if (delayMicros > 0){
+				Thread.sleep(delayMicros / 1000, (int) (delayMicros % 1000) * 1000);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		long request = requestCount.incrementAndGet();
+		double rate = errorRate;
+		if ((long) (request * rate) != (long) ((request - 1) * rate)){ // evenly spread; see setErrorRate
+			errorCount.incrementAndGet();
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+			return;
+		}
+		StringBuilder body = new StringBuilder();
+		int padding = paddingChars;
+		for (String symbol : symbols){
+			appendQuote(body, symbol, padding);
+		}
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=UTF-8");
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")){
+			// compressed up front so that the response has a fixed length rather than being chunked
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+			try (OutputStream out = new GZIPOutputStream(compressed)) {
+				out.write(bytes);
+			}
+			bytes = compressed.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Extracts the requested symbols from a query string such as "s=AAPL+MSFT&amp;f=nl1pdj1xe1s", each percent-decoded.
+	 * @param query the raw query string of the request, may be null
+	 * @return the requested symbols
+	 */
+	static String[] symbolsOf(String query) {
+		if (query == null){
+			return new String[0];
+		}
+		for (String parameter : query.split("&")){
+			if (parameter.startsWith("s=")){
+				String[] symbols = parameter.substring(2).split("[+,]|%20|%2C");
+				for (int i = 0; i < symbols.length; i++){
+					symbols[i] = URLDecoder.decode(symbols[i], StandardCharsets.UTF_8); // e.g. %5EGSPC is ^GSPC
+				}
+				return symbols;
+			}
+		}
+		return new String[0];
+	}
+
+	/**
+	 * Writes a list of stock exchanges (see ExchangeRegistry) that has none of the exchanges the stub hands out, for
+	 * timing the program with the tick store on (-Dstockmarketapp.exchangeFile). The store then never takes a stored
+	 * quote of the stub's to be current (see TickStore.current), as it would outside the trading hours of the real
+	 * exchanges of those names, so the timings are those of market hours whenever they are taken.
+	 * @param dir the directory to write the list in
+	 * @return the file written
+	 * @throws IOException if the file cannot be written
+	 */
+	static Path writeUnknownExchanges(Path dir) throws IOException {
+		Path file = dir.resolve("exchanges.csv");
+		Files.write(file, "# none of the stub's exchanges, so that their trading hours do not matter\n"
+				.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/**
+	 * Adds a line of made-up data for a symbol, in the column order requested by ReturnButtonLogic (nl1pdj1xe1s).
+	 * The same symbol always gives the same data, apart from its price which changes every second.
+	 * @param body the response being built
+	 * @param symbol the symbol requested
+	 * @param paddingChars the number of characters added to the company name
+	 */
+	static void appendQuote(StringBuilder body, String symbol, int paddingChars) {
+		if (symbol.startsWith("ZZ")){ // reported as an unknown symbol
+			body.append('"').append(symbol).append("\",0.00,0.00,N/A,N/A,\"N/A\",\"No such ticker symbol.\",\"")
+				.append(symbol).append("\"\n");
+			return;
+		}
+		int hash = symbol.hashCode() & 0x7fffffff;
+		int previousCents = 1000 + hash % 50000;
+		int second = (int) (System.currentTimeMillis() / 1000);
+		int lastCents = previousCents - 200 + (hash / 7) % 400 + ((hash ^ (second * 0x9E3779B9)) >>> 1) % 21 - 10;
+		body.append('"').append(symbol).append(" Holdings, Inc");
+		for (int i = 0; i < paddingChars; i++){
+			body.append(i % 10 == 0 ? ' ' : (char) ('a' + i % 26));
+		}
+		body.append("\",");
+		appendCents(body, lastCents);
+		body.append(',');
+		appendCents(body, previousCents);
+		body.append(',');
+		if (hash % 3 == 0){
+			body.append("N/A");
+		}
+		else {
+			appendCents(body, hash % 300);
+		}
+		body.append(',').append(1 + hash % 900).append('.').append(hash % 10).append('B');
+		body.append(",\"").append(EXCHANGES[hash % EXCHANGES.length]).append("\",\"N/A\",\"").append(symbol).append("\"\n");
+	}
+
+	/**
+	 * Adds an amount of cents as a decimal number, e.g. 12345 as "123.45".
+	 * @param body the response being built
+	 * @param cents the amount to add
+	 */
+	private static void appendCents(StringBuilder body, int cents) {
+		body.append(cents / 100).append('.');
+		if (cents % 100 < 10){
+			body.append('0');
+		}
+		body.append(cents % 100);
+	}
+
+	/**
+	 * Starts a stub on a free port and measures how quickly QuoteTransport can fetch from it.
+	 * @param args the number of requests (default 2000), symbols per request (default 50)
+	 *             and response latency in milliseconds (default 0)
+	 * @throws IOException if the stub cannot be started or a request fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int symbolsPerRequest = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+		StubQuoteServer stub = new StubQuoteServer(0, latency);
+		stub.start();
+		try {
+			StringBuilder query = new StringBuilder(stub.getUrl()).append("?s=");
+			for (int i = 0; i < symbolsPerRequest; i++){
+				query.append(i == 0 ? "" : "+").append("S").append(i);
+			}
+			query.append("&f=nl1pdj1xe1s");
+			String url = query.toString();
+
+			QuoteTransport transport = new QuoteTransport(Duration.ofSeconds(5), Duration.ofSeconds(10), 1, 0);
+			QuoteTransport.BodyParser<Long> charCounter = new QuoteTransport.BodyParser<Long>() {
+				@Override
+				public Long parse(Reader body) throws IOException {
+					char[] buffer = new char[8192];
+					long count = 0;
+					int read;
+					while ((read = body.read(buffer)) != -1){
+						count += read;
+					}
+					return count;
+				}
+			};
+
+			for (int i = 0; i < Math.min(requests, 200); i++){ // warm-up
+				transport.get(url, charCounter);
+			}
+			long[] latencies = new long[requests];
+			long chars = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < requests; i++){
+				long requestStart = System.nanoTime();
+				chars += transport.get(url, charCounter);
+				latencies[i] = System.nanoTime() - requestStart;
+			}
+			long elapsed = System.nanoTime() - start;
+			Arrays.sort(latencies);
+
+			System.out.printf("%d requests of %d symbols (%d chars) in %.1f ms%n", requests, symbolsPerRequest, chars, elapsed / 1e6);
+			System.out.printf("throughput: %.0f requests/s%n", requests / (elapsed / 1e9));
+			System.out.printf("latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+					latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.99)] / 1e6, latencies[requests - 1] / 1e6);
+		} finally {
+			stub.stop();
+		}
+	}
+
+} // End of StubQuoteServer definition
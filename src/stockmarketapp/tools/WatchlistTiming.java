@@ -0,0 +1,77 @@
+package stockmarketapp.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import stockmarketapp.staticlogic.Quote;
+import stockmarketapp.staticlogic.ReturnButtonLogic;
+
+/**
+ * Compares how long it takes to load a large watchlist from a local stub feed (see StubQuoteServer)
+ * with a single request for every symbol, and with the chunked, parallel requests made by QueryPlanner.
+ * <code>java stockmarketapp.tools.WatchlistTiming [symbols] [latency in ms] [delay per symbol in us]</code>
+ * The chunk size and parallelism can be changed with the usual system properties (see Settings).
+ * The prices are kept in a new, empty tick store, as they are by default; the stub's exchanges are left out of the
+ * list of exchanges (see StubQuoteServer.writeUnknownExchanges), so that the store never answers in place of the feed.
+ * @author Sadruddin Junejo
+ *
+ */
+public class WatchlistTiming {
+
+	/**
+	 * Runs the comparison.
+	 * @param args the number of symbols (default 5000), the latency of every response in milliseconds (default 20)
+	 *             and the delay per symbol in microseconds (default 200)
+	 * @throws IOException if the stub cannot be started or a request fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int symbolCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		long latency = args.length > 1 ? Long.parseLong(args[1]) : 20;
+		long perSymbolMicros = args.length > 2 ? Long.parseLong(args[2]) : 200;
+
+		StubQuoteServer stub = new StubQuoteServer(0, latency);
+		stub.setPerSymbolMicros(perSymbolMicros);
+		stub.start();
+		Path scratch = Files.createTempDirectory("watchlist-timing");
+		// must be set before ReturnButtonLogic is first used, as that is when the feed's address is read
+		System.setProperty("stockmarketapp.feedUrl", stub.getUrl());
+		System.setProperty("stockmarketapp.cacheTtl", "1"); // every run must go to the feed, not the cache,
+		System.setProperty("stockmarketapp.cacheMaxStale", "off"); // which would otherwise return the expired quotes
+		System.setProperty("stockmarketapp.tickStore", scratch.resolve("ticks").toString());
+		System.setProperty("stockmarketapp.exchangeFile", StubQuoteServer.writeUnknownExchanges(scratch).toString());
+		try {
+			List<String> symbols = new ArrayList<String>(symbolCount);
+			for (int i = 0; i < symbolCount; i++){
+				symbols.add("S" + i);
+			}
+			// warm-up, so that both approaches run with open connections and compiled code
+			ReturnButtonLogic.fetchChunk(symbols);
+			ReturnButtonLogic.fetchQuotes(symbols);
+
+			List<Quote> single = null;
+			List<Quote> planned = null;
+			long singleNanos = Long.MAX_VALUE;
+			long plannedNanos = Long.MAX_VALUE;
+			for (int run = 0; run < 3; run++){ // best of three runs
+				long start = System.nanoTime();
+				single = ReturnButtonLogic.fetchChunk(symbols);
+				singleNanos = Math.min(singleNanos, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				planned = ReturnButtonLogic.fetchQuotes(symbols);
+				plannedNanos = Math.min(plannedNanos, System.nanoTime() - start);
+			}
+
+			System.out.printf("single request:  %d quotes in %.1f ms%n", single.size(), singleNanos / 1e6);
+			System.out.printf("query planner:   %d quotes in %.1f ms%n", planned.size(), plannedNanos / 1e6);
+			System.out.printf("speed-up:        %.1fx%n", (double) singleNanos / plannedNanos);
+		} finally {
+			stub.stop();
+			LoadTest.delete(scratch);
+		}
+	}
+
+} // End of WatchlistTiming definition